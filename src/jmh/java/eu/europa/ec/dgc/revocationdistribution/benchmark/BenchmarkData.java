@@ -0,0 +1,78 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.benchmark;
+
+import eu.europa.ec.dgc.revocationdistribution.config.DgcConfigProperties;
+import eu.europa.ec.dgc.revocationdistribution.entity.HashesEntity;
+import java.util.Random;
+
+/**
+ * Test data and configuration shared by the benchmarks.
+ */
+final class BenchmarkData {
+
+    static final float PROB_RATE = 0.000000000001f;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Creates the configuration with the default values of the application.yml.
+     */
+    static DgcConfigProperties createProperties() {
+        DgcConfigProperties properties = new DgcConfigProperties();
+        properties.getBloomFilter().setEnabled(true);
+        properties.getBloomFilter().setVersion("1.0");
+        properties.getBloomFilter().setProbRate(PROB_RATE);
+        properties.getVarHashList().setEnabled(true);
+        properties.getVarHashList().setVersion("1.0");
+        properties.getVarHashList().setProbRate(PROB_RATE);
+        properties.getVarHashList().setMinByteCount((byte) 4);
+        return properties;
+    }
+
+    /**
+     * Creates random packed hashes of a slice. Like in the real data all hashes of a slice share the hex digits,
+     * which are used for the partition and chunk of the storage mode.
+     */
+    static byte[] createSliceHashes(int hashCount, String storageMode) {
+        byte[] hashes = new byte[hashCount * HashesEntity.HASH_LENGTH];
+        new Random(hashCount).nextBytes(hashes);
+
+        for (int offset = 0; offset < hashes.length; offset += HashesEntity.HASH_LENGTH) {
+            switch (storageMode) {
+                case "COORDINATE":
+                    hashes[offset] = (byte) 0xab;
+                    hashes[offset + 1] = (byte) ((hashes[offset + 1] & 0x0f) | 0xc0);
+                    break;
+                case "VECTOR":
+                    hashes[offset] = (byte) 0xab;
+                    break;
+                case "POINT":
+                default:
+                    hashes[offset] = (byte) ((hashes[offset] & 0x0f) | 0xa0);
+            }
+        }
+
+        return hashes;
+    }
+
+}
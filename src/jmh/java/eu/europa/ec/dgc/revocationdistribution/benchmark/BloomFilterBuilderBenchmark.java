@@ -0,0 +1,84 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.benchmark;
+
+import eu.europa.ec.dgc.bloomfilter.BloomFilter;
+import eu.europa.ec.dgc.bloomfilter.BloomFilterImpl;
+import eu.europa.ec.dgc.revocationdistribution.entity.HashesEntity;
+import eu.europa.ec.dgc.revocationdistribution.utils.BloomFilterBuilder;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the bloom filter builder with the bloom filter library used before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class BloomFilterBuilderBenchmark {
+
+    @Param({"1", "100", "10000", "1000000"})
+    private int hashCount;
+
+    private byte[] hashes;
+
+    @Setup
+    public void setup() {
+        hashes = BenchmarkData.createSliceHashes(hashCount, "COORDINATE");
+    }
+
+    @Benchmark
+    public byte[] builder() throws Exception {
+        return BloomFilterBuilder.build(hashes, HashesEntity.HASH_LENGTH, BenchmarkData.PROB_RATE);
+    }
+
+    /**
+     * The calculation as it was done before the builder: one array per hash and a growing output stream.
+     */
+    @Benchmark
+    public byte[] library() throws Exception {
+        BloomFilter bloomFilter = new BloomFilterImpl(hashCount, BenchmarkData.PROB_RATE);
+
+        for (int offset = 0; offset < hashes.length; offset += HashesEntity.HASH_LENGTH) {
+            bloomFilter.add(Arrays.copyOfRange(hashes, offset, offset + HashesEntity.HASH_LENGTH));
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        bloomFilter.writeTo(baos);
+        return baos.toByteArray();
+    }
+
+}
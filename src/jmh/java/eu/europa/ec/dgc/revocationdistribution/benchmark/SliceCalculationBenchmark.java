@@ -0,0 +1,92 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.benchmark;
+
+import eu.europa.ec.dgc.revocationdistribution.config.DgcConfigProperties;
+import eu.europa.ec.dgc.revocationdistribution.dto.SliceDataDto;
+import eu.europa.ec.dgc.revocationdistribution.service.SliceCalculationBloomFilterImpl;
+import eu.europa.ec.dgc.revocationdistribution.service.SliceCalculationVarHashListImpl;
+import eu.europa.ec.dgc.revocationdistribution.utils.HelperFunctions;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Calculation of a single slice with both slice types.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class SliceCalculationBenchmark {
+
+    @Param({"1", "100", "10000", "1000000"})
+    private int hashCount;
+
+    @Param({"POINT", "VECTOR", "COORDINATE"})
+    private String storageMode;
+
+    private byte[] hashes;
+
+    private SliceCalculationBloomFilterImpl bloomFilterCalculation;
+
+    private SliceCalculationVarHashListImpl varHashListCalculation;
+
+    /**
+     * Creates the slice calculations and the hashes of the slice.
+     */
+    @Setup
+    public void setup() {
+        DgcConfigProperties properties = BenchmarkData.createProperties();
+        HelperFunctions helperFunctions = new HelperFunctions();
+
+        bloomFilterCalculation = new SliceCalculationBloomFilterImpl(properties, helperFunctions);
+        // run the post construct check, which enables the bloom filter builder
+        ReflectionTestUtils.invokeMethod(bloomFilterCalculation, "checkBloomFilterBuilder");
+
+        varHashListCalculation = new SliceCalculationVarHashListImpl(properties, helperFunctions);
+
+        hashes = BenchmarkData.createSliceHashes(hashCount, storageMode);
+    }
+
+    @Benchmark
+    public SliceDataDto bloomFilter() {
+        return bloomFilterCalculation.calculateSlice(hashes, storageMode);
+    }
+
+    @Benchmark
+    public SliceDataDto varHashList() {
+        return varHashListCalculation.calculateSlice(hashes, storageMode);
+    }
+
+}
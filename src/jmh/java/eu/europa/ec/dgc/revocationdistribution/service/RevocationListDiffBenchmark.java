@@ -0,0 +1,118 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.service;
+
+import eu.europa.ec.dgc.revocationdistribution.dto.RevocationListJsonResponseDto.RevocationListJsonResponseItemDto;
+import eu.europa.ec.dgc.revocationdistribution.entity.KidViewEntity;
+import eu.europa.ec.dgc.revocationdistribution.model.ChangeList;
+import eu.europa.ec.dgc.revocationdistribution.utils.HelperFunctions;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * The comparison of the new revocation list with the list of the old etag in the list generation of the generator
+ * service. The database access is left out, the benchmark only covers the in memory part.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class RevocationListDiffBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    private int kidCount;
+
+    private final HelperFunctions helperFunctions = new HelperFunctions();
+
+    private List<KidViewEntity> kidViewEntities;
+
+    private Map<String, RevocationListJsonResponseItemDto> oldItems;
+
+    /**
+     * Creates the old list and the kids of the new data set, every tenth kid is changed.
+     */
+    @Setup
+    public void setup() {
+        ZonedDateTime now = ZonedDateTime.now();
+        kidViewEntities = new ArrayList<>();
+        oldItems = new HashMap<>();
+
+        for (int i = 0; i < kidCount; i++) {
+            String kid = String.format("kid%08d", i);
+            ZonedDateTime expires = now.plusDays(i % 365);
+
+            oldItems.put(kid, new RevocationListJsonResponseItemDto(kid, "POINT", List.of("SIGNATURE", "UCI"),
+                expires, now));
+
+            if (i % 10 == 0) {
+                kidViewEntities.add(createKidViewEntity(kid, "VECTOR", "SIGNATURE", expires.plusDays(1),
+                    now.plusMinutes(1)));
+            } else {
+                kidViewEntities.add(createKidViewEntity(kid, "POINT", "SIGNATURE,UCI", expires, now));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of changed kids.
+     */
+    @Benchmark
+    public int compareRevocationList() {
+        ChangeList changeList = GeneratorService.compareRevocationList(kidViewEntities, new HashMap<>(oldItems),
+            helperFunctions);
+
+        return changeList.getUpdated().size();
+    }
+
+    /**
+     * The kid view is read only, the entities are filled like the persistence provider does.
+     */
+    private static KidViewEntity createKidViewEntity(String kid, String storageMode, String types,
+                                                     ZonedDateTime expired, ZonedDateTime lastUpdated) {
+        KidViewEntity kidViewEntity = new KidViewEntity();
+        ReflectionTestUtils.setField(kidViewEntity, "kid", kid);
+        ReflectionTestUtils.setField(kidViewEntity, "storageMode", storageMode);
+        ReflectionTestUtils.setField(kidViewEntity, "typesString", types);
+        ReflectionTestUtils.setField(kidViewEntity, "expired", expired);
+        ReflectionTestUtils.setField(kidViewEntity, "lastUpdated", lastUpdated);
+        ReflectionTestUtils.invokeMethod(kidViewEntity, "onLoad");
+        return kidViewEntity;
+    }
+
+}
@@ -0,0 +1,200 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.service;
+
+import eu.europa.ec.dgc.revocationdistribution.config.DgcConfigProperties;
+import eu.europa.ec.dgc.revocationdistribution.entity.SliceEntity;
+import eu.europa.ec.dgc.revocationdistribution.model.SliceBinaryData;
+import eu.europa.ec.dgc.revocationdistribution.model.SliceReference;
+import eu.europa.ec.dgc.revocationdistribution.model.SliceType;
+import eu.europa.ec.dgc.revocationdistribution.repository.SliceRepository;
+import eu.europa.ec.dgc.revocationdistribution.utils.HelperFunctions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Packaging of slices into gzip compressed tar archives. The precalculated archives are built in memory by the
+ * helper functions, the slice responses are streamed by the revocation list service from the slice data cache.
+ * The db is replaced by a repository, which returns the slice data from memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class TarPackagingBenchmark {
+
+    @Param({"1", "16", "256"})
+    private int sliceCount;
+
+    @Param({"1024", "65536", "1048576"})
+    private int sliceSize;
+
+    /**
+     * Whether the streamed slices are taken from the cache or loaded from the repository on every request.
+     */
+    @Param({"true", "false"})
+    private boolean cached;
+
+    private final HelperFunctions helperFunctions = new HelperFunctions();
+
+    private List<SliceEntity> slices;
+
+    private List<SliceReference> sliceReferences;
+
+    private RevocationListService revocationListService;
+
+    /**
+     * Creates slices with random binary data, which is not compressible like the real filter data.
+     */
+    @Setup
+    public void setup() {
+        Random random = new Random(sliceCount);
+        slices = new ArrayList<>();
+
+        for (int i = 0; i < sliceCount; i++) {
+            byte[] binaryData = new byte[sliceSize];
+            random.nextBytes(binaryData);
+
+            slices.add(new SliceEntity((long) i, "etag", "kid", "a", Integer.toHexString(i % 16),
+                Integer.toHexString(i), ZonedDateTime.now(), ZonedDateTime.now(), binaryData,
+                SliceType.BLOOMFILTER, null, null));
+        }
+
+        sliceReferences = slices.stream().map(TarPackagingBenchmark::createSliceReference)
+            .collect(Collectors.toList());
+
+        DgcConfigProperties properties = new DgcConfigProperties();
+        properties.getSliceCache().setMaxSize(cached ? Long.MAX_VALUE : 0);
+
+        SliceDataCache sliceDataCache = new SliceDataCache(properties, createSliceRepository(),
+            new SimpleMeterRegistry());
+        ReflectionTestUtils.invokeMethod(sliceDataCache, "postConstruct");
+
+        revocationListService = new RevocationListService(null, null, null, null, null, helperFunctions,
+            sliceDataCache, null);
+    }
+
+    @Benchmark
+    public byte[] createTarForSlices() throws IOException {
+        return helperFunctions.createTarForSlices(slices);
+    }
+
+    @Benchmark
+    public void streamTarForSlices() throws IOException {
+        revocationListService.createTarForSlices(sliceReferences).writeTo(OutputStream.nullOutputStream());
+    }
+
+    private SliceRepository createSliceRepository() {
+        Map<Long, SliceEntity> slicesByDbId = slices.stream()
+            .collect(Collectors.toMap(SliceEntity::getDbId, Function.identity()));
+
+        return (SliceRepository) Proxy.newProxyInstance(SliceRepository.class.getClassLoader(),
+            new Class<?>[] {SliceRepository.class}, (proxy, method, args) -> {
+                if (!method.getName().equals("findAllBinaryDataByDbIdIn")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+
+                return ((Collection<?>) args[0]).stream()
+                    .map(slicesByDbId::get)
+                    .map(TarPackagingBenchmark::createSliceBinaryData)
+                    .collect(Collectors.toList());
+            });
+    }
+
+    private static SliceBinaryData createSliceBinaryData(SliceEntity slice) {
+        return new SliceBinaryData() {
+            @Override
+            public Long getDbId() {
+                return slice.getDbId();
+            }
+
+            @Override
+            public byte[] getBinaryData() {
+                return slice.getBinaryData();
+            }
+        };
+    }
+
+    private static SliceReference createSliceReference(SliceEntity slice) {
+        return new SliceReference() {
+            @Override
+            public Long getDbId() {
+                return slice.getDbId();
+            }
+
+            @Override
+            public String getEtag() {
+                return slice.getEtag();
+            }
+
+            @Override
+            public String getKid() {
+                return slice.getKid();
+            }
+
+            @Override
+            public String getId() {
+                return slice.getId();
+            }
+
+            @Override
+            public String getChunk() {
+                return slice.getChunk();
+            }
+
+            @Override
+            public String getHash() {
+                return slice.getHash();
+            }
+
+            @Override
+            public SliceType getDataType() {
+                return slice.getDataType();
+            }
+        };
+    }
+
+}
@@ -33,6 +33,13 @@ public class DgcConfigProperties {
     private final GatewayDownload revocationListDownload = new GatewayDownload();
     private final BloomFilterConfig bloomFilter = new BloomFilterConfig();
     private final VarHashListConfig varHashList = new VarHashListConfig();
+    private final GeneratorConfig generator = new GeneratorConfig();
+    private final SnapshotConfig snapshot = new SnapshotConfig();
+    private final SliceCacheConfig sliceCache = new SliceCacheConfig();
+    private final PublicKeyCacheConfig publicKeyCache = new PublicKeyCacheConfig();
+    private final LookupIndexConfig lookupIndex = new LookupIndexConfig();
+    private final LookupConfig lookup = new LookupConfig();
+    private final DeltaArchiveConfig deltaArchive = new DeltaArchiveConfig();
 
     private final SliceType defaultRevocationDataType = SliceType.BLOOMFILTER;//"BLOOMFILTER";
 
@@ -43,6 +50,8 @@ public class DgcConfigProperties {
         private Integer timeInterval;
         private Integer downloadLimit;
         private Integer lockLimit;
+        private int fetchParallelism = 4;
+        private int fetchQueueSize = 16;
     }
 
     @Getter
@@ -64,4 +73,65 @@ public class DgcConfigProperties {
         private byte minByteCount = 4;
 
     }
+
+    @Getter
+    @Setter
+    public static class GeneratorConfig {
+        private int parallelism = 4;
+        private Integer cleanupInterval;
+        private int retainedGenerations = 1;
+    }
+
+    @Getter
+    @Setter
+    public static class SnapshotConfig {
+        private Integer refreshInterval;
+        private long etagCheckInterval = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class SliceCacheConfig {
+        private long maxSize = 134217728;
+    }
+
+    @Getter
+    @Setter
+    public static class PublicKeyCacheConfig {
+        private long maxSize = 100000;
+        private long expireAfterWrite = 3600000;
+        private long notFoundExpireAfterWrite = 300000;
+        private int parallelism = 8;
+    }
+
+    @Getter
+    @Setter
+    public static class LookupIndexConfig {
+        private boolean enabled = true;
+        private LookupIndexType type = LookupIndexType.HASHSET;
+        private float probRate = 0.001f;
+    }
+
+    @Getter
+    @Setter
+    public static class LookupConfig {
+        private int parallelism = 16;
+        private int verifyParallelism = 0;
+        private int queryParallelism = 4;
+        private long batchWindow = 5;
+        private int maxBatchSize = 5000;
+        private int queueSize = 10000;
+    }
+
+    @Getter
+    @Setter
+    public static class DeltaArchiveConfig {
+        private boolean enabled = true;
+        private int historySize = 5;
+    }
+
+    public enum LookupIndexType {
+        HASHSET,
+        BLOOMFILTER
+    }
 }
@@ -25,6 +25,7 @@ import eu.europa.ec.dgc.revocationdistribution.exception.DataNotChangedException
 import eu.europa.ec.dgc.revocationdistribution.exception.DataNotFoundException;
 import eu.europa.ec.dgc.revocationdistribution.exception.PreconditionFailedException;
 import eu.europa.ec.dgc.revocationdistribution.exception.TokenValidationException;
+import java.util.concurrent.RejectedExecutionException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Configuration;
@@ -104,6 +105,17 @@ public class ErrorHandler extends ResponseEntityExceptionHandler {
             .body(e.getMessage());
     }
 
+    /**
+     * Handles {@link RejectedExecutionException} when a worker queue is full.
+     *
+     * @param e the thrown {@link RejectedExecutionException}
+     * @return A ResponseEntity with status 503 Service Unavailable.
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Object> handleException(RejectedExecutionException e) {
+        log.warn("Request rejected, worker queue is full: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
 
     /**
      * Global Exception Handler to wrap exceptions into a readable JSON Object.
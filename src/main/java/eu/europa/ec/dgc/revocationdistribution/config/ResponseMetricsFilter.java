@@ -0,0 +1,183 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import java.io.IOException;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.metrics.web.servlet.WebMvcTags;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Records the size of the response bodies and counts the requests answered with not modified or precondition
+ * failed. The latency of the requests is recorded by the http server request metrics of spring boot.
+ */
+@Component
+@RequiredArgsConstructor
+public class ResponseMetricsFilter extends OncePerRequestFilter {
+
+    private static final String RESPONSE_SIZE_SUMMARY = "dgc.api.response.size";
+
+    private static final String CONDITIONAL_COUNTER = "dgc.api.conditional";
+
+    private final MeterRegistry meterRegistry;
+
+    private final SliceTypeTagsContributor sliceTypeTagsContributor;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+
+        ByteCountingResponse countingResponse = new ByteCountingResponse(response);
+
+        try {
+            filterChain.doFilter(request, countingResponse);
+        } finally {
+            if (request.isAsyncStarted()) {
+                // streamed responses are written after the filter chain returned
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        record(request, countingResponse);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                record(request, countingResponse);
+            }
+        }
+    }
+
+    private void record(HttpServletRequest request, ByteCountingResponse response) {
+        Tags tags = Tags.of(WebMvcTags.uri(request, response), WebMvcTags.status(response),
+            sliceTypeTagsContributor.getSliceTypeTag(request, response));
+
+        DistributionSummary.builder(RESPONSE_SIZE_SUMMARY)
+            .description("Size of the response bodies")
+            .baseUnit("bytes")
+            .tags(tags)
+            .register(meterRegistry)
+            .record(response.getByteCount());
+
+        if (response.getStatus() == HttpStatus.NOT_MODIFIED.value()
+            || response.getStatus() == HttpStatus.PRECONDITION_FAILED.value()) {
+            Counter.builder(CONDITIONAL_COUNTER)
+                .description("Requests answered with not modified or precondition failed")
+                .tags(tags)
+                .register(meterRegistry)
+                .increment();
+        }
+    }
+
+    /**
+     * Response, which counts the bytes written to the body output stream. The message converters of spring
+     * write all response bodies to the output stream.
+     */
+    private static class ByteCountingResponse extends HttpServletResponseWrapper {
+
+        private ByteCountingOutputStream outputStream;
+
+        ByteCountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new ByteCountingOutputStream(super.getOutputStream());
+            }
+            return outputStream;
+        }
+
+        long getByteCount() {
+            return outputStream == null ? 0 : outputStream.byteCount;
+        }
+    }
+
+    private static class ByteCountingOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+
+        private long byteCount;
+
+        ByteCountingOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            byteCount++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            byteCount += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+    }
+
+}
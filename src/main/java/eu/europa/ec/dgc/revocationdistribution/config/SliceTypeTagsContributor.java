@@ -0,0 +1,90 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.config;
+
+import eu.europa.ec.dgc.revocationdistribution.model.SliceType;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import java.util.Arrays;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.metrics.web.servlet.WebMvcTags;
+import org.springframework.boot.actuate.metrics.web.servlet.WebMvcTagsContributor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Adds the requested slice data type to the http request metrics.
+ */
+@Component
+@RequiredArgsConstructor
+public class SliceTypeTagsContributor implements WebMvcTagsContributor {
+
+    public static final String SLICE_TYPE_TAG = "sliceType";
+
+    private static final String SLICE_DATA_TYPE_HEADER = "X-SLICE-FILTER-TYPE";
+
+    private static final String PARTITIONS_URI = "/lists/{kid}/partitions";
+
+    private static final String BULK_URI = "/lists/bulk";
+
+    private static final String DELTAS_URI = "/lists/deltas";
+
+    private final DgcConfigProperties properties;
+
+    @Override
+    public Iterable<Tag> getTags(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                 Throwable exception) {
+        return Tags.of(getSliceTypeTag(request, response));
+    }
+
+    @Override
+    public Iterable<Tag> getLongRequestTags(HttpServletRequest request, Object handler) {
+        return Tags.empty();
+    }
+
+    /**
+     * Gets the slice data type of the request. Requests, which do not return slice data are tagged with NONE,
+     * unknown slice data types with UNKNOWN.
+     * @param request the request
+     * @param response the response
+     * @return the slice type tag
+     */
+    public Tag getSliceTypeTag(HttpServletRequest request, HttpServletResponse response) {
+        String uri = WebMvcTags.uri(request, response).getValue();
+
+        if (!uri.startsWith(PARTITIONS_URI) && !uri.equals(BULK_URI) && !uri.startsWith(DELTAS_URI)) {
+            return Tag.of(SLICE_TYPE_TAG, "NONE");
+        }
+
+        String sliceDataTypeHeader = request.getHeader(SLICE_DATA_TYPE_HEADER);
+
+        if (sliceDataTypeHeader == null) {
+            return Tag.of(SLICE_TYPE_TAG, properties.getDefaultRevocationDataType().name());
+        }
+
+        boolean known = Arrays.stream(SliceType.values())
+            .anyMatch(sliceType -> sliceType.name().equals(sliceDataTypeHeader));
+
+        return Tag.of(SLICE_TYPE_TAG, known ? sliceDataTypeHeader : "UNKNOWN");
+    }
+
+}
@@ -20,7 +20,6 @@
 
 package eu.europa.ec.dgc.revocationdistribution.controller;
 
-import eu.europa.ec.dgc.revocationdistribution.dto.RevocationCheckTokenPayload;
 import eu.europa.ec.dgc.revocationdistribution.service.LookupService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
@@ -29,6 +28,7 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import javax.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -48,7 +48,8 @@ public class LookupController {
     private final LookupService lookupService;
 
     /**
-     * Http Method for looking up the revocation state for a list of revocation check tokens.
+     * Http Method for looking up the revocation state for a list of revocation check tokens. The lookup is
+     * processed asynchronously, the request thread is released until the result is available.
      * @param revocationCheckTokenList The List of tokens to check the state for.
      * @return the revocation status of the given certificates.
      */
@@ -82,21 +83,20 @@ public class LookupController {
                 description = "Returned if public key could not be found.",
                 content = @Content(
                     mediaType = MediaType.APPLICATION_JSON_VALUE,
-                    schema = @Schema(implementation = String.class)))
+                    schema = @Schema(implementation = String.class))),
+            @ApiResponse(
+                responseCode = "503",
+                description = "Returned if too many lookups are pending.")
         }
     )
-    public ResponseEntity<List<String>> lookupRevocation(
+    public CompletableFuture<ResponseEntity<List<String>>> lookupRevocation(
         @Valid @RequestBody(required = false) List<String> revocationCheckTokenList
     ) {
         if (revocationCheckTokenList.isEmpty()) {
-            return ResponseEntity.ok(new ArrayList<>());
+            return CompletableFuture.completedFuture(ResponseEntity.ok(new ArrayList<>()));
         }
 
-        List<RevocationCheckTokenPayload> tokenPayloads =
-            lookupService.validateRevocationCheckTokens(revocationCheckTokenList);
-
-        List<String> result = lookupService.checkForRevocation(tokenPayloads);
-        return ResponseEntity.ok(result);
+        return lookupService.lookupRevocation(revocationCheckTokenList).thenApply(ResponseEntity::ok);
     }
 
 }
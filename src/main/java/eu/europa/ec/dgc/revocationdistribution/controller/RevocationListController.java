@@ -24,11 +24,15 @@ import com.nimbusds.jose.util.Base64URL;
 import eu.europa.ec.dgc.revocationdistribution.config.DgcConfigProperties;
 import eu.europa.ec.dgc.revocationdistribution.dto.PartitionResponseDto;
 import eu.europa.ec.dgc.revocationdistribution.dto.RevocationListJsonResponseDto;
-import eu.europa.ec.dgc.revocationdistribution.entity.RevocationListJsonEntity;
+import eu.europa.ec.dgc.revocationdistribution.entity.ArchiveEntity;
+import eu.europa.ec.dgc.revocationdistribution.entity.DeltaArchiveEntity;
 import eu.europa.ec.dgc.revocationdistribution.exception.BadRequestException;
+import eu.europa.ec.dgc.revocationdistribution.exception.DataNotFoundException;
 import eu.europa.ec.dgc.revocationdistribution.exception.PreconditionFailedException;
+import eu.europa.ec.dgc.revocationdistribution.model.DataSetSnapshot;
 import eu.europa.ec.dgc.revocationdistribution.model.SliceType;
-import eu.europa.ec.dgc.revocationdistribution.service.InfoService;
+import eu.europa.ec.dgc.revocationdistribution.service.DataSetSnapshotService;
+import eu.europa.ec.dgc.revocationdistribution.service.DeltaArchiveService;
 import eu.europa.ec.dgc.revocationdistribution.service.RevocationListService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -43,6 +47,7 @@ import java.time.format.DateTimeParseException;
 import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import javax.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -57,6 +62,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
 @RestController
@@ -66,9 +72,12 @@ import org.springframework.web.bind.annotation.RestController;
 public class RevocationListController {
 
     private static final String SLICE_DATA_TYPE_HEADER = "X-SLICE-FILTER-TYPE";
-    private final InfoService infoService;
+    private static final String GZIP_ENCODING = "gzip";
+    private static final String BULK_ARCHIVE_MEDIA_TYPE = "application/x-tar";
+    private final DataSetSnapshotService dataSetSnapshotService;
     private final DgcConfigProperties properties;
     private final RevocationListService revocationListService;
+    private final DeltaArchiveService deltaArchiveService;
 
 
     /**
@@ -104,21 +113,40 @@ public class RevocationListController {
                 description = "Not modified.")
         }
     )
-    public ResponseEntity<List<RevocationListJsonResponseDto.RevocationListJsonResponseItemDto>> getRevocationList(
-        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, defaultValue = "") String ifNoneMatch) {
-
-        String currentEtag = infoService.getValueForKey(InfoService.CURRENT_ETAG);
-
-        if (ifNoneMatch.equals(currentEtag)) {
-            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+    public ResponseEntity<byte[]> getRevocationList(
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, defaultValue = "") String ifNoneMatch,
+        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, defaultValue = "") String acceptEncoding) {
+
+        DataSetSnapshot snapshot = dataSetSnapshotService.getSnapshot();
+
+        if (ifNoneMatch.equals(snapshot.getEtag())) {
+            // caches need the same variance for the 304 as for the 200 response
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(snapshot.getEtag())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .build();
         }
 
-        Optional<RevocationListJsonEntity> revocationListJsonEntity =
-            revocationListService.getRevocationListJsonData(currentEtag);
+        if (snapshot.getRevocationListJson() == null) {
+            return ResponseEntity.notFound().build();
+        }
 
-        return revocationListJsonEntity.map(listJsonEntity -> ResponseEntity.ok().eTag(currentEtag)
-            .body(listJsonEntity.getJsonData())).orElseGet(() -> ResponseEntity.notFound().build());
+        // the list is serialized and compressed once per data set, the bytes are written directly
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .eTag(snapshot.getEtag())
+            .contentType(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        if (acceptsGzip(acceptEncoding)) {
+            return response
+                .header(HttpHeaders.CONTENT_ENCODING, GZIP_ENCODING)
+                .contentLength(snapshot.getRevocationListGzip().length)
+                .body(snapshot.getRevocationListGzip());
+        }
 
+        return response
+            .contentLength(snapshot.getRevocationListJson().length)
+            .body(snapshot.getRevocationListJson());
     }
 
 
@@ -182,7 +210,7 @@ public class RevocationListController {
 
         kid = transformBase64Url(kid);
 
-        String currentEtag = checkEtag(ifMatch);
+        DataSetSnapshot snapshot = checkEtag(ifMatch);
 
         List<PartitionResponseDto> result;
 
@@ -195,9 +223,9 @@ public class RevocationListController {
             } catch (DateTimeParseException e) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
             }
-            result = revocationListService.getPartitionsByKidAndDate(currentEtag, kid, dataType, ifModifiedDateTime);
+            result = revocationListService.getPartitionsByKidAndDate(snapshot, kid, dataType, ifModifiedDateTime);
         } else {
-            result = revocationListService.getPartitionsByKid(currentEtag, kid, dataType);
+            result = revocationListService.getPartitionsByKid(snapshot, kid, dataType);
         }
 
         return ResponseEntity.ok(result);
@@ -273,7 +301,7 @@ public class RevocationListController {
 
         kid = transformBase64Url(kid);
 
-        String currentEtag = checkEtag(ifMatch);
+        DataSetSnapshot snapshot = checkEtag(ifMatch);
 
         SliceType dataType = getSliceDataType(sliceDataTypeHeader);
 
@@ -287,9 +315,9 @@ public class RevocationListController {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
             }
             result = revocationListService.getPartitionsByKidAndIdAndDate(
-                currentEtag, kid, id, dataType, ifModifiedDateTime);
+                snapshot, kid, id, dataType, ifModifiedDateTime);
         } else {
-            result = revocationListService.getPartitionsByKidAndId(currentEtag, kid, id, dataType);
+            result = revocationListService.getPartitionsByKidAndId(snapshot, kid, id, dataType);
         }
 
         return ResponseEntity.ok(result);
@@ -362,7 +390,7 @@ public class RevocationListController {
             @ApiResponse(responseCode = "412",description = "Pre-Condition Failed.")
         }
     )
-    public ResponseEntity<byte[]> getPartitionChunksData(
+    public ResponseEntity<StreamingResponseBody> getPartitionChunksData(
         @PathVariable String kid,
         @PathVariable String id,
         @RequestHeader(value = HttpHeaders.IF_MATCH, required = true) String ifMatch,
@@ -373,11 +401,11 @@ public class RevocationListController {
 
         kid = transformBase64Url(kid);
 
-        String currentEtag = checkEtag(ifMatch);
+        String currentEtag = checkEtag(ifMatch).getEtag();
 
         SliceType dataType = getSliceDataType(sliceDataTypeHeader);
 
-        byte[] result;
+        StreamingResponseBody result;
 
         if (ifModifiedSince != null) {
             ZonedDateTime ifModifiedDateTime;
@@ -396,6 +424,11 @@ public class RevocationListController {
             }
         } else {
             if (reqestedChunksList == null) {
+                Optional<ArchiveEntity> archive =
+                    revocationListService.getPartitionArchive(currentEtag, kid, id, dataType);
+                if (archive.isPresent()) {
+                    return getArchiveResponse(archive.get());
+                }
 
                 result = revocationListService.getAllChunkDataFromPartition(currentEtag, kid, id, dataType);
             } else {
@@ -471,7 +504,7 @@ public class RevocationListController {
             @ApiResponse(responseCode = "412",description = "Pre-Condition Failed.")
         }
     )
-    public ResponseEntity<byte[]> getChunk(
+    public ResponseEntity<StreamingResponseBody> getChunk(
         @PathVariable String kid,
         @PathVariable String id,
         @PathVariable String cid,
@@ -482,11 +515,11 @@ public class RevocationListController {
 
         kid = transformBase64Url(kid);
 
-        String currentEtag = checkEtag(ifMatch);
+        String currentEtag = checkEtag(ifMatch).getEtag();
 
         SliceType dataType = getSliceDataType(sliceDataTypeHeader);
 
-        byte[] result;
+        StreamingResponseBody result;
 
         if (ifModifiedSince != null) {
             ZonedDateTime ifModifiedDateTime;
@@ -498,6 +531,12 @@ public class RevocationListController {
             result = revocationListService.getChunkDataSinceDate(
                 currentEtag, kid, id, cid, dataType, ifModifiedDateTime);
         } else {
+            Optional<ArchiveEntity> archive =
+                revocationListService.getChunkArchive(currentEtag, kid, id, cid, dataType);
+            if (archive.isPresent()) {
+                return getArchiveResponse(archive.get());
+            }
+
             result = revocationListService.getChunkData(currentEtag, kid, id, cid, dataType);
         }
 
@@ -578,7 +617,7 @@ public class RevocationListController {
             @ApiResponse(responseCode = "412",description = "Pre-Condition Failed.")
         }
     )
-    public ResponseEntity<byte[]> getPartitionChunks(
+    public ResponseEntity<StreamingResponseBody> getPartitionChunks(
         @PathVariable String kid,
         @PathVariable String id,
         @PathVariable String cid,
@@ -590,11 +629,11 @@ public class RevocationListController {
 
         kid = transformBase64Url(kid);
 
-        String currentEtag = checkEtag(ifMatch);
+        String currentEtag = checkEtag(ifMatch).getEtag();
 
         SliceType dataType = getSliceDataType(sliceDataTypeHeader);
 
-        byte[] result;
+        StreamingResponseBody result;
 
         if (ifModifiedSince != null) {
             ZonedDateTime ifModifiedDateTime;
@@ -612,6 +651,12 @@ public class RevocationListController {
             }
         } else {
             if (requestedSliceList == null) {
+                Optional<ArchiveEntity> archive =
+                    revocationListService.getChunkArchive(currentEtag, kid, id, cid, dataType);
+                if (archive.isPresent()) {
+                    return getArchiveResponse(archive.get());
+                }
+
                 result = revocationListService.getChunkData(currentEtag, kid, id, cid, dataType);
             } else {
                 result = revocationListService.getAllSliceDataForChunkWithFilter(
@@ -696,7 +741,7 @@ public class RevocationListController {
             @ApiResponse(responseCode = "412",description = "Pre-Condition Failed.")
         }
     )
-    public ResponseEntity<byte[]> getSlice(
+    public ResponseEntity<StreamingResponseBody> getSlice(
         @PathVariable String kid,
         @PathVariable String id,
         @PathVariable String cid,
@@ -708,11 +753,11 @@ public class RevocationListController {
 
         kid = transformBase64Url(kid);
 
-        String currentEtag = checkEtag(ifMatch);
+        String currentEtag = checkEtag(ifMatch).getEtag();
 
         SliceType dataType = getSliceDataType(sliceDataTypeHeader);
 
-        byte[] result;
+        StreamingResponseBody result;
 
         if (ifModifiedSince != null) {
             ZonedDateTime ifModifiedDateTime;
@@ -730,6 +775,180 @@ public class RevocationListController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Http Method for getting the partitions and slice data of several kids at once.
+     * @param ifMatch must match the actual revocation list / available data set
+     * @param requestedKids the kids for which the data is requested, all kids if not provided
+     *
+     * @return tar file containing the partition meta data and the slice data of the kids
+     */
+    @PostMapping(path = "lists/bulk",
+        consumes = MediaType.APPLICATION_JSON_VALUE,
+        produces = BULK_ARCHIVE_MEDIA_TYPE)
+    @Operation(
+        summary = "Returns the partitions and all slice data for the selected kids.",
+        description = "Returns a tar file, which contains for each kid the entry {kid}/partitions.json with the "
+            + "partition list and for each partition the entry {kid}/{id}/slices.tar.gz with all slices binary data "
+            + "of the partition. The kids can be selected by a list in the request body, without a list all kids are "
+            + "returned.",
+        tags = {"Revocation Lists"},
+        requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+            required = false,
+            content = @Content(array = @ArraySchema(
+                schema = @Schema(implementation = String.class, name = "kid")))
+        ),
+        parameters = {
+            @Parameter(
+                in = ParameterIn.HEADER,
+                name = "If-Match",
+                description = "When eTag matches (received from /lists), the call will be executed.",
+                required = true,
+                schema = @Schema(implementation = String.class)),
+            @Parameter(
+                in = ParameterIn.HEADER,
+                name =  SLICE_DATA_TYPE_HEADER,
+                description = "Can be used to select the filter type of the slice data, if the backend offers more than"
+                    + " one type. Possible values are BLOOMFILTER, VARHASHLIST",
+                required = false,
+                schema = @Schema(implementation = String.class))
+        },
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Returns the partitions and binary slice data as tar file.",
+                content = @Content(
+                    mediaType = BULK_ARCHIVE_MEDIA_TYPE)),
+            @ApiResponse(responseCode = "404",description = "Data not found."),
+            @ApiResponse(responseCode = "412",description = "Pre-Condition Failed.")
+        }
+    )
+    public ResponseEntity<StreamingResponseBody> getBulkData(
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = true) String ifMatch,
+        @RequestHeader(value = SLICE_DATA_TYPE_HEADER, required = false) String sliceDataTypeHeader,
+        @Valid @RequestBody(required = false) List<String> requestedKids
+    ) {
+
+        DataSetSnapshot snapshot = checkEtag(ifMatch);
+
+        SliceType dataType = getSliceDataType(sliceDataTypeHeader);
+
+        List<String> kids = null;
+        if (requestedKids != null) {
+            kids = requestedKids.stream().map(this::transformBase64Url).collect(Collectors.toList());
+        }
+
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(BULK_ARCHIVE_MEDIA_TYPE))
+            .body(revocationListService.getBulkArchive(snapshot, kids, dataType));
+    }
+
+    /**
+     * Http Method for getting the changes of the slice data between two data sets.
+     * @param fromEtag the etag of the data set of the client
+     * @param toEtag the etag of the current data set
+     *
+     * @return gzip file containing the deleted slices and the binary data of the added slices
+     */
+    @GetMapping(path = "lists/deltas/{fromEtag}/{toEtag}", produces = "application/gzip")
+    @Operation(
+        summary = "Returns the slice data changes between two data sets.",
+        description = "Returns a gzip file, which contains the entry deleted.json with the names of the deleted "
+            + "slices and the binary data of the added slices. Deltas are available from the last data sets to the "
+            + "current one. If no delta is available, the data needs to be downloaded completely.",
+        tags = {"Revocation Lists"},
+        parameters = {
+            @Parameter(
+                in = ParameterIn.HEADER,
+                name =  SLICE_DATA_TYPE_HEADER,
+                description = "Can be used to select the filter type of the slice data, if the backend offers more than"
+                    + " one type. Possible values are BLOOMFILTER, VARHASHLIST",
+                required = false,
+                schema = @Schema(implementation = String.class)),
+            @Parameter(
+                in = ParameterIn.PATH,
+                name = "fromEtag",
+                description = "The etag of the data set, the client holds.",
+                required = true,
+                schema = @Schema(implementation = String.class)),
+            @Parameter(
+                in = ParameterIn.PATH,
+                name = "toEtag",
+                description = "The etag of the current data set (received from /lists).",
+                required = true,
+                schema = @Schema(implementation = String.class))
+        },
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Returns the slice data changes as gzip file.",
+                content = @Content(
+                    mediaType = "application/gzip")),
+            @ApiResponse(responseCode = "404",description = "No delta available.")
+        }
+    )
+    public ResponseEntity<StreamingResponseBody> getDelta(
+        @PathVariable String fromEtag,
+        @PathVariable String toEtag,
+        @RequestHeader(value = SLICE_DATA_TYPE_HEADER, required = false) String sliceDataTypeHeader
+    ) {
+
+        SliceType dataType = getSliceDataType(sliceDataTypeHeader);
+
+        DeltaArchiveEntity deltaArchive = deltaArchiveService.getDeltaArchive(fromEtag, toEtag, dataType)
+            .orElseThrow(DataNotFoundException::new);
+
+        return getArchiveResponse(deltaArchive.getBinaryData(), deltaArchive.getContentHash());
+    }
+
+    /**
+     * Creates the response for a precalculated archive. The hash of the archive data is used as etag.
+     */
+    private ResponseEntity<StreamingResponseBody> getArchiveResponse(ArchiveEntity archive) {
+        return getArchiveResponse(archive.getBinaryData(), archive.getContentHash());
+    }
+
+    private ResponseEntity<StreamingResponseBody> getArchiveResponse(byte[] binaryData, String contentHash) {
+        return ResponseEntity.ok()
+            .eTag(contentHash)
+            .contentLength(binaryData.length)
+            .body(outputStream -> outputStream.write(binaryData));
+    }
+
+    /**
+     * Checks if the client accepts gzip encoded responses. An explicit gzip entry takes precedence over the
+     * wildcard, regardless of the order of the entries.
+     */
+    private boolean acceptsGzip(String acceptEncoding) {
+        boolean wildcardAccepted = false;
+
+        for (String encoding : acceptEncoding.split(",")) {
+            String[] parts = encoding.trim().split(";");
+            String name = parts[0].trim();
+
+            if (name.equalsIgnoreCase(GZIP_ENCODING)) {
+                return isAcceptable(parts);
+            }
+            if (name.equals("*")) {
+                wildcardAccepted = isAcceptable(parts);
+            }
+        }
+        return wildcardAccepted;
+    }
+
+    /**
+     * Checks the quality parameter of an Accept-Encoding entry, an encoding with q=0 is not acceptable.
+     */
+    private boolean isAcceptable(String[] encodingParts) {
+        for (int i = 1; i < encodingParts.length; i++) {
+            String parameter = encodingParts[i].trim();
+
+            if (parameter.startsWith("q=")) {
+                return !parameter.matches("q=0(\\.0*)?");
+            }
+        }
+        return true;
+    }
+
     /**
      * Method to transform a base64url object.
      * returns a base64 object from a base64url object
@@ -742,18 +961,19 @@ public class RevocationListController {
      * Method to check Etag Header.
      *
      * @param etag to check
-     * @return etag without quotes
+     * @return the snapshot of the current data set
      * @throws PreconditionFailedException is thrown when the given etag don't match the current one.
      */
-    private String checkEtag(String etag) throws PreconditionFailedException {
-        String currentEtag = infoService.getValueForKey(InfoService.CURRENT_ETAG);
+    private DataSetSnapshot checkEtag(String etag) throws PreconditionFailedException {
         String parsedEtag = etag.replaceAll("^\"|\"$", "");
+        // snapshots of other instances are refreshed on a mismatch, before the request is rejected
+        DataSetSnapshot snapshot = dataSetSnapshotService.getSnapshot(parsedEtag);
 
-        if (!parsedEtag.equals(currentEtag)) {
-            log.info("etag failed given {} expexted {}", etag, currentEtag);
+        if (!parsedEtag.equals(snapshot.getEtag())) {
+            log.info("etag failed given {} expexted {}", etag, snapshot.getEtag());
             throw new PreconditionFailedException();
         }
-        return currentEtag;
+        return snapshot;
     }
 
     private SliceType getSliceDataType(String sliceDataTypeHeader) {
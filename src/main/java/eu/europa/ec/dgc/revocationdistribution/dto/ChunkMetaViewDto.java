@@ -20,6 +20,7 @@
 
 package eu.europa.ec.dgc.revocationdistribution.dto;
 
+import eu.europa.ec.dgc.revocationdistribution.entity.HashesEntity;
 import java.time.ZonedDateTime;
 import lombok.AllArgsConstructor;
 import lombok.Value;
@@ -34,7 +35,10 @@ public class ChunkMetaViewDto {
 
     String kid;
 
-    String[] hashes;
+    /**
+     * The hashes of the chunk, packed into one array of {@link HashesEntity#HASH_LENGTH} byte hashes.
+     */
+    byte[] hashes;
 
     String id;
 
@@ -48,4 +52,8 @@ public class ChunkMetaViewDto {
 
     ZonedDateTime expired;
 
+    public int getHashCount() {
+        return hashes.length / HashesEntity.HASH_LENGTH;
+    }
+
 }
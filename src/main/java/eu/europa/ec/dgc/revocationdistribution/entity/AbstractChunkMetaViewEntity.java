@@ -20,14 +20,11 @@
 
 package eu.europa.ec.dgc.revocationdistribution.entity;
 
-import com.vladmihalcea.hibernate.type.array.StringArrayType;
 import java.time.ZonedDateTime;
 import javax.persistence.Column;
 import javax.persistence.Id;
 import javax.persistence.MappedSuperclass;
 import lombok.Getter;
-import org.hibernate.annotations.Type;
-import org.hibernate.annotations.TypeDef;
 import org.springframework.data.annotation.Immutable;
 import org.springframework.lang.Nullable;
 
@@ -35,7 +32,6 @@ import org.springframework.lang.Nullable;
 @Getter
 @Immutable
 @MappedSuperclass
-@TypeDef(name = "string_array", typeClass = StringArrayType.class)
 public abstract class AbstractChunkMetaViewEntity {
 
     @Id
@@ -49,11 +45,10 @@ public abstract class AbstractChunkMetaViewEntity {
     private String kid;
 
     /**
-     * The hashes of the chunk.
+     * The hashes of the chunk, packed into one array of fixed length hashes.
      */
     @Column(name = "hashes")
-    @Type(type = "string_array")
-    private String[] hashes;
+    private byte[] hashes;
 
     /**
      * The partition id of the chunk.
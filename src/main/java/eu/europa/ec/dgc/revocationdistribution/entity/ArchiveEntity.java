@@ -0,0 +1,106 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.entity;
+
+import eu.europa.ec.dgc.revocationdistribution.model.SliceType;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Entity
+@Table(name = "archives")
+@AllArgsConstructor
+@NoArgsConstructor
+public class ArchiveEntity {
+
+    @Id
+    @Column(name = "db_id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long dbId;
+
+
+    /**
+     * The etag of the data set, which added the archive.
+     */
+    @Column(name = "etag", nullable = false, length = 36)
+    private String etag;
+
+    /**
+     * The KID.
+     */
+    @Column(name = "kid")
+    private String kid;
+
+    /**
+     * Id of the partition.
+     */
+    @Column(name = "partition_id")
+    private String id;
+
+    /**
+     * Chunk of the archive, null if the archive contains all slices of the partition.
+     */
+    @Column(name = "chunk")
+    private String chunk;
+
+    /**
+     * The type of the slice data in the archive e.g. BLOOMFILTER or VARHASHLIST
+     */
+    @Column(name = "data_type")
+    @Enumerated(EnumType.STRING)
+    private SliceType dataType;
+
+    /**
+     * SHA-256 hash of the archive data.
+     */
+    @Column(name = "content_hash")
+    private String contentHash;
+
+    /**
+     * The gzip compressed tar archive of the slices.
+     */
+    @Column(name = "archive_binary_data")
+    private byte[] binaryData;
+
+    /**
+     * The generation of the data set, which added the entity. It is set by the db from the etag.
+     */
+    @Column(name = "valid_from", insertable = false, updatable = false)
+    private Long validFrom;
+
+    /**
+     * The generation of the data set, which removed the entity, null if the entity is still valid.
+     */
+    @Column(name = "valid_to", insertable = false, updatable = false)
+    private Long validTo;
+
+}
@@ -0,0 +1,60 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.entity;
+
+import java.time.ZonedDateTime;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Entity
+@Table(name = "etag_history")
+@AllArgsConstructor
+@NoArgsConstructor
+public class EtagHistoryEntity {
+
+    @Id
+    @Column(name = "db_id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long dbId;
+
+    /**
+     * The etag of the data set.
+     */
+    @Column(name = "etag", nullable = false, length = 36)
+    private String etag;
+
+    /**
+     * The creation date of the data set.
+     */
+    @Column(name = "created_at")
+    private ZonedDateTime createdAt;
+
+}
@@ -44,6 +44,10 @@ import org.springframework.data.domain.Persistable;
 @NoArgsConstructor
 public class HashesEntity implements Persistable<UUID> {
 
+    /**
+     * The length of a revoked hash in bytes (first 128 bits of the SHA-256 hash).
+     */
+    public static final int HASH_LENGTH = 16;
 
     @Id
     @GeneratedValue(generator = "uuid2")
@@ -54,7 +58,7 @@ public class HashesEntity implements Persistable<UUID> {
      * The revoked hash.
      */
     @Column(name = "hash", nullable = false)
-    private String hash;
+    private byte[] hash;
 
     /**
      * The KID of the Key used to sign the CMS.
@@ -51,7 +51,7 @@ public class SliceEntity {
 
 
     /**
-     * The etag of the partition.
+     * The etag of the data set, which added the slice.
      */
     @Column(name = "etag", nullable = false, length = 36)
     private String etag;
@@ -108,9 +108,15 @@ public class SliceEntity {
     private SliceType dataType;
 
     /**
-     * Indicates if the slice needs to be deleted on etag change.
+     * The generation of the data set, which added the entity. It is set by the db from the etag.
      */
-    @Column(name = "to_be_deleted")
-    private boolean toBeDeleted;
+    @Column(name = "valid_from", insertable = false, updatable = false)
+    private Long validFrom;
+
+    /**
+     * The generation of the data set, which removed the entity, null if the entity is still valid.
+     */
+    @Column(name = "valid_to", insertable = false, updatable = false)
+    private Long validTo;
 
 }
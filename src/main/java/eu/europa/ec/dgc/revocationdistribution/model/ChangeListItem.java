@@ -22,6 +22,8 @@ package eu.europa.ec.dgc.revocationdistribution.model;
 
 import eu.europa.ec.dgc.revocationdistribution.entity.KidViewEntity;
 import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.Set;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -45,6 +47,17 @@ public class ChangeListItem {
 
     private String newStorageMode;
 
+    /**
+     * The storage mode of the kid in the current data set, null if the kid is new.
+     */
+    private String oldStorageMode;
+
+    /**
+     * The changed chunks grouped by partition id, if only the changed chunks of the kid are recalculated.
+     * Null if the whole kid is recalculated.
+     */
+    private Map<String, Set<String>> changedChunks;
+
     private ZonedDateTime lastUpdated;
 
     private ZonedDateTime expired;
@@ -0,0 +1,95 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.model;
+
+import eu.europa.ec.dgc.revocationdistribution.dto.PartitionResponseDto;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import lombok.Getter;
+
+/**
+ * Immutable in memory copy of the metadata of a data set. The snapshot is replaced as a whole, when a new data
+ * set is published.
+ */
+@Getter
+public class DataSetSnapshot {
+
+    public static final DataSetSnapshot EMPTY = new DataSetSnapshot(null, null, null, Map.of());
+
+    private final String etag;
+
+    /**
+     * The serialized revocation list of the data set, null if no list is available.
+     */
+    private final byte[] revocationListJson;
+
+    /**
+     * The gzip encoded {@link #revocationListJson}, null if no list is available.
+     */
+    private final byte[] revocationListGzip;
+
+    private final Map<String, List<PartitionResponseDto>> partitions;
+
+    /**
+     * Creates a new snapshot.
+     * @param etag the etag of the data set
+     * @param revocationListJson the serialized revocation list of the data set
+     * @param revocationListGzip the gzip encoded revocation list of the data set
+     * @param partitions the partition metadata, grouped by {@link #getPartitionKey(String, SliceType)}
+     */
+    public DataSetSnapshot(String etag, byte[] revocationListJson, byte[] revocationListGzip,
+                           Map<String, List<PartitionResponseDto>> partitions) {
+        this.etag = etag;
+        this.revocationListJson = revocationListJson;
+        this.revocationListGzip = revocationListGzip;
+        this.partitions = Map.copyOf(partitions);
+    }
+
+    /**
+     * Gets the metadata of all partitions of a kid.
+     * @param kid the kid of the partitions
+     * @param dataType the slice type of the partitions
+     * @return the partitions, empty if there are no partitions for the kid
+     */
+    public List<PartitionResponseDto> getPartitions(String kid, SliceType dataType) {
+        return partitions.getOrDefault(getPartitionKey(kid, dataType), List.of());
+    }
+
+    /**
+     * Gets all kids, which have partitions of the slice type.
+     * @param dataType the slice type of the partitions
+     * @return the sorted kids
+     */
+    public List<String> getKids(SliceType dataType) {
+        String suffix = "/" + dataType;
+
+        return partitions.keySet().stream()
+            .filter(partitionKey -> partitionKey.endsWith(suffix))
+            .map(partitionKey -> partitionKey.substring(0, partitionKey.length() - suffix.length()))
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
+    public static String getPartitionKey(String kid, SliceType dataType) {
+        return kid + "/" + dataType;
+    }
+}
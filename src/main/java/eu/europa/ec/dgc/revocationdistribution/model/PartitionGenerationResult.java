@@ -0,0 +1,39 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.model;
+
+import eu.europa.ec.dgc.revocationdistribution.entity.ArchiveEntity;
+import eu.europa.ec.dgc.revocationdistribution.entity.PartitionEntity;
+import eu.europa.ec.dgc.revocationdistribution.entity.SliceEntity;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+public class PartitionGenerationResult {
+    private List<PartitionEntity> partitions = new ArrayList<>();
+    private List<SliceEntity> slices = new ArrayList<>();
+    private List<ArchiveEntity> archives = new ArrayList<>();
+}
@@ -0,0 +1,125 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.model;
+
+import eu.europa.ec.dgc.revocationdistribution.entity.HashesEntity;
+import eu.europa.ec.dgc.revocationdistribution.utils.BloomFilterBuilder;
+import java.security.NoSuchAlgorithmException;
+import lombok.Getter;
+
+/**
+ * Bloom filter of the revoked hashes, which screens the lookup hashes before they are checked in the db. The
+ * filter needs much less memory than the {@link RevocationLookupIndex}, but has false positives and does not
+ * know the expiration of the hashes, so its hits need to be confirmed. The bits of the filter are not changed
+ * after the build, so the filter is checked without locking.
+ */
+public class RevocationLookupFilter {
+
+    @Getter
+    private final String etag;
+
+    @Getter
+    private final int size;
+
+    private final int[] bits;
+
+    private final int numBits;
+
+    private final byte numberOfHashes;
+
+    private RevocationLookupFilter(String etag, int size, int[] bits, int numBits, byte numberOfHashes) {
+        this.etag = etag;
+        this.size = size;
+        this.bits = bits;
+        this.numBits = numBits;
+        this.numberOfHashes = numberOfHashes;
+    }
+
+    /**
+     * Checks if the hash might be revoked.
+     * @param hash the hash to check
+     * @return false if the hash is not revoked, true if it might be revoked
+     */
+    public boolean mightBeRevoked(byte[] hash) {
+        if (hash.length != HashesEntity.HASH_LENGTH) {
+            return false;
+        }
+
+        return BloomFilterBuilder.mightContain(bits, numBits, numberOfHashes, hash);
+    }
+
+    /**
+     * Creates a builder for a filter of the given data set.
+     * @param etag the etag of the data set
+     * @param expectedSize the number of hashes, the filter is sized for
+     * @param probRate the false positive probability of the filter
+     * @return the builder
+     */
+    public static Builder builder(String etag, int expectedSize, float probRate) {
+        return new Builder(etag, expectedSize, probRate);
+    }
+
+    /**
+     * Adds the hashes directly to the bits of the filter. The filter is sized for the expected number of hashes,
+     * if more hashes are added, the false positive rate of the filter rises.
+     */
+    public static class Builder {
+
+        private final String etag;
+
+        private final BloomFilterBuilder bloomFilterBuilder;
+
+        private Builder(String etag, int expectedSize, float probRate) {
+            this.etag = etag;
+
+            try {
+                bloomFilterBuilder = new BloomFilterBuilder(Math.max(1, expectedSize), probRate);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Could not create lookup filter.", e);
+            }
+        }
+
+        /**
+         * Adds a hash to the filter.
+         * @param hash the hash, hashes with another length than {@link HashesEntity#HASH_LENGTH} are ignored
+         * @param expirationTime the expiration time of the hash in epoch seconds, not used by the filter
+         * @return the builder
+         */
+        public Builder add(byte[] hash, long expirationTime) {
+            if (hash == null || hash.length != HashesEntity.HASH_LENGTH) {
+                return this;
+            }
+
+            bloomFilterBuilder.add(hash, 0, HashesEntity.HASH_LENGTH);
+
+            return this;
+        }
+
+        /**
+         * Builds the filter.
+         * @return the filter
+         */
+        public RevocationLookupFilter build() {
+            return new RevocationLookupFilter(etag, bloomFilterBuilder.getCount(), bloomFilterBuilder.toBitArray(),
+                bloomFilterBuilder.getNumBits(), bloomFilterBuilder.getNumberOfHashes());
+        }
+    }
+}
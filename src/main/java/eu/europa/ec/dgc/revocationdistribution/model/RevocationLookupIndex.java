@@ -0,0 +1,176 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.model;
+
+import eu.europa.ec.dgc.revocationdistribution.entity.HashesEntity;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import lombok.Getter;
+
+/**
+ * Immutable in memory index of the revoked hashes with their expiration time. The hashes are held in an open
+ * addressing hash set of two longs per hash. As the hashes are SHA-256 values, their lower bits are used as
+ * slot directly.
+ */
+public class RevocationLookupIndex {
+
+    /**
+     * Max number of slots, so that the key array with two longs per slot does not exceed the max array length.
+     */
+    private static final int MAX_CAPACITY = 1 << 29;
+
+    @Getter
+    private final String etag;
+
+    private final long[] keys;
+
+    private final long[] expires;
+
+    private final int mask;
+
+    @Getter
+    private final int size;
+
+    private RevocationLookupIndex(String etag, long[] keys, long[] expires, int size) {
+        this.etag = etag;
+        this.keys = keys;
+        this.expires = expires;
+        this.mask = expires.length - 1;
+        this.size = size;
+    }
+
+    /**
+     * Checks if the hash is revoked at the given time.
+     * @param hash the hash to check
+     * @param checkTime the time to check in epoch seconds
+     * @return true if the hash is in the index and not expired
+     */
+    public boolean isRevoked(byte[] hash, long checkTime) {
+        if (hash.length != HashesEntity.HASH_LENGTH) {
+            return false;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(hash);
+        long high = buffer.getLong();
+        long low = buffer.getLong();
+
+        for (int slot = (int) low & mask; expires[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[2 * slot] == high && keys[2 * slot + 1] == low) {
+                return expires[slot] > checkTime;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Creates a builder for an index of the given data set.
+     * @param etag the etag of the data set
+     * @return the builder
+     */
+    public static Builder builder(String etag) {
+        return new Builder(etag);
+    }
+
+    /**
+     * Collects the hashes of the index. The hashes are buffered until the index is built, so the size of the hash
+     * set can be determined from the number of hashes.
+     */
+    public static class Builder {
+
+        private final String etag;
+
+        private long[] hashes = new long[2 * 1024];
+
+        private long[] expires = new long[1024];
+
+        private int count;
+
+        private Builder(String etag) {
+            this.etag = etag;
+        }
+
+        /**
+         * Adds a hash to the index. If a hash is added more than once, the latest expiration time is kept.
+         * @param hash the hash, hashes with another length than {@link HashesEntity#HASH_LENGTH} are ignored
+         * @param expirationTime the expiration time of the hash in epoch seconds
+         * @return the builder
+         */
+        public Builder add(byte[] hash, long expirationTime) {
+            if (hash == null || hash.length != HashesEntity.HASH_LENGTH || expirationTime <= 0) {
+                return this;
+            }
+
+            if (count == expires.length) {
+                // the index needs more slots than hashes, so the buffer does not need to grow beyond the capacity
+                if (count > MAX_CAPACITY / 2) {
+                    throw new IllegalStateException("Too many hashes for the lookup index: " + count);
+                }
+                hashes = Arrays.copyOf(hashes, 4 * count);
+                expires = Arrays.copyOf(expires, 2 * count);
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(hash);
+            hashes[2 * count] = buffer.getLong();
+            hashes[2 * count + 1] = buffer.getLong();
+            expires[count] = expirationTime;
+            count++;
+
+            return this;
+        }
+
+        /**
+         * Builds the index with a load factor of at most 0.75.
+         * @return the index
+         */
+        public RevocationLookupIndex build() {
+            long requiredCapacity = Long.highestOneBit(Math.max(1, count + count / 3L)) * 2;
+            if (requiredCapacity > MAX_CAPACITY) {
+                throw new IllegalStateException("Too many hashes for the lookup index: " + count);
+            }
+            int capacity = (int) requiredCapacity;
+
+            long[] indexKeys = new long[2 * capacity];
+            long[] indexExpires = new long[capacity];
+            int mask = capacity - 1;
+            int size = 0;
+
+            for (int i = 0; i < count; i++) {
+                long high = hashes[2 * i];
+                long low = hashes[2 * i + 1];
+                int slot = (int) low & mask;
+
+                while (indexExpires[slot] != 0 && (indexKeys[2 * slot] != high || indexKeys[2 * slot + 1] != low)) {
+                    slot = (slot + 1) & mask;
+                }
+
+                if (indexExpires[slot] == 0) {
+                    indexKeys[2 * slot] = high;
+                    indexKeys[2 * slot + 1] = low;
+                    size++;
+                }
+                indexExpires[slot] = Math.max(indexExpires[slot], expires[i]);
+            }
+
+            return new RevocationLookupIndex(etag, indexKeys, indexExpires, size);
+        }
+    }
+}
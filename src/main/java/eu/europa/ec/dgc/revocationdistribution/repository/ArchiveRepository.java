@@ -0,0 +1,91 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.repository;
+
+import eu.europa.ec.dgc.revocationdistribution.entity.ArchiveEntity;
+import eu.europa.ec.dgc.revocationdistribution.model.ArchiveBinaryData;
+import eu.europa.ec.dgc.revocationdistribution.model.SliceType;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface ArchiveRepository extends JpaRepository<ArchiveEntity, Long> {
+
+    /**
+     * Selects the archives, which are part of the data set with the etag parameter.
+     */
+    String IN_DATA_SET = "a.validFrom <= (SELECT gf.generation FROM GenerationEntity gf WHERE gf.etag = :etag)"
+        + " AND (a.validTo IS NULL"
+        + " OR a.validTo > (SELECT gt.generation FROM GenerationEntity gt WHERE gt.etag = :etag))";
+
+    @Modifying
+    @Query("UPDATE ArchiveEntity a SET a.validTo = :generation WHERE a.validTo IS NULL AND a.validFrom < :generation "
+        + "AND a.kid in :kids")
+    void setValidToForKids(@Param("generation") long generation, @Param("kids") List<String> kids);
+
+    @Modifying
+    @Query("UPDATE ArchiveEntity a SET a.validTo = :generation WHERE a.validTo IS NULL AND a.validFrom < :generation "
+        + "AND a.kid = :kid AND CONCAT(COALESCE(a.id, ''), '/', COALESCE(a.chunk, '')) in :chunkKeys")
+    void setValidToForChunks(@Param("generation") long generation, @Param("kid") String kid,
+                             @Param("chunkKeys") Collection<String> chunkKeys);
+
+    @Modifying
+    @Query("DELETE FROM ArchiveEntity a WHERE a.validTo <= :generation")
+    int deleteRemovedUntil(@Param("generation") long generation);
+
+    @Query("SELECT a FROM ArchiveEntity a WHERE " + IN_DATA_SET + " AND a.kid = :kid AND a.id = :id"
+        + " AND a.chunk IS NULL AND a.dataType = :dataType")
+    Optional<ArchiveEntity> findOneByEtagAndKidAndIdAndChunkIsNullAndDataType(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("id") String id,
+        @Param("dataType") SliceType dataType);
+
+    @Query("SELECT a FROM ArchiveEntity a WHERE " + IN_DATA_SET + " AND a.kid = :kid AND a.id IS NULL"
+        + " AND a.chunk IS NULL AND a.dataType = :dataType")
+    Optional<ArchiveEntity> findOneByEtagAndKidAndIdIsNullAndChunkIsNullAndDataType(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("dataType") SliceType dataType);
+
+    @Query("SELECT a.binaryData AS binaryData FROM ArchiveEntity a WHERE " + IN_DATA_SET + " AND a.kid = :kid"
+        + " AND a.id = :id AND a.chunk IS NULL AND a.dataType = :dataType")
+    Optional<ArchiveBinaryData> findBinaryDataByEtagAndKidAndIdAndChunkIsNullAndDataType(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("id") String id,
+        @Param("dataType") SliceType dataType);
+
+    @Query("SELECT a.binaryData AS binaryData FROM ArchiveEntity a WHERE " + IN_DATA_SET + " AND a.kid = :kid"
+        + " AND a.id IS NULL AND a.chunk IS NULL AND a.dataType = :dataType")
+    Optional<ArchiveBinaryData> findBinaryDataByEtagAndKidAndIdIsNullAndChunkIsNullAndDataType(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("dataType") SliceType dataType);
+
+    @Query("SELECT a FROM ArchiveEntity a WHERE " + IN_DATA_SET + " AND a.kid = :kid AND a.id = :id"
+        + " AND a.chunk = :cid AND a.dataType = :dataType")
+    Optional<ArchiveEntity> findOneByEtagAndKidAndIdAndChunkAndDataType(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("id") String id, @Param("cid") String cid,
+        @Param("dataType") SliceType dataType);
+
+    @Query("SELECT a FROM ArchiveEntity a WHERE " + IN_DATA_SET + " AND a.kid = :kid AND a.id IS NULL"
+        + " AND a.chunk = :cid AND a.dataType = :dataType")
+    Optional<ArchiveEntity> findOneByEtagAndKidAndIdIsNullAndChunkAndDataType(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("cid") String cid,
+        @Param("dataType") SliceType dataType);
+}
@@ -20,15 +20,27 @@
 
 package eu.europa.ec.dgc.revocationdistribution.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 import eu.europa.ec.dgc.revocationdistribution.entity.CoordinateViewEntity;
 import java.util.List;
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 public interface CoordinateViewRepository extends ReadOnlyRepository<CoordinateViewEntity, String> {
 
     List<CoordinateViewEntity> findAllByKidAndId(String kid, String id);
 
-    @Query("SELECT DISTINCT c.id FROM CoordinateViewEntity c WHERE c.kid = :kid")
-    List<String> findDistinctIdsByKid(@Param("kid") String kid);
+    /**
+     * Streams all chunks of a kid ordered by partition id. Needs to be called inside a transaction.
+     */
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = "100"),
+        @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("SELECT c FROM CoordinateViewEntity c WHERE c.kid = :kid ORDER BY c.id, c.chunk, c.expired")
+    Stream<CoordinateViewEntity> streamAllByKidOrderById(@Param("kid") String kid);
 }
@@ -28,7 +28,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
-public interface HashesRepository extends JpaRepository<HashesEntity, String> {
+public interface HashesRepository extends JpaRepository<HashesEntity, String>, HashesRepositoryCustom {
 
     @Modifying
     @Query("UPDATE HashesEntity h SET h.updated = false WHERE h.updated = true")
@@ -38,12 +38,30 @@ public interface HashesRepository extends JpaRepository<HashesEntity, String> {
     @Query("DELETE HashesEntity h WHERE  h.batch = null")
     void deleteAllOrphanedHashes();
 
+    @Modifying
+    @Query(value = "UPDATE kid_aggregates SET updated = false WHERE updated = true", nativeQuery = true)
+    void setAllKidAggregatesUpdatedStatesToFalse();
+
+    @Query(value = "SELECT DISTINCT COALESCE(kid, 'UNKNOWN_KID') FROM hashes WHERE batch_id IS NULL",
+        nativeQuery = true)
+    List<String> findDistinctKidsOfOrphanedHashes();
+
+    @Query(value = "SELECT refresh_updated_aggregates()", nativeQuery = true)
+    int refreshUpdatedAggregates();
+
+    @Query(value = "SELECT refresh_kid_aggregates(:kid)", nativeQuery = true)
+    int refreshAggregatesForKid(@Param("kid") String kid);
+
+    @Query(value = "SELECT DISTINCT CONCAT(x, y, z) FROM hashes "
+        + "WHERE COALESCE(kid, 'UNKNOWN_KID') = :kid AND updated = true", nativeQuery = true)
+    List<String> findDistinctUpdatedCoordinatesByKid(@Param("kid") String kid);
+
     @Query("SELECT h.hash FROM HashesEntity h WHERE h.hash IN :hashes")
-    List<String> getHashesPresentInListAndDb(@Param("hashes") List<String> hashes);
+    List<byte[]> getHashesPresentInListAndDb(@Param("hashes") List<byte[]> hashes);
 
     @Query("SELECT h.hash FROM HashesEntity h INNER JOIN h.batch b WHERE h.hash IN :hashes AND b.expires > :checkTime")
-    List<String> getHashesPresentInListAndDbAndNotExpired(
-        @Param("hashes") List<String> hashes,
+    List<byte[]> getHashesPresentInListAndDbAndNotExpired(
+        @Param("hashes") List<byte[]> hashes,
         @Param("checkTime") ZonedDateTime checkTime);
 
 }
@@ -0,0 +1,57 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.repository;
+
+import eu.europa.ec.dgc.revocationdistribution.entity.HashesEntity;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.function.ObjLongConsumer;
+
+public interface HashesRepositoryCustom {
+
+    /**
+     * Inserts the hashes with a bulk operation directly into the database, bypassing the persistence context.
+     * The referenced batch needs to be present in the database already.
+     *
+     * @param hashes the hashes to insert
+     * @return the number of inserted hashes
+     */
+    long bulkInsert(List<HashesEntity> hashes);
+
+    /**
+     * Reads all hashes of batches, which are not expired at the given time. The hashes are streamed from the
+     * database and passed to the consumer one by one.
+     *
+     * @param checkTime the time to check the expiration
+     * @param consumer receives the hash and the expiration time of its batch in epoch seconds
+     * @return the number of read hashes
+     */
+    long forEachNotExpiredHash(ZonedDateTime checkTime, ObjLongConsumer<byte[]> consumer);
+
+    /**
+     * Counts the hashes of batches, which are not expired at the given time.
+     *
+     * @param checkTime the time to check the expiration
+     * @return the number of not expired hashes
+     */
+    long countNotExpiredHashes(ZonedDateTime checkTime);
+
+}
@@ -0,0 +1,197 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.repository;
+
+import eu.europa.ec.dgc.revocationdistribution.entity.HashesEntity;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.ObjLongConsumer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Bulk operations on the hashes. On PostgreSQL the hashes are written with COPY in binary format, for other
+ * databases a jdbc batch insert is used.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class HashesRepositoryImpl implements HashesRepositoryCustom {
+
+    private static final String COPY_SQL =
+        "COPY hashes (id, hash, batch_id, kid, updated, x, y, z) FROM STDIN WITH (FORMAT BINARY)";
+
+    private static final String INSERT_SQL =
+        "INSERT INTO hashes (id, hash, batch_id, kid, updated, x, y, z) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final byte[] COPY_SIGNATURE = "PGCOPY\n\377\r\n\0".getBytes(StandardCharsets.ISO_8859_1);
+
+    private static final short COPY_FIELD_COUNT = 8;
+
+    private static final int COPY_BUFFER_SIZE = 65536;
+
+    private static final int INSERT_BATCH_SIZE = 2000;
+
+    private static final String NOT_EXPIRED_HASHES_SQL = "SELECT h.hash, b.expires FROM hashes h "
+        + "INNER JOIN batch_list b ON b.batch_id = h.batch_id WHERE b.expires > ?";
+
+    private static final String COUNT_NOT_EXPIRED_HASHES_SQL = "SELECT COUNT(*) FROM hashes h "
+        + "INNER JOIN batch_list b ON b.batch_id = h.batch_id WHERE b.expires > ?";
+
+    private static final int FETCH_SIZE = 10000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public long bulkInsert(List<HashesEntity> hashes) {
+        if (hashes.isEmpty()) {
+            return 0;
+        }
+
+        return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            if (connection.isWrapperFor(PGConnection.class)) {
+                return copyIn(connection.unwrap(PGConnection.class), hashes);
+            } else {
+                log.debug("Connection is not a PostgreSQL connection, using batch insert.");
+                return batchInsert(hashes);
+            }
+        });
+    }
+
+    @Override
+    public long forEachNotExpiredHash(ZonedDateTime checkTime, ObjLongConsumer<byte[]> consumer) {
+        return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            // the postgres driver only uses the fetch size within a transaction, otherwise all rows are loaded
+            boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+
+            try (PreparedStatement statement = connection.prepareStatement(NOT_EXPIRED_HASHES_SQL)) {
+                statement.setFetchSize(FETCH_SIZE);
+                statement.setTimestamp(1, Timestamp.from(checkTime.toInstant()));
+
+                long count = 0;
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        consumer.accept(resultSet.getBytes(1), resultSet.getTimestamp(2).toInstant().getEpochSecond());
+                        count++;
+                    }
+                }
+                return count;
+            } finally {
+                if (autoCommit) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            }
+        });
+    }
+
+    @Override
+    public long countNotExpiredHashes(ZonedDateTime checkTime) {
+        Long count = jdbcTemplate.queryForObject(COUNT_NOT_EXPIRED_HASHES_SQL, Long.class,
+            Timestamp.from(checkTime.toInstant()));
+        return count == null ? 0 : count;
+    }
+
+    private long copyIn(PGConnection connection, List<HashesEntity> hashes) throws SQLException {
+        PGCopyOutputStream copyStream = new PGCopyOutputStream(connection, COPY_SQL);
+
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(copyStream, COPY_BUFFER_SIZE));
+
+            // header: signature, flags, header extension length
+            out.write(COPY_SIGNATURE);
+            out.writeInt(0);
+            out.writeInt(0);
+
+            for (HashesEntity hash : hashes) {
+                out.writeShort(COPY_FIELD_COUNT);
+                writeUuid(out, hash.getId() == null ? UUID.randomUUID() : hash.getId());
+                out.writeInt(hash.getHash().length);
+                out.write(hash.getHash());
+                writeText(out, hash.getBatch() == null ? null : hash.getBatch().getBatchId());
+                writeText(out, hash.getKid());
+                out.writeInt(1);
+                out.writeBoolean(hash.isUpdated());
+                writeText(out, String.valueOf(hash.getX()));
+                writeText(out, String.valueOf(hash.getY()));
+                writeText(out, String.valueOf(hash.getZ()));
+            }
+
+            // trailer
+            out.writeShort(-1);
+            out.flush();
+
+            return copyStream.endCopy();
+        } catch (IOException e) {
+            throw new SQLException("Failed to copy hashes into the database", e);
+        } finally {
+            if (copyStream.isActive()) {
+                copyStream.cancelCopy();
+            }
+        }
+    }
+
+    private long batchInsert(List<HashesEntity> hashes) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, hashes, INSERT_BATCH_SIZE, (statement, hash) -> {
+            statement.setObject(1, hash.getId() == null ? UUID.randomUUID() : hash.getId());
+            statement.setBytes(2, hash.getHash());
+            statement.setString(3, hash.getBatch() == null ? null : hash.getBatch().getBatchId());
+            statement.setString(4, hash.getKid());
+            statement.setBoolean(5, hash.isUpdated());
+            statement.setString(6, String.valueOf(hash.getX()));
+            statement.setString(7, String.valueOf(hash.getY()));
+            statement.setString(8, String.valueOf(hash.getZ()));
+        });
+        return hashes.size();
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeInt(16);
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static void writeText(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+}
@@ -22,7 +22,7 @@ package eu.europa.ec.dgc.revocationdistribution.repository;
 
 import eu.europa.ec.dgc.revocationdistribution.entity.PartitionEntity;
 import eu.europa.ec.dgc.revocationdistribution.model.SliceType;
-import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -32,31 +32,57 @@ import org.springframework.data.repository.query.Param;
 
 public interface PartitionRepository extends JpaRepository<PartitionEntity, String> {
 
+    /**
+     * Selects the partitions, which are part of the data set with the etag parameter.
+     */
+    String IN_DATA_SET = "p.validFrom <= (SELECT gf.generation FROM GenerationEntity gf WHERE gf.etag = :etag)"
+        + " AND (p.validTo IS NULL"
+        + " OR p.validTo > (SELECT gt.generation FROM GenerationEntity gt WHERE gt.etag = :etag))";
 
-    List<PartitionEntity> findAllByEtagAndKidAndDataType(String etag, String kid, SliceType dataType);
+    @Query("SELECT p FROM PartitionEntity p WHERE " + IN_DATA_SET)
+    List<PartitionEntity> findAllByEtag(@Param("etag") String etag);
 
-    List<PartitionEntity> findAllByEtagAndKidAndDataTypeAndLastUpdatedAfter(
-        String etag, String kid, SliceType dataType, ZonedDateTime ifModifiedSince);
+    @Modifying
+    @Query("UPDATE PartitionEntity p SET p.validTo = :generation WHERE p.validTo IS NULL AND p.validFrom < :generation "
+        + "AND p.kid in :kids")
+    void setValidToForKids(@Param("generation") long generation, @Param("kids") List<String> kids);
 
     @Modifying
-    @Query("UPDATE PartitionEntity p SET p.toBeDeleted = true WHERE p.kid in :kids")
-    void setToBeDeletedForKids(@Param("kids") List<String> kids);
+    @Query("UPDATE PartitionEntity p SET p.validTo = :generation WHERE p.validTo IS NULL AND p.validFrom < :generation "
+        + "AND p.kid = :kid AND COALESCE(p.id, '') in :ids")
+    void setValidToForPartitions(@Param("generation") long generation, @Param("kid") String kid,
+                                 @Param("ids") Collection<String> ids);
 
+    @Modifying
+    @Query("DELETE FROM PartitionEntity p WHERE p.validTo <= :generation")
+    int deleteRemovedUntil(@Param("generation") long generation);
 
-    Optional<PartitionEntity> findOneByEtagAndKidAndIdAndDataType(
-        String etag, String kid, String id, SliceType dataType);
+    @Query("SELECT CASE WHEN COUNT(p) > 0 THEN true ELSE false END FROM PartitionEntity p WHERE " + IN_DATA_SET
+        + " AND p.kid = :kid AND p.dataType = :dataType")
+    boolean existsByEtagAndKidAndDataType(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("dataType") SliceType dataType);
 
-    Optional<PartitionEntity> findOneByEtagAndKidAndIdIsNullAndDataType(
-        String etag, String kid, SliceType dataType);
 
+    @Query("SELECT p FROM PartitionEntity p WHERE " + IN_DATA_SET + " AND p.kid = :kid AND p.id = :id"
+        + " AND p.dataType = :dataType")
+    Optional<PartitionEntity> findOneByEtagAndKidAndIdAndDataType(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("id") String id,
+        @Param("dataType") SliceType dataType);
 
-    Optional<PartitionEntity> findOneByEtagAndKidAndIdAndDataTypeAndLastUpdatedAfter(
-        String etag, String kid, String id, SliceType dataType, ZonedDateTime ifModifiedSince);
+    @Query("SELECT p FROM PartitionEntity p WHERE " + IN_DATA_SET + " AND p.kid = :kid AND p.id IS NULL"
+        + " AND p.dataType = :dataType")
+    Optional<PartitionEntity> findOneByEtagAndKidAndIdIsNullAndDataType(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("dataType") SliceType dataType);
 
-    Optional<PartitionEntity> findOneByEtagAndKidAndIdIsNullAndDataTypeAndLastUpdatedAfter(
-        String etag, String kid, SliceType dataType, ZonedDateTime ifModifiedSince);
 
-    Long countByEtagAndKidAndIdAndDataType(String etag, String kid, String id, SliceType dataType);
+    @Query("SELECT COUNT(p) FROM PartitionEntity p WHERE " + IN_DATA_SET + " AND p.kid = :kid AND p.id = :id"
+        + " AND p.dataType = :dataType")
+    Long countByEtagAndKidAndIdAndDataType(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("id") String id,
+        @Param("dataType") SliceType dataType);
 
-    Long countByEtagAndKidAndIdIsNullAndDataType(String etag, String kid,SliceType dataType);
+    @Query("SELECT COUNT(p) FROM PartitionEntity p WHERE " + IN_DATA_SET + " AND p.kid = :kid AND p.id IS NULL"
+        + " AND p.dataType = :dataType")
+    Long countByEtagAndKidAndIdIsNullAndDataType(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("dataType") SliceType dataType);
 }
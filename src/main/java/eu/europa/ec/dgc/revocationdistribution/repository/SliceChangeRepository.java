@@ -0,0 +1,51 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.repository;
+
+import eu.europa.ec.dgc.revocationdistribution.entity.SliceChangeEntity;
+import eu.europa.ec.dgc.revocationdistribution.model.SliceType;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface SliceChangeRepository extends JpaRepository<SliceChangeEntity, Long> {
+
+    @Modifying
+    @Query(value = "INSERT INTO slice_changes (etag, kid, partition_id, chunk, hash, data_type, slice_db_id, deleted) "
+        + "SELECT :etag, kid, partition_id, chunk, hash, data_type, NULL, true FROM slices "
+        + "WHERE valid_to = (SELECT generation FROM generations WHERE etag = :etag)", nativeQuery = true)
+    void insertDeletedSlices(@Param("etag") String etag);
+
+    @Modifying
+    @Query(value = "INSERT INTO slice_changes (etag, kid, partition_id, chunk, hash, data_type, slice_db_id, deleted) "
+        + "SELECT :etag, kid, partition_id, chunk, hash, data_type, db_id, false FROM slices "
+        + "WHERE etag = :etag", nativeQuery = true)
+    void insertAddedSlices(@Param("etag") String etag);
+
+    List<SliceChangeEntity> findAllByEtagInAndDataTypeOrderByDbId(Collection<String> etags, SliceType dataType);
+
+    @Modifying
+    @Query("DELETE FROM SliceChangeEntity c WHERE c.etag NOT IN :etags")
+    void deleteAllByEtagNotIn(@Param("etags") Collection<String> etags);
+}
@@ -21,8 +21,11 @@
 package eu.europa.ec.dgc.revocationdistribution.repository;
 
 import eu.europa.ec.dgc.revocationdistribution.entity.SliceEntity;
+import eu.europa.ec.dgc.revocationdistribution.model.SliceBinaryData;
+import eu.europa.ec.dgc.revocationdistribution.model.SliceReference;
 import eu.europa.ec.dgc.revocationdistribution.model.SliceType;
 import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -30,97 +33,226 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
-public interface SliceRepository extends JpaRepository<SliceEntity, String> {
-
-
-    Optional<SliceEntity> findOneByEtagAndKidAndIdAndChunkAndHashAndDataType(
-        String etag, String kid, String id, String cid, String sid, SliceType dataType);
-
-    Optional<SliceEntity> findOneByEtagAndKidAndIdIsNullAndChunkAndHashAndDataType(
-        String etag, String kid, String cid, String sid, SliceType dataType);
-
-    List<SliceEntity> findAllByEtagAndKidAndIdAndChunkAndDataType(
-        String etag, String kid, String id, String cid, SliceType dataType);
-
-    List<SliceEntity> findAllByEtagAndKidAndIdIsNullAndChunkAndDataType(
-        String etag, String kid, String cid, SliceType dataType);
+public interface SliceRepository extends JpaRepository<SliceEntity, Long> {
+
+    /**
+     * Selects the slices, which are part of the data set with the etag parameter.
+     */
+    String IN_DATA_SET = "s.validFrom <= (SELECT gf.generation FROM GenerationEntity gf WHERE gf.etag = :etag)"
+        + " AND (s.validTo IS NULL"
+        + " OR s.validTo > (SELECT gt.generation FROM GenerationEntity gt WHERE gt.etag = :etag))";
+
+    String SELECT_REFERENCE = "SELECT s.dbId AS dbId, s.etag AS etag, s.kid AS kid, s.id AS id, s.chunk AS chunk,"
+        + " s.hash AS hash, s.dataType AS dataType FROM SliceEntity s WHERE ";
+
+    @Query(SELECT_REFERENCE + IN_DATA_SET + " AND s.kid = :kid AND s.id = :id AND s.chunk = :cid AND s.hash = :sid"
+        + " AND s.dataType = :dataType")
+    Optional<SliceReference> findOneByEtagAndKidAndIdAndChunkAndHashAndDataType(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("id") String id, @Param("cid") String cid,
+        @Param("sid") String sid, @Param("dataType") SliceType dataType);
+
+    @Query(SELECT_REFERENCE + IN_DATA_SET + " AND s.kid = :kid AND s.id IS NULL AND s.chunk = :cid AND s.hash = :sid"
+        + " AND s.dataType = :dataType")
+    Optional<SliceReference> findOneByEtagAndKidAndIdIsNullAndChunkAndHashAndDataType(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("cid") String cid, @Param("sid") String sid,
+        @Param("dataType") SliceType dataType);
+
+    @Query(SELECT_REFERENCE + IN_DATA_SET + " AND s.kid = :kid AND s.id = :id AND s.chunk = :cid"
+        + " AND s.dataType = :dataType")
+    List<SliceReference> findAllByEtagAndKidAndIdAndChunkAndDataType(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("id") String id, @Param("cid") String cid,
+        @Param("dataType") SliceType dataType);
+
+    @Query(SELECT_REFERENCE + IN_DATA_SET + " AND s.kid = :kid AND s.id IS NULL AND s.chunk = :cid"
+        + " AND s.dataType = :dataType")
+    List<SliceReference> findAllByEtagAndKidAndIdIsNullAndChunkAndDataType(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("cid") String cid,
+        @Param("dataType") SliceType dataType);
 
     @Modifying
-    @Query("UPDATE SliceEntity s SET s.toBeDeleted = true WHERE s.kid in :kids")
-    void setToBeDeletedForKids(@Param("kids") List<String> kids);
-
-    List<SliceEntity> findAllByEtagAndKidAndIdAndDataType(String etag, String kid, String id, SliceType dataType);
-
-    List<SliceEntity> findAllByEtagAndKidAndIdIsNullAndDataType(String etag, String kid, SliceType dataType);
-
-    List<SliceEntity> findAllByEtagAndKidAndIdIsNullAndDataTypeAndLastUpdatedAfter(
-        String etag, String kid, SliceType dataType, ZonedDateTime ifModifiedDateTime);
-
-    List<SliceEntity> findAllByEtagAndKidAndIdAndDataTypeAndLastUpdatedAfter(
-        String etag, String kid, String id, SliceType dataType, ZonedDateTime ifModifiedDateTime);
-
-
-    List<SliceEntity> findAllByEtagAndKidAndIdIsNullAndDataTypeAndChunkIn(
-        String etag, String kid, SliceType dataType, List<String> chunks);
-
-    List<SliceEntity> findAllByEtagAndKidAndIdAndDataTypeAndChunkIn(
-        String etag, String kid, String id, SliceType dataType, List<String> chunks);
-
-    List<SliceEntity> findAllByEtagAndKidAndIdIsNullAndChunkAndDataTypeAndHashIn(
-        String etag, String kid, String cid, SliceType dataType, List<String> hashes);
-
-    List<SliceEntity> findAllByEtagAndKidAndIdAndChunkAndDataTypeAndHashIn(
-        String etag, String kid, String id, String cid, SliceType dataType, List<String> hashes);
-
-    Long countByEtagAndKidAndIdIsNullAndDataType(String etag, String kid, SliceType dataType);
+    @Query("UPDATE SliceEntity s SET s.validTo = :generation WHERE s.validTo IS NULL AND s.validFrom < :generation "
+        + "AND s.kid in :kids")
+    void setValidToForKids(@Param("generation") long generation, @Param("kids") List<String> kids);
 
-    Long countByEtagAndKidAndIdAndDataType(String etag, String kid, String id, SliceType dataType);
-
-    List<SliceEntity> findAllByEtagAndKidAndIdIsNullAndDataTypeAndChunkInAndLastUpdatedAfter(
-        String etag, String kid, SliceType dataType, List<String> filter, ZonedDateTime ifModifiedDateTime);
-
-    List<SliceEntity> findAllByEtagAndKidAndIdAndDataTypeAndChunkInAndLastUpdatedAfter(
-        String etag, String kid, String id, SliceType dataType, List<String> filter, ZonedDateTime ifModifiedDateTime);
+    @Modifying
+    @Query("UPDATE SliceEntity s SET s.validTo = :generation WHERE s.validTo IS NULL AND s.validFrom < :generation "
+        + "AND s.kid = :kid AND CONCAT(COALESCE(s.id, ''), '/', s.chunk) in :chunkKeys")
+    void setValidToForChunks(@Param("generation") long generation, @Param("kid") String kid,
+                             @Param("chunkKeys") Collection<String> chunkKeys);
 
+    @Modifying
+    @Query("DELETE FROM SliceEntity s WHERE s.validTo <= :generation")
+    int deleteRemovedUntil(@Param("generation") long generation);
+
+    @Query("SELECT s.dbId AS dbId, s.binaryData AS binaryData FROM SliceEntity s WHERE s.dbId IN :dbIds")
+    List<SliceBinaryData> findAllBinaryDataByDbIdIn(@Param("dbIds") Collection<Long> dbIds);
+
+    @Query("SELECT s FROM SliceEntity s WHERE " + IN_DATA_SET + " AND s.kid = :kid AND s.id = :id"
+        + " AND s.dataType = :dataType AND s.chunk NOT IN :chunks")
+    List<SliceEntity> findAllByEtagAndKidAndIdAndDataTypeAndChunkNotIn(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("id") String id,
+        @Param("dataType") SliceType dataType, @Param("chunks") Collection<String> chunks);
+
+    @Query("SELECT s FROM SliceEntity s WHERE " + IN_DATA_SET + " AND s.kid = :kid AND s.id IS NULL"
+        + " AND s.dataType = :dataType AND s.chunk NOT IN :chunks")
+    List<SliceEntity> findAllByEtagAndKidAndIdIsNullAndDataTypeAndChunkNotIn(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("dataType") SliceType dataType,
+        @Param("chunks") Collection<String> chunks);
+
+    @Query(SELECT_REFERENCE + IN_DATA_SET + " AND s.kid = :kid AND s.id = :id AND s.dataType = :dataType")
+    List<SliceReference> findAllByEtagAndKidAndIdAndDataType(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("id") String id,
+        @Param("dataType") SliceType dataType);
+
+    @Query(SELECT_REFERENCE + IN_DATA_SET + " AND s.kid = :kid AND s.id IS NULL AND s.dataType = :dataType")
+    List<SliceReference> findAllByEtagAndKidAndIdIsNullAndDataType(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("dataType") SliceType dataType);
+
+    @Query(SELECT_REFERENCE + IN_DATA_SET + " AND s.kid = :kid AND s.id IS NULL AND s.dataType = :dataType"
+        + " AND s.lastUpdated > :ifModifiedDateTime")
+    List<SliceReference> findAllByEtagAndKidAndIdIsNullAndDataTypeAndLastUpdatedAfter(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("dataType") SliceType dataType,
+        @Param("ifModifiedDateTime") ZonedDateTime ifModifiedDateTime);
+
+    @Query(SELECT_REFERENCE + IN_DATA_SET + " AND s.kid = :kid AND s.id = :id AND s.dataType = :dataType"
+        + " AND s.lastUpdated > :ifModifiedDateTime")
+    List<SliceReference> findAllByEtagAndKidAndIdAndDataTypeAndLastUpdatedAfter(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("id") String id,
+        @Param("dataType") SliceType dataType, @Param("ifModifiedDateTime") ZonedDateTime ifModifiedDateTime);
+
+
+    @Query(SELECT_REFERENCE + IN_DATA_SET + " AND s.kid = :kid AND s.id IS NULL AND s.dataType = :dataType"
+        + " AND s.chunk IN :chunks")
+    List<SliceReference> findAllByEtagAndKidAndIdIsNullAndDataTypeAndChunkIn(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("dataType") SliceType dataType,
+        @Param("chunks") List<String> chunks);
+
+    @Query(SELECT_REFERENCE + IN_DATA_SET + " AND s.kid = :kid AND s.id = :id AND s.dataType = :dataType"
+        + " AND s.chunk IN :chunks")
+    List<SliceReference> findAllByEtagAndKidAndIdAndDataTypeAndChunkIn(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("id") String id,
+        @Param("dataType") SliceType dataType, @Param("chunks") List<String> chunks);
+
+    @Query(SELECT_REFERENCE + IN_DATA_SET + " AND s.kid = :kid AND s.id IS NULL AND s.chunk = :cid"
+        + " AND s.dataType = :dataType AND s.hash IN :hashes")
+    List<SliceReference> findAllByEtagAndKidAndIdIsNullAndChunkAndDataTypeAndHashIn(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("cid") String cid,
+        @Param("dataType") SliceType dataType, @Param("hashes") List<String> hashes);
+
+    @Query(SELECT_REFERENCE + IN_DATA_SET + " AND s.kid = :kid AND s.id = :id AND s.chunk = :cid"
+        + " AND s.dataType = :dataType AND s.hash IN :hashes")
+    List<SliceReference> findAllByEtagAndKidAndIdAndChunkAndDataTypeAndHashIn(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("id") String id, @Param("cid") String cid,
+        @Param("dataType") SliceType dataType, @Param("hashes") List<String> hashes);
+
+    @Query("SELECT COUNT(s) FROM SliceEntity s WHERE " + IN_DATA_SET + " AND s.kid = :kid AND s.id IS NULL"
+        + " AND s.dataType = :dataType")
+    Long countByEtagAndKidAndIdIsNullAndDataType(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("dataType") SliceType dataType);
+
+    @Query("SELECT COUNT(s) FROM SliceEntity s WHERE " + IN_DATA_SET + " AND s.kid = :kid AND s.id = :id"
+        + " AND s.dataType = :dataType")
+    Long countByEtagAndKidAndIdAndDataType(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("id") String id,
+        @Param("dataType") SliceType dataType);
+
+    @Query(SELECT_REFERENCE + IN_DATA_SET + " AND s.kid = :kid AND s.id IS NULL AND s.dataType = :dataType"
+        + " AND s.chunk IN :filter AND s.lastUpdated > :ifModifiedDateTime")
+    List<SliceReference> findAllByEtagAndKidAndIdIsNullAndDataTypeAndChunkInAndLastUpdatedAfter(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("dataType") SliceType dataType,
+        @Param("filter") List<String> filter, @Param("ifModifiedDateTime") ZonedDateTime ifModifiedDateTime);
+
+    @Query(SELECT_REFERENCE + IN_DATA_SET + " AND s.kid = :kid AND s.id = :id AND s.dataType = :dataType"
+        + " AND s.chunk IN :filter AND s.lastUpdated > :ifModifiedDateTime")
+    List<SliceReference> findAllByEtagAndKidAndIdAndDataTypeAndChunkInAndLastUpdatedAfter(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("id") String id,
+        @Param("dataType") SliceType dataType, @Param("filter") List<String> filter,
+        @Param("ifModifiedDateTime") ZonedDateTime ifModifiedDateTime);
+
+    @Query("SELECT COUNT(s) FROM SliceEntity s WHERE " + IN_DATA_SET + " AND s.kid = :kid AND s.id IS NULL"
+        + " AND s.dataType = :dataType AND s.chunk IN :filter")
     Long countByEtagAndKidAndIdIsNullAndDataTypeAndChunkIn(
-        String etag, String kid, SliceType dataType, List<String> filter);
+        @Param("etag") String etag, @Param("kid") String kid, @Param("dataType") SliceType dataType,
+        @Param("filter") List<String> filter);
 
+    @Query("SELECT COUNT(s) FROM SliceEntity s WHERE " + IN_DATA_SET + " AND s.kid = :kid AND s.id = :id"
+        + " AND s.dataType = :dataType AND s.chunk IN :filter")
     Long countByEtagAndKidAndIdAndDataTypeAndChunkIn(
-        String etag, String kid, String id, SliceType dataType, List<String> filter);
-
-    List<SliceEntity> findAllByEtagAndKidAndIdIsNullAndChunkAndDataTypeAndLastUpdatedAfter(
-        String etag, String kid, String cid, SliceType dataType, ZonedDateTime ifModifiedDateTime);
-
-    List<SliceEntity> findAllByEtagAndKidAndIdAndChunkAndDataTypeAndLastUpdatedAfter(
-        String etag, String kid, String id, String cid, SliceType dataType, ZonedDateTime ifModifiedDateTime);
-
-    Long countByEtagAndKidAndIdIsNullAndChunkAndDataType(String etag, String kid, String cid, SliceType dataType);
-
-    Long countByEtagAndKidAndIdAndChunkAndDataType(String etag, String kid, String id, String cid, SliceType dataType);
-
-    List<SliceEntity> findAllByEtagAndKidAndIdIsNullAndChunkAndDataTypeAndHashInAndLastUpdatedAfter(
-        String etag, String kid, String cid, SliceType dataType, List<String> filter, ZonedDateTime ifModifiedDateTime);
-
-    List<SliceEntity> findAllByEtagAndKidAndIdAndChunkAndDataTypeAndHashInAndLastUpdatedAfter(
-        String etag, String kid, String id, String cid, SliceType dataType,
-        List<String> filter, ZonedDateTime ifModifiedDateTime);
-
+        @Param("etag") String etag, @Param("kid") String kid, @Param("id") String id,
+        @Param("dataType") SliceType dataType, @Param("filter") List<String> filter);
+
+    @Query(SELECT_REFERENCE + IN_DATA_SET + " AND s.kid = :kid AND s.id IS NULL AND s.chunk = :cid"
+        + " AND s.dataType = :dataType AND s.lastUpdated > :ifModifiedDateTime")
+    List<SliceReference> findAllByEtagAndKidAndIdIsNullAndChunkAndDataTypeAndLastUpdatedAfter(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("cid") String cid,
+        @Param("dataType") SliceType dataType, @Param("ifModifiedDateTime") ZonedDateTime ifModifiedDateTime);
+
+    @Query(SELECT_REFERENCE + IN_DATA_SET + " AND s.kid = :kid AND s.id = :id AND s.chunk = :cid"
+        + " AND s.dataType = :dataType AND s.lastUpdated > :ifModifiedDateTime")
+    List<SliceReference> findAllByEtagAndKidAndIdAndChunkAndDataTypeAndLastUpdatedAfter(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("id") String id, @Param("cid") String cid,
+        @Param("dataType") SliceType dataType, @Param("ifModifiedDateTime") ZonedDateTime ifModifiedDateTime);
+
+    @Query("SELECT COUNT(s) FROM SliceEntity s WHERE " + IN_DATA_SET + " AND s.kid = :kid AND s.id IS NULL"
+        + " AND s.chunk = :cid AND s.dataType = :dataType")
+    Long countByEtagAndKidAndIdIsNullAndChunkAndDataType(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("cid") String cid,
+        @Param("dataType") SliceType dataType);
+
+    @Query("SELECT COUNT(s) FROM SliceEntity s WHERE " + IN_DATA_SET + " AND s.kid = :kid AND s.id = :id"
+        + " AND s.chunk = :cid AND s.dataType = :dataType")
+    Long countByEtagAndKidAndIdAndChunkAndDataType(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("id") String id, @Param("cid") String cid,
+        @Param("dataType") SliceType dataType);
+
+    @Query(SELECT_REFERENCE + IN_DATA_SET + " AND s.kid = :kid AND s.id IS NULL AND s.chunk = :cid"
+        + " AND s.dataType = :dataType AND s.hash IN :filter AND s.lastUpdated > :ifModifiedDateTime")
+    List<SliceReference> findAllByEtagAndKidAndIdIsNullAndChunkAndDataTypeAndHashInAndLastUpdatedAfter(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("cid") String cid,
+        @Param("dataType") SliceType dataType, @Param("filter") List<String> filter,
+        @Param("ifModifiedDateTime") ZonedDateTime ifModifiedDateTime);
+
+    @Query(SELECT_REFERENCE + IN_DATA_SET + " AND s.kid = :kid AND s.id = :id AND s.chunk = :cid"
+        + " AND s.dataType = :dataType AND s.hash IN :filter AND s.lastUpdated > :ifModifiedDateTime")
+    List<SliceReference> findAllByEtagAndKidAndIdAndChunkAndDataTypeAndHashInAndLastUpdatedAfter(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("id") String id, @Param("cid") String cid,
+        @Param("dataType") SliceType dataType, @Param("filter") List<String> filter,
+        @Param("ifModifiedDateTime") ZonedDateTime ifModifiedDateTime);
+
+    @Query("SELECT COUNT(s) FROM SliceEntity s WHERE " + IN_DATA_SET + " AND s.kid = :kid AND s.id IS NULL"
+        + " AND s.chunk = :cid AND s.dataType = :dataType AND s.hash IN :filter")
     Long countByEtagAndKidAndIdIsNullAndChunkAndDataTypeAndHashIn(
-        String etag, String kid, String cid, SliceType dataType, List<String> filter);
+        @Param("etag") String etag, @Param("kid") String kid, @Param("cid") String cid,
+        @Param("dataType") SliceType dataType, @Param("filter") List<String> filter);
 
+    @Query("SELECT COUNT(s) FROM SliceEntity s WHERE " + IN_DATA_SET + " AND s.kid = :kid AND s.id = :id"
+        + " AND s.chunk = :cid AND s.dataType = :dataType AND s.hash IN :filter")
     Long countByEtagAndKidAndIdAndChunkAndDataTypeAndHashIn(
-        String etag, String kid, String id, String cid, SliceType dataType, List<String> filter);
-
-    Optional<SliceEntity> findOneByEtagAndKidAndIdIsNullAndChunkAndHashAndDataTypeAndLastUpdatedAfter(
-        String etag, String kid, String cid, String sid, SliceType dataType, ZonedDateTime ifModifiedDateTime);
-
-    Optional<SliceEntity> findOneByEtagAndKidAndIdAndChunkAndHashAndDataTypeAndLastUpdatedAfter(
-        String etag, String kid, String id, String cid, String sid,
-        SliceType dataType, ZonedDateTime ifModifiedDateTime);
-
+        @Param("etag") String etag, @Param("kid") String kid, @Param("id") String id, @Param("cid") String cid,
+        @Param("dataType") SliceType dataType, @Param("filter") List<String> filter);
+
+    @Query(SELECT_REFERENCE + IN_DATA_SET + " AND s.kid = :kid AND s.id IS NULL AND s.chunk = :cid AND s.hash = :sid"
+        + " AND s.dataType = :dataType AND s.lastUpdated > :ifModifiedDateTime")
+    Optional<SliceReference> findOneByEtagAndKidAndIdIsNullAndChunkAndHashAndDataTypeAndLastUpdatedAfter(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("cid") String cid, @Param("sid") String sid,
+        @Param("dataType") SliceType dataType, @Param("ifModifiedDateTime") ZonedDateTime ifModifiedDateTime);
+
+    @Query(SELECT_REFERENCE + IN_DATA_SET + " AND s.kid = :kid AND s.id = :id AND s.chunk = :cid AND s.hash = :sid"
+        + " AND s.dataType = :dataType AND s.lastUpdated > :ifModifiedDateTime")
+    Optional<SliceReference> findOneByEtagAndKidAndIdAndChunkAndHashAndDataTypeAndLastUpdatedAfter(
+        @Param("etag") String etag, @Param("kid") String kid, @Param("id") String id, @Param("cid") String cid,
+        @Param("sid") String sid, @Param("dataType") SliceType dataType,
+        @Param("ifModifiedDateTime") ZonedDateTime ifModifiedDateTime);
+
+    @Query("SELECT COUNT(s) FROM SliceEntity s WHERE " + IN_DATA_SET + " AND s.kid = :kid AND s.id IS NULL"
+        + " AND s.chunk = :cid AND s.hash = :sid AND s.dataType = :dataType")
     Long countByEtagAndKidAndIdIsNullAndChunkAndHashAndDataType(
-        String etag, String kid, String cid, String sid, SliceType dataType);
+        @Param("etag") String etag, @Param("kid") String kid, @Param("cid") String cid, @Param("sid") String sid,
+        @Param("dataType") SliceType dataType);
 
+    @Query("SELECT COUNT(s) FROM SliceEntity s WHERE " + IN_DATA_SET + " AND s.kid = :kid AND s.id = :id"
+        + " AND s.chunk = :cid AND s.hash = :sid AND s.dataType = :dataType")
     Long countByEtagAndKidAndIdAndChunkAndHashAndDataType(
-        String etag, String kid, String id, String cid, String sid, SliceType dataType);
+        @Param("etag") String etag, @Param("kid") String kid, @Param("id") String id, @Param("cid") String cid,
+        @Param("sid") String sid, @Param("dataType") SliceType dataType);
 }
@@ -20,16 +20,28 @@
 
 package eu.europa.ec.dgc.revocationdistribution.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 import eu.europa.ec.dgc.revocationdistribution.entity.VectorViewEntity;
 import java.util.List;
+import java.util.stream.Stream;
+import javax.persistence.QueryHint;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 public interface VectorViewRepository extends ReadOnlyRepository<VectorViewEntity, String> {
 
     List<VectorViewEntity> findAllByKidAndId(String kid, String id);
 
-    @Query("SELECT DISTINCT v.id FROM VectorViewEntity v WHERE v.kid = :kid")
-    List<String> findDistinctIdsByKid(@Param("kid") String kid);
+    /**
+     * Streams all chunks of a kid ordered by partition id. Needs to be called inside a transaction.
+     */
+    @QueryHints({
+        @QueryHint(name = HINT_FETCH_SIZE, value = "100"),
+        @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("SELECT v FROM VectorViewEntity v WHERE v.kid = :kid ORDER BY v.id, v.chunk, v.expired")
+    Stream<VectorViewEntity> streamAllByKidOrderById(@Param("kid") String kid);
 
 }
@@ -0,0 +1,208 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.europa.ec.dgc.revocationdistribution.config.DgcConfigProperties;
+import eu.europa.ec.dgc.revocationdistribution.dto.PartitionResponseDto;
+import eu.europa.ec.dgc.revocationdistribution.dto.RevocationListJsonResponseDto.RevocationListJsonResponseItemDto;
+import eu.europa.ec.dgc.revocationdistribution.entity.PartitionEntity;
+import eu.europa.ec.dgc.revocationdistribution.entity.RevocationListJsonEntity;
+import eu.europa.ec.dgc.revocationdistribution.mapper.PartitionListMapper;
+import eu.europa.ec.dgc.revocationdistribution.model.DataSetSnapshot;
+import eu.europa.ec.dgc.revocationdistribution.repository.PartitionRepository;
+import eu.europa.ec.dgc.revocationdistribution.repository.RevocationListJsonRepository;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Holds the metadata of the current data set in memory, so the etag checks and the metadata requests can be
+ * answered without db access.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class DataSetSnapshotService {
+
+    private final InfoService infoService;
+
+    private final RevocationListJsonRepository revocationListJsonRepository;
+
+    private final PartitionRepository partitionRepository;
+
+    private final PartitionListMapper partitionListMapper;
+
+    private final RevocationLookupIndexService revocationLookupIndexService;
+
+    private final ObjectMapper objectMapper;
+
+    private final DgcConfigProperties properties;
+
+    private final AtomicReference<DataSetSnapshot> snapshot = new AtomicReference<>();
+
+    private final AtomicLong lastEtagCheck = new AtomicLong();
+
+
+    /**
+     * Gets the snapshot of the current data set. The snapshot is loaded from the db, if not done yet.
+     * @return the current snapshot
+     */
+    public DataSetSnapshot getSnapshot() {
+        DataSetSnapshot currentSnapshot = snapshot.get();
+
+        if (currentSnapshot == null) {
+            reloadSnapshot();
+            currentSnapshot = snapshot.get();
+        }
+
+        return currentSnapshot;
+    }
+
+    /**
+     * Gets the snapshot of the current data set for a request with the given etag. If the etag does not match the
+     * snapshot, the db is checked for a new data set, which could be published by another instance since the last
+     * refresh. The db is checked at most once per etag check interval, so requests with outdated or invalid etags
+     * do not cause a db query each.
+     * @param etag the etag of the request
+     * @return the current snapshot
+     */
+    public DataSetSnapshot getSnapshot(String etag) {
+        DataSetSnapshot currentSnapshot = getSnapshot();
+
+        if (!Objects.equals(currentSnapshot.getEtag(), etag) && claimEtagCheck()) {
+            refreshSnapshot();
+            currentSnapshot = snapshot.get();
+        }
+
+        return currentSnapshot;
+    }
+
+    /**
+     * Claims the db check for a request with another etag. Only one request within the etag check interval gets
+     * the check.
+     */
+    private boolean claimEtagCheck() {
+        long now = System.currentTimeMillis();
+        long lastCheck = lastEtagCheck.get();
+
+        return now - lastCheck >= properties.getSnapshot().getEtagCheckInterval()
+            && lastEtagCheck.compareAndSet(lastCheck, now);
+    }
+
+    /**
+     * Checks the db for a new data set, e.g. published by another instance, and replaces the snapshot if needed.
+     */
+    @Scheduled(fixedDelayString = "${dgc.snapshot.refreshInterval}")
+    public void refreshSnapshot() {
+        DataSetSnapshot currentSnapshot = snapshot.get();
+        String etag = infoService.getValueForKey(InfoService.CURRENT_ETAG);
+
+        if (currentSnapshot == null || !Objects.equals(currentSnapshot.getEtag(), etag)) {
+            reloadSnapshotIfChanged(etag);
+        }
+    }
+
+    /**
+     * Loads the metadata of the current data set from the db and replaces the snapshot.
+     */
+    public synchronized void reloadSnapshot() {
+        String etag;
+        DataSetSnapshot newSnapshot;
+
+        do {
+            etag = infoService.getValueForKey(InfoService.CURRENT_ETAG);
+            newSnapshot = loadSnapshot(etag);
+            // the data set could be replaced while loading, in this case the loaded data is incomplete
+        } while (!Objects.equals(etag, infoService.getValueForKey(InfoService.CURRENT_ETAG)));
+
+        DataSetSnapshot oldSnapshot = snapshot.getAndSet(newSnapshot);
+        log.info("Loaded data set snapshot for etag: {}", etag);
+
+        if (oldSnapshot == null || !Objects.equals(oldSnapshot.getEtag(), etag)) {
+            revocationLookupIndexService.rebuildIndex(etag);
+        }
+    }
+
+    private synchronized void reloadSnapshotIfChanged(String etag) {
+        DataSetSnapshot currentSnapshot = snapshot.get();
+
+        // concurrent requests with the new etag reload the snapshot only once
+        if (currentSnapshot == null || !Objects.equals(currentSnapshot.getEtag(), etag)) {
+            reloadSnapshot();
+        }
+    }
+
+    private DataSetSnapshot loadSnapshot(String etag) {
+        if (etag == null) {
+            return DataSetSnapshot.EMPTY;
+        }
+
+        List<PartitionEntity> partitionEntities = partitionRepository.findAllByEtag(etag);
+
+        Map<String, List<PartitionResponseDto>> partitions = partitionEntities.stream()
+            .collect(Collectors.groupingBy(
+                partition -> DataSetSnapshot.getPartitionKey(partition.getKid(), partition.getDataType()),
+                Collectors.mapping(partitionListMapper::map, Collectors.toUnmodifiableList())));
+
+        Optional<List<RevocationListJsonResponseItemDto>> revocationList =
+            revocationListJsonRepository.findById(etag).map(RevocationListJsonEntity::getJsonData);
+
+        if (revocationList.isEmpty()) {
+            return new DataSetSnapshot(etag, null, null, partitions);
+        }
+
+        // the response body of the list is serialized once per data set
+        byte[] revocationListJson;
+        try {
+            revocationListJson = objectMapper.writeValueAsBytes(revocationList.get());
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Could not serialize revocation list.", e);
+        }
+
+        return new DataSetSnapshot(etag, revocationListJson, gzip(revocationListJson), partitions);
+    }
+
+    private byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(out)) {
+            gzipOutputStream.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not compress revocation list.", e);
+        }
+
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,253 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.europa.ec.dgc.revocationdistribution.config.DgcConfigProperties;
+import eu.europa.ec.dgc.revocationdistribution.entity.DeltaArchiveEntity;
+import eu.europa.ec.dgc.revocationdistribution.entity.EtagHistoryEntity;
+import eu.europa.ec.dgc.revocationdistribution.entity.SliceChangeEntity;
+import eu.europa.ec.dgc.revocationdistribution.model.SliceBinaryData;
+import eu.europa.ec.dgc.revocationdistribution.model.SliceType;
+import eu.europa.ec.dgc.revocationdistribution.repository.DeltaArchiveRepository;
+import eu.europa.ec.dgc.revocationdistribution.repository.EtagHistoryRepository;
+import eu.europa.ec.dgc.revocationdistribution.repository.SliceChangeRepository;
+import eu.europa.ec.dgc.revocationdistribution.repository.SliceRepository;
+import eu.europa.ec.dgc.revocationdistribution.utils.HelperFunctions;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+import javax.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Creates the delta archives, which lead from the last data sets to the current one. A delta archive contains the
+ * entry deleted.json with the entry names of the deleted slices and the added slices with the same entry names as
+ * in the slice archives.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class DeltaArchiveService {
+
+    public static final String DELETED_SLICES_ENTRY = "deleted.json";
+
+    private static final int SLICE_LOAD_BATCH_SIZE = 100;
+
+    private final EtagHistoryRepository etagHistoryRepository;
+
+    private final SliceChangeRepository sliceChangeRepository;
+
+    private final DeltaArchiveRepository deltaArchiveRepository;
+
+    private final SliceRepository sliceRepository;
+
+    private final List<SliceCalculation> sliceCalculations;
+
+    private final HelperFunctions helperFunctions;
+
+    private final ObjectMapper objectMapper;
+
+    private final DgcConfigProperties properties;
+
+    private final EntityManager entityManager;
+
+    /**
+     * Records the slice changes of a generated data set and creates the delta archives from the last data sets to
+     * the generated one. Needs to be called in the transaction of the generation, before the etag is switched.
+     * @param oldEtag the etag of the current data set
+     * @param etag the etag of the generated data set
+     */
+    @Transactional
+    public void createDeltaArchives(String oldEtag, String etag) {
+        if (!properties.getDeltaArchive().isEnabled()) {
+            return;
+        }
+
+        List<String> history = etagHistoryRepository.findAllByOrderByDbIdDesc().stream()
+            .map(EtagHistoryEntity::getEtag)
+            .collect(Collectors.toList());
+
+        if (history.isEmpty() || !history.get(0).equals(oldEtag)) {
+            // the changes of a data set were not recorded, so the older data sets can not be updated with deltas
+            log.info("Etag history does not end with the current data set, the history is restarted.");
+            etagHistoryRepository.deleteAllInBatch();
+            sliceChangeRepository.deleteAllInBatch();
+            history.clear();
+
+            if (!oldEtag.isEmpty()) {
+                etagHistoryRepository.save(new EtagHistoryEntity(null, oldEtag, ZonedDateTime.now()));
+                history.add(oldEtag);
+            }
+        }
+
+        etagHistoryRepository.save(new EtagHistoryEntity(null, etag, ZonedDateTime.now()));
+        history.add(0, etag);
+
+        List<String> keptHistory = history.subList(0, Math.min(history.size(),
+            properties.getDeltaArchive().getHistorySize() + 1));
+        etagHistoryRepository.deleteAllByEtagNotIn(keptHistory);
+        deltaArchiveRepository.deleteAllByToEtagNot(etag);
+
+        if (keptHistory.size() < 2) {
+            return;
+        }
+
+        sliceChangeRepository.insertDeletedSlices(etag);
+        sliceChangeRepository.insertAddedSlices(etag);
+        // the changes of the oldest kept data set lead to a data set, which is no longer available
+        sliceChangeRepository.deleteAllByEtagNotIn(keptHistory.subList(0, keptHistory.size() - 1));
+
+        for (int i = 1; i < keptHistory.size(); i++) {
+            List<String> steps = keptHistory.subList(0, i);
+
+            for (SliceCalculation sliceCalculation : sliceCalculations) {
+                DeltaArchiveEntity deltaArchive = deltaArchiveRepository.save(
+                    createDeltaArchive(keptHistory.get(i), etag, sliceCalculation.getSliceType(), steps));
+                // the archive is written, so its data is not kept in the persistence context until the commit
+                entityManager.flush();
+                entityManager.detach(deltaArchive);
+            }
+        }
+
+        log.info("Created delta archives from {} data sets.", keptHistory.size() - 1);
+    }
+
+    /**
+     * Gets the delta archive between two data sets.
+     * @param fromEtag the etag of the data set of the client
+     * @param toEtag the etag of the current data set
+     * @param dataType the slice type of the data
+     * @return the archive, empty if no delta is available
+     */
+    public Optional<DeltaArchiveEntity> getDeltaArchive(String fromEtag, String toEtag, SliceType dataType) {
+        return deltaArchiveRepository.findOneByFromEtagAndToEtagAndDataType(fromEtag, toEtag, dataType);
+    }
+
+    private DeltaArchiveEntity createDeltaArchive(String fromEtag, String toEtag, SliceType dataType,
+                                                  Collection<String> steps) {
+        Set<String> deletedSlices = new LinkedHashSet<>();
+        Map<String, SliceChangeEntity> addedSlices = new LinkedHashMap<>();
+
+        // the changes are ordered by data set, a slice added and deleted in between is not part of the delta
+        for (SliceChangeEntity change : sliceChangeRepository.findAllByEtagInAndDataTypeOrderByDbId(steps, dataType)) {
+            String entryName = helperFunctions.getSliceEntryName(
+                change.getKid(), change.getId(), change.getChunk(), change.getHash());
+
+            if (change.isDeleted()) {
+                if (addedSlices.remove(entryName) == null) {
+                    deletedSlices.add(entryName);
+                }
+            } else if (!deletedSlices.remove(entryName)) {
+                addedSlices.put(entryName, change);
+            }
+        }
+
+        log.debug("Delta from {} to {} ({}): {} deleted, {} added slices.",
+            fromEtag, toEtag, dataType, deletedSlices.size(), addedSlices.size());
+
+        DeltaArchiveEntity deltaArchive = new DeltaArchiveEntity();
+        deltaArchive.setFromEtag(fromEtag);
+        deltaArchive.setToEtag(toEtag);
+        deltaArchive.setDataType(dataType);
+
+        try {
+            deltaArchive.setBinaryData(createTar(deletedSlices, addedSlices.values()));
+            deltaArchive.setContentHash(helperFunctions.calculateHash(deltaArchive.getBinaryData()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create delta archive.", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not hash delta archive.", e);
+        }
+
+        return deltaArchive;
+    }
+
+    /**
+     * Creates the archive in a temporary file, so that only the compressed archive is held in memory. The data of
+     * the added slices is loaded in batches, without managed slice entities.
+     */
+    private byte[] createTar(Set<String> deletedSlices, Collection<SliceChangeEntity> addedSlices)
+        throws IOException {
+        Path archiveFile = Files.createTempFile("delta-archive-", ".tar.gz");
+
+        try {
+            try (GZIPOutputStream gzipOutputStream =
+                     new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(archiveFile)));
+                 TarArchiveOutputStream outTar = new TarArchiveOutputStream(gzipOutputStream)) {
+
+                helperFunctions.addToTar(outTar, DELETED_SLICES_ENTRY,
+                    objectMapper.writeValueAsBytes(new ArrayList<>(deletedSlices)));
+
+                List<SliceChangeEntity> changes = new ArrayList<>(addedSlices);
+                for (int start = 0; start < changes.size(); start += SLICE_LOAD_BATCH_SIZE) {
+                    addSlicesToTar(outTar, changes.subList(start, Math.min(start + SLICE_LOAD_BATCH_SIZE,
+                        changes.size())));
+                }
+
+                outTar.finish();
+            }
+
+            return Files.readAllBytes(archiveFile);
+        } finally {
+            Files.deleteIfExists(archiveFile);
+        }
+    }
+
+    private void addSlicesToTar(TarArchiveOutputStream outTar, List<SliceChangeEntity> addedSlices)
+        throws IOException {
+        Map<Long, byte[]> binaryData = new HashMap<>();
+        for (SliceBinaryData sliceData : sliceRepository.findAllBinaryDataByDbIdIn(
+            addedSlices.stream().map(SliceChangeEntity::getSliceDbId).collect(Collectors.toList()))) {
+            binaryData.put(sliceData.getDbId(), sliceData.getBinaryData());
+        }
+
+        for (SliceChangeEntity addedSlice : addedSlices) {
+            byte[] data = binaryData.get(addedSlice.getSliceDbId());
+
+            if (data == null) {
+                throw new IllegalStateException("Added slice not found: " + addedSlice.getSliceDbId());
+            }
+
+            helperFunctions.addToTar(outTar, helperFunctions.getSliceEntryName(
+                addedSlice.getKid(), addedSlice.getId(), addedSlice.getChunk(), addedSlice.getHash()), data);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.service;
+
+import eu.europa.ec.dgc.revocationdistribution.config.DgcConfigProperties;
+import eu.europa.ec.dgc.revocationdistribution.entity.GenerationEntity;
+import eu.europa.ec.dgc.revocationdistribution.repository.ArchiveRepository;
+import eu.europa.ec.dgc.revocationdistribution.repository.GenerationRepository;
+import eu.europa.ec.dgc.revocationdistribution.repository.PartitionRepository;
+import eu.europa.ec.dgc.revocationdistribution.repository.SliceRepository;
+import java.util.List;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Deletes the partitions, slices and archives, which are no longer part of the current data set or one of the
+ * retained previous data sets. The previous data sets are retained for instances, which did not yet load the
+ * current data set, and for running downloads.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class GenerationCleanupService {
+
+    private final GenerationRepository generationRepository;
+
+    private final PartitionRepository partitionRepository;
+
+    private final SliceRepository sliceRepository;
+
+    private final ArchiveRepository archiveRepository;
+
+    private final InfoService infoService;
+
+    private final DgcConfigProperties properties;
+
+    /**
+     * Deletes the data of the outdated generations.
+     */
+    @Scheduled(fixedDelayString = "${dgc.generator.cleanupInterval}")
+    @SchedulerLock(name = "GenerationCleanupService_cleanupGenerations", lockAtLeastFor = "PT0S",
+        lockAtMostFor = "PT1H")
+    @Transactional
+    public void cleanupGenerations() {
+        String currentEtag = infoService.getValueForKey(InfoService.CURRENT_ETAG);
+
+        if (currentEtag == null) {
+            return;
+        }
+
+        Optional<GenerationEntity> currentGeneration = generationRepository.findOneByEtag(currentEtag);
+
+        if (currentGeneration.isEmpty()) {
+            log.warn("No generation found for the current etag: {}", currentEtag);
+            return;
+        }
+
+        // generations newer than the current one are still in progress
+        List<GenerationEntity> publishedGenerations = generationRepository
+            .findAllByGenerationLessThanEqualOrderByGenerationDesc(currentGeneration.get().getGeneration());
+
+        int retainedGenerations = Math.max(0, properties.getGenerator().getRetainedGenerations());
+        long oldestGeneration = publishedGenerations
+            .get(Math.min(retainedGenerations, publishedGenerations.size() - 1)).getGeneration();
+
+        // rows removed up to the oldest retained generation are not part of any retained data set
+        int partitions = partitionRepository.deleteRemovedUntil(oldestGeneration);
+        int slices = sliceRepository.deleteRemovedUntil(oldestGeneration);
+        int archives = archiveRepository.deleteRemovedUntil(oldestGeneration);
+        generationRepository.deleteAllBefore(oldestGeneration);
+
+        log.info("Deleted data of generations before {}: {} partitions, {} slices, {} archives",
+            oldestGeneration, partitions, slices, archives);
+    }
+}
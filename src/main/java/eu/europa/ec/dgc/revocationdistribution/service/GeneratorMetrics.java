@@ -0,0 +1,200 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.service;
+
+import eu.europa.ec.dgc.revocationdistribution.entity.SliceEntity;
+import eu.europa.ec.dgc.revocationdistribution.model.SliceType;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Metrics of the generation of the data sets.
+ */
+@RequiredArgsConstructor
+@Component
+public class GeneratorMetrics {
+
+    public static final String STAGE_REFRESH_AGGREGATES = "refreshAggregates";
+    public static final String STAGE_GENERATE_LIST = "generateList";
+    public static final String STAGE_HANDLE_CHANGES = "handleChanges";
+    public static final String STAGE_DELTA_ARCHIVES = "deltaArchives";
+    public static final String STAGE_UPDATE_ETAG = "updateEtag";
+    public static final String STAGE_CLEANUP = "cleanup";
+
+    private static final String STAGE_TIMER = "dgc.generator.stage";
+    private static final String PARTITION_TIMER = "dgc.generator.partition";
+    private static final String ETAG_LOCK_TIMER = "dgc.generator.etag.lock";
+    private static final String SLICES_GAUGE = "dgc.generator.slices";
+    private static final String SLICE_BYTES_GAUGE = "dgc.generator.slice.bytes";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<SliceType, AtomicLong> sliceCounts = new EnumMap<>(SliceType.class);
+
+    private final Map<SliceType, AtomicLong> sliceBytes = new EnumMap<>(SliceType.class);
+
+    private final Map<SliceType, AtomicLong> runSliceCounts = new EnumMap<>(SliceType.class);
+
+    private final Map<SliceType, AtomicLong> runSliceBytes = new EnumMap<>(SliceType.class);
+
+
+    @PostConstruct
+    private void postConstruct() {
+        for (SliceType sliceType : SliceType.values()) {
+            sliceCounts.put(sliceType, new AtomicLong());
+            sliceBytes.put(sliceType, new AtomicLong());
+            runSliceCounts.put(sliceType, new AtomicLong());
+            runSliceBytes.put(sliceType, new AtomicLong());
+
+            Gauge.builder(SLICES_GAUGE, sliceCounts.get(sliceType), AtomicLong::get)
+                .description("Slices calculated by the last generation run")
+                .tag("sliceType", sliceType.name())
+                .register(meterRegistry);
+
+            Gauge.builder(SLICE_BYTES_GAUGE, sliceBytes.get(sliceType), AtomicLong::get)
+                .description("Size of the slices calculated by the last generation run")
+                .baseUnit("bytes")
+                .tag("sliceType", sliceType.name())
+                .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Resets the slice counters of the current generation run. The gauges keep the values of the last run.
+     */
+    public void startRun() {
+        runSliceCounts.values().forEach(count -> count.set(0));
+        runSliceBytes.values().forEach(bytes -> bytes.set(0));
+    }
+
+    /**
+     * Publishes the slice counters of the current run to the gauges. Within a transaction the counters are
+     * published after the commit, so the gauges only show runs which succeeded.
+     */
+    public void finishRun() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publishRun();
+                }
+            });
+        } else {
+            publishRun();
+        }
+    }
+
+    /**
+     * Records the duration of a stage of the generation.
+     * @param stage the name of the stage
+     * @param stageFunction the stage
+     * @return the result of the stage
+     */
+    public <T> T recordStage(String stage, Supplier<T> stageFunction) {
+        return Timer.builder(STAGE_TIMER)
+            .description("Duration of the stages of the data set generation")
+            .tag("stage", stage)
+            .register(meterRegistry)
+            .record(stageFunction);
+    }
+
+    /**
+     * Records the duration of a stage of the generation.
+     * @param stage the name of the stage
+     * @param stageFunction the stage
+     */
+    public void recordStage(String stage, Runnable stageFunction) {
+        Timer.builder(STAGE_TIMER)
+            .description("Duration of the stages of the data set generation")
+            .tag("stage", stage)
+            .register(meterRegistry)
+            .record(stageFunction);
+    }
+
+    /**
+     * Records the duration of a partition calculation.
+     * @param storageMode the storage mode of the kid
+     * @param partitionFunction the calculation of the partition
+     * @return the result of the calculation
+     */
+    public <T> T recordPartition(String storageMode, Supplier<T> partitionFunction) {
+        return Timer.builder(PARTITION_TIMER)
+            .description("Duration of the calculation of a partition")
+            .tag("storageMode", String.valueOf(storageMode))
+            .register(meterRegistry)
+            .record(partitionFunction);
+    }
+
+    /**
+     * Adds the stored slices to the counters of the current run.
+     * @param slices the stored slices
+     */
+    public void recordSlices(List<SliceEntity> slices) {
+        for (SliceEntity slice : slices) {
+            runSliceCounts.get(slice.getDataType()).incrementAndGet();
+            runSliceBytes.get(slice.getDataType()).addAndGet(slice.getBinaryData().length);
+        }
+    }
+
+    /**
+     * Records the time the locks of the etag switch are held. The rows changed by the etag switch stay locked
+     * until the surrounding transaction is finished, so the measurement ends on completion of the transaction.
+     * @param etagSwitch the etag switch
+     */
+    public void recordEtagLock(Runnable etagSwitch) {
+        Timer timer = Timer.builder(ETAG_LOCK_TIMER)
+            .description("Time the locks of the etag switch are held")
+            .register(meterRegistry);
+        Timer.Sample sample = Timer.start(meterRegistry);
+
+        etagSwitch.run();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    sample.stop(timer);
+                }
+            });
+        } else {
+            sample.stop(timer);
+        }
+    }
+
+    private void publishRun() {
+        for (SliceType sliceType : SliceType.values()) {
+            sliceCounts.get(sliceType).set(runSliceCounts.get(sliceType).get());
+            sliceBytes.get(sliceType).set(runSliceBytes.get(sliceType).get());
+        }
+    }
+
+}
@@ -21,8 +21,11 @@
 package eu.europa.ec.dgc.revocationdistribution.service;
 
 
+import eu.europa.ec.dgc.revocationdistribution.config.DgcConfigProperties;
 import eu.europa.ec.dgc.revocationdistribution.dto.ChunkMetaViewDto;
 import eu.europa.ec.dgc.revocationdistribution.dto.RevocationListJsonResponseDto.RevocationListJsonResponseItemDto;
+import eu.europa.ec.dgc.revocationdistribution.entity.AbstractChunkMetaViewEntity;
+import eu.europa.ec.dgc.revocationdistribution.entity.GenerationEntity;
 import eu.europa.ec.dgc.revocationdistribution.entity.KidViewEntity;
 import eu.europa.ec.dgc.revocationdistribution.entity.RevocationListJsonEntity;
 import eu.europa.ec.dgc.revocationdistribution.mapper.CoordinateViewMapper;
@@ -30,22 +33,46 @@ import eu.europa.ec.dgc.revocationdistribution.mapper.PointViewMapper;
 import eu.europa.ec.dgc.revocationdistribution.mapper.VectorViewMapper;
 import eu.europa.ec.dgc.revocationdistribution.model.ChangeList;
 import eu.europa.ec.dgc.revocationdistribution.model.ChangeListItem;
+import eu.europa.ec.dgc.revocationdistribution.model.PartitionGenerationResult;
+import eu.europa.ec.dgc.revocationdistribution.repository.ArchiveRepository;
 import eu.europa.ec.dgc.revocationdistribution.repository.CoordinateViewRepository;
+import eu.europa.ec.dgc.revocationdistribution.repository.GenerationRepository;
+import eu.europa.ec.dgc.revocationdistribution.repository.HashesRepository;
 import eu.europa.ec.dgc.revocationdistribution.repository.KidViewRepository;
 import eu.europa.ec.dgc.revocationdistribution.repository.PartitionRepository;
 import eu.europa.ec.dgc.revocationdistribution.repository.PointViewRepository;
 import eu.europa.ec.dgc.revocationdistribution.repository.SliceRepository;
 import eu.europa.ec.dgc.revocationdistribution.repository.VectorViewRepository;
 import eu.europa.ec.dgc.revocationdistribution.utils.HelperFunctions;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -73,6 +100,10 @@ public class GeneratorService {
 
     private final SliceRepository sliceRepository;
 
+    private final ArchiveRepository archiveRepository;
+
+    private final HashesRepository hashesRepository;
+
     private final PointViewMapper pointViewMapper;
 
     private final VectorViewMapper vectorViewMapper;
@@ -81,8 +112,21 @@ public class GeneratorService {
 
     private final HelperFunctions helperFunctions;
 
+    private final DgcConfigProperties properties;
+
+    private final EntityManager entityManager;
+
+    private final GeneratorMetrics generatorMetrics;
+
+    private final DeltaArchiveService deltaArchiveService;
+
+    private final GenerationRepository generationRepository;
+
     private String etag;
     private String oldEtag;
+    private long generation;
+
+    private ExecutorService partitionExecutor;
 
 
     @PostConstruct
@@ -91,6 +135,14 @@ public class GeneratorService {
         if (etag == null) {
             etag = "";
         }
+
+        partitionExecutor = Executors.newFixedThreadPool(properties.getGenerator().getParallelism(),
+            new CustomizableThreadFactory("partition-generator-"));
+    }
+
+    @PreDestroy
+    private void preDestroy() {
+        partitionExecutor.shutdownNow();
     }
 
     /**
@@ -101,19 +153,33 @@ public class GeneratorService {
 
         oldEtag = etag;
         etag = UUID.randomUUID().toString();
+        generation = generationRepository.save(new GenerationEntity(null, etag, ZonedDateTime.now())).getGeneration();
+
+        generatorMetrics.startRun();
+
+        log.info("Refresh aggregated data");
+        generatorMetrics.recordStage(GeneratorMetrics.STAGE_REFRESH_AGGREGATES,
+            revocationListService::refreshUpdatedAggregates);
 
         log.info("Generate new List");
-        ChangeList changeList = generateList();
+        ChangeList changeList = generatorMetrics.recordStage(GeneratorMetrics.STAGE_GENERATE_LIST,
+            this::generateList);
 
         log.info("Handle Changes");
-        handleChangeList(changeList);
+        generatorMetrics.recordStage(GeneratorMetrics.STAGE_HANDLE_CHANGES, () -> handleChangeList(changeList));
+
+        log.info("Create delta archives");
+        generatorMetrics.recordStage(GeneratorMetrics.STAGE_DELTA_ARCHIVES,
+            () -> deltaArchiveService.createDeltaArchives(oldEtag, etag));
 
         log.info("Update Etag");
-        infoService.setNewEtag(etag);
+        generatorMetrics.recordStage(GeneratorMetrics.STAGE_UPDATE_ETAG,
+            () -> generatorMetrics.recordEtagLock(() -> infoService.setNewEtag(etag)));
 
         log.info("Cleanup Data");
-        cleanupData();
+        generatorMetrics.recordStage(GeneratorMetrics.STAGE_CLEANUP, this::cleanupData);
 
+        generatorMetrics.finishRun();
 
         log.info("Finished generation of new data set.");
     }
@@ -121,8 +187,6 @@ public class GeneratorService {
 
 
     private ChangeList generateList() {
-        ChangeList changeList = new ChangeList();
-
         List<KidViewEntity> kidViewEntityList = kidViewRepository.findAll();
 
         List<RevocationListJsonResponseItemDto> items = getRevocationListData(oldEtag);
@@ -131,6 +195,30 @@ public class GeneratorService {
         Map<String, RevocationListJsonResponseItemDto> itemsMap =
             items.stream().collect(Collectors.toMap(RevocationListJsonResponseItemDto::getKid, i -> i));
 
+        final ChangeList changeList = compareRevocationList(kidViewEntityList, itemsMap, helperFunctions);
+
+        RevocationListJsonEntity revocationListJsonEntity = new RevocationListJsonEntity();
+        revocationListJsonEntity.setEtag(etag);
+        revocationListJsonEntity.setJsonData(new ArrayList<>(itemsMap.values()));
+        log.trace("before save");
+        revocationListService.saveRevocationListJson(revocationListJsonEntity);
+        log.trace("create list finished");
+        //log.trace(itemsMap.values().toString());
+        return changeList;
+    }
+
+    /**
+     * Compares the kids of the new data set with the revocation list of the previous data set.
+     * @param kidViewEntityList the kids of the new data set
+     * @param itemsMap the items of the previous revocation list by kid, updated to the items of the new list
+     * @param helperFunctions the helper functions to compare the items
+     * @return the deleted and updated kids
+     */
+    static ChangeList compareRevocationList(List<KidViewEntity> kidViewEntityList,
+                                            Map<String, RevocationListJsonResponseItemDto> itemsMap,
+                                            HelperFunctions helperFunctions) {
+        ChangeList changeList = new ChangeList();
+
         List<String> goneKids = new ArrayList<>(itemsMap.keySet());
         goneKids.removeAll(kidViewEntityList.stream().map(KidViewEntity::getKid).collect(Collectors.toList()));
         changeList.getDeletedKids().addAll(goneKids);
@@ -149,35 +237,29 @@ public class GeneratorService {
             } else {
 
                 RevocationListJsonResponseItemDto item = getRevocationListJsonItem(kve);
+                RevocationListJsonResponseItemDto oldItem = itemsMap.get(kve.getKid());
+
+                ChangeListItem changeListItem = new ChangeListItem(kve);
+                changeListItem.setOldStorageMode(oldItem == null ? null : oldItem.getMode());
 
-                if (kve.isUpdated() || (!itemsMap.containsKey(kve.getKid()))) {
+                if (kve.isUpdated() || oldItem == null) {
 
                     itemsMap.put(item.getKid(), item);
-                    changeList.getUpdated().add(new ChangeListItem(kve));
+                    changeList.getUpdated().add(changeListItem);
 
                 } else {
-                    RevocationListJsonResponseItemDto oldItem;
-                    oldItem = itemsMap.get(kve.getKid());
-
                     if (!helperFunctions.compareRevocationListItems(item, oldItem)) {
                         itemsMap.put(item.getKid(), item);
-                        changeList.getUpdated().add(new ChangeListItem(kve));
+                        changeList.getUpdated().add(changeListItem);
                     }
                 }
             }
         });
         log.trace("update items stop");
-        RevocationListJsonEntity revocationListJsonEntity = new RevocationListJsonEntity();
-        revocationListJsonEntity.setEtag(etag);
-        revocationListJsonEntity.setJsonData(new ArrayList<>(itemsMap.values()));
-        log.trace("before save");
-        revocationListService.saveRevocationListJson(revocationListJsonEntity);
-        log.trace("create list finished");
-        //log.trace(itemsMap.values().toString());
         return changeList;
     }
 
-    private RevocationListJsonResponseItemDto getRevocationListJsonItem(KidViewEntity kve) {
+    private static RevocationListJsonResponseItemDto getRevocationListJsonItem(KidViewEntity kve) {
         RevocationListJsonResponseItemDto item = new RevocationListJsonResponseItemDto();
 
         item.setKid(kve.getKid());
@@ -194,12 +276,19 @@ public class GeneratorService {
         //handle deleted kIds
         markDataForRemoval(changeList.getDeletedKids());
 
-        //handle updated kIds
-        List<String> updatedKids =
-            changeList.getUpdated().stream().map(ChangeListItem::getKidId).collect(Collectors.toList());
+        //handle updated kIds, if possible only the changed chunks are recalculated
+        changeList.getUpdated().forEach(this::findChangedChunks);
+
+        List<String> updatedKids = changeList.getUpdated().stream()
+            .filter(changeItem -> changeItem.getChangedChunks() == null)
+            .map(ChangeListItem::getKidId).collect(Collectors.toList());
 
         markDataForRemoval(updatedKids);
 
+        changeList.getUpdated().stream()
+            .filter(changeItem -> changeItem.getChangedChunks() != null)
+            .forEach(this::markChangedChunksForRemoval);
+
         generatePattern(changeList.getUpdated());
 
         //handle created kIds
@@ -208,89 +297,273 @@ public class GeneratorService {
 
     private void markDataForRemoval(List<String> kids) {
         if (!kids.isEmpty()) {
-            partitionRepository.setToBeDeletedForKids(kids);
-            sliceRepository.setToBeDeletedForKids(kids);
+            partitionRepository.setValidToForKids(generation, kids);
+            sliceRepository.setValidToForKids(generation, kids);
+            archiveRepository.setValidToForKids(generation, kids);
         }
     }
 
 
-    private void generatePattern(List<ChangeListItem> changeListItems) {
+    /**
+     * Determines the chunks of a kid, which contain updated hashes. The changed chunks are only set, if the
+     * storage mode of the kid is unchanged and the data of the kid is available in the current data set.
+     * Otherwise the whole kid needs to be recalculated.
+     */
+    private void findChangedChunks(ChangeListItem changeItem) {
+        if (!changeItem.getNewStorageMode().equals(changeItem.getOldStorageMode())
+            || !partitionGeneratorService.isPartitionDataAvailable(oldEtag, changeItem.getKidId())) {
+            return;
+        }
+
+        List<String> coordinates = hashesRepository.findDistinctUpdatedCoordinatesByKid(changeItem.getKidId());
+
+        if (coordinates.isEmpty()) {
+            return;
+        }
+
+        Map<String, Set<String>> changedChunks = new HashMap<>();
+
+        for (String coordinate : coordinates) {
+            String partitionId;
+            String chunk;
 
-        for (ChangeListItem changeItem : changeListItems) {
             switch (changeItem.getNewStorageMode()) {
-                case "POINT": {
-                    log.debug("Create pattern for kid {} in POINT mode.", changeItem.getKidId());
-                    generatePartitionsForKidInPointMode(changeItem);
+                case "POINT":
+                    partitionId = null;
+                    chunk = coordinate.substring(0, 1);
                     break;
-                }
-                case "VECTOR": {
-                    log.debug("Create pattern for kid {} in VECTOR mode.", changeItem.getKidId());
-                    generatePartitionsForKidInVectorMode(changeItem);
+                case "VECTOR":
+                    partitionId = coordinate.substring(0, 1);
+                    chunk = coordinate.substring(1, 2);
                     break;
-                }
-                case "COORDINATE": {
-                    log.debug("Create pattern for kid {} in COORDINATE mode.", changeItem.getKidId());
-                    generatePartitionsForKidInCoordinateMode(changeItem);
+                case "COORDINATE":
+                    partitionId = coordinate.substring(0, 2);
+                    chunk = coordinate.substring(2, 3);
                     break;
-                }
-                default: {
-                    log.warn("Unrecognised storage mode ({}) for kid: {}",
-                        changeItem.getNewStorageMode(), changeItem.getKidId());
-                }
+                default:
+                    return;
             }
+
+            changedChunks.computeIfAbsent(partitionId, key -> new HashSet<>()).add(chunk);
         }
+
+        log.debug("Changed chunks of kid {}: {}", changeItem.getKidId(), changedChunks);
+        changeItem.setChangedChunks(changedChunks);
     }
 
-    private void generatePartitionsForKidInPointMode(ChangeListItem changeItem) {
+    private void markChangedChunksForRemoval(ChangeListItem changeItem) {
+        Set<String> partitionIds = new HashSet<>();
+        Set<String> chunkKeys = new HashSet<>();
 
-        List<ChunkMetaViewDto> entities = pointViewRepository.findAllByKid(changeItem.getKidId()).stream()
-            .map(pointViewMapper::map).collect(Collectors.toList());
+        changeItem.getChangedChunks().forEach((partitionId, chunks) -> {
+            String partitionKey = partitionId == null ? "" : partitionId;
+            partitionIds.add(partitionKey);
+            // the archive of the whole partition
+            chunkKeys.add(partitionKey + "/");
+            chunks.forEach(chunk -> chunkKeys.add(partitionKey + "/" + chunk));
+        });
 
-        partitionGeneratorService.generatePartition(
-            etag, entities, changeItem.getKidId(), null, changeItem.getNewStorageMode());
+        partitionRepository.setValidToForPartitions(generation, changeItem.getKidId(), partitionIds);
+        sliceRepository.setValidToForChunks(generation, changeItem.getKidId(), chunkKeys);
+        archiveRepository.setValidToForChunks(generation, changeItem.getKidId(), chunkKeys);
+    }
 
 
-    }
+    private void generatePattern(List<ChangeListItem> changeListItems) {
 
-    private void generatePartitionsForKidInVectorMode(ChangeListItem changeItem) {
+        Iterator<ChangeListItem> changeItemIterator = changeListItems.iterator();
 
-        //get all ids for kId
-        List<String> partitionIds = vectorViewRepository.findDistinctIdsByKid(changeItem.getKidId());
+        // the tasks are created on demand, so that only the data of the partitions in flight is held in memory
+        Iterator<Callable<PartitionGenerationResult>> partitionTasks = new Iterator<>() {
+            private Iterator<Callable<PartitionGenerationResult>> currentTasks = Collections.emptyIterator();
 
-        log.debug("PartitionIds {}", partitionIds);
+            @Override
+            public boolean hasNext() {
+                while (!currentTasks.hasNext() && changeItemIterator.hasNext()) {
+                    currentTasks = getPartitionTasks(changeItemIterator.next());
+                }
+                return currentTasks.hasNext();
+            }
 
-        for (String partitionId : partitionIds) {
-            List<ChunkMetaViewDto> entities =
-                vectorViewRepository.findAllByKidAndId(changeItem.getKidId(), partitionId).stream()
-                    .map(vectorViewMapper::map).collect(Collectors.toList());
+            @Override
+            public Callable<PartitionGenerationResult> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return currentTasks.next();
+            }
+        };
 
-            partitionGeneratorService.generatePartition(
-                etag, entities, changeItem.getKidId(), partitionId, changeItem.getNewStorageMode());
+        runPartitionTasks(partitionTasks);
+    }
 
+    private Iterator<Callable<PartitionGenerationResult>> getPartitionTasks(ChangeListItem changeItem) {
+        if (changeItem.getChangedChunks() != null) {
+            log.debug("Create pattern for changed chunks of kid {} in {} mode.",
+                changeItem.getKidId(), changeItem.getNewStorageMode());
+            return getPartitionTasksForChangedChunks(changeItem).iterator();
         }
 
+        switch (changeItem.getNewStorageMode()) {
+            case "POINT": {
+                log.debug("Create pattern for kid {} in POINT mode.", changeItem.getKidId());
+                return List.of(getPartitionTaskForKidInPointMode(changeItem)).iterator();
+            }
+            case "VECTOR": {
+                log.debug("Create pattern for kid {} in VECTOR mode.", changeItem.getKidId());
+                return getPartitionTasksForKid(changeItem,
+                    vectorViewRepository.streamAllByKidOrderById(changeItem.getKidId()), vectorViewMapper::map);
+            }
+            case "COORDINATE": {
+                log.debug("Create pattern for kid {} in COORDINATE mode.", changeItem.getKidId());
+                return getPartitionTasksForKid(changeItem,
+                    coordinateViewRepository.streamAllByKidOrderById(changeItem.getKidId()),
+                    coordinateViewMapper::map);
+            }
+            default: {
+                log.warn("Unrecognised storage mode ({}) for kid: {}",
+                    changeItem.getNewStorageMode(), changeItem.getKidId());
+                return Collections.emptyIterator();
+            }
+        }
+    }
+
+    /**
+     * Runs the partition calculations on the worker pool. The number of running and finished, but not yet stored
+     * partitions is limited to keep the memory usage bounded. The results are stored by the calling thread as soon
+     * as they are finished.
+     */
+    private void runPartitionTasks(Iterator<Callable<PartitionGenerationResult>> taskIterator) {
+        CompletionService<PartitionGenerationResult> completionService =
+            new ExecutorCompletionService<>(partitionExecutor);
+
+        int maxTasksInFlight = 2 * properties.getGenerator().getParallelism();
+        List<Future<PartitionGenerationResult>> submittedTasks = new ArrayList<>();
+        int tasksInFlight = 0;
+
+        try {
+            while (taskIterator.hasNext() || tasksInFlight > 0) {
+                while (tasksInFlight < maxTasksInFlight && taskIterator.hasNext()) {
+                    submittedTasks.add(completionService.submit(taskIterator.next()));
+                    tasksInFlight++;
+                }
+
+                PartitionGenerationResult result = completionService.take().get();
+                tasksInFlight--;
+                partitionGeneratorService.savePartition(result);
+            }
+        } catch (InterruptedException e) {
+            submittedTasks.forEach(task -> task.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Partition generation was interrupted.", e);
+        } catch (ExecutionException e) {
+            submittedTasks.forEach(task -> task.cancel(true));
+            log.error("Partition generation failed: {}", e.getCause().getMessage());
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Partition generation failed.", e.getCause());
+        }
     }
 
-    private void generatePartitionsForKidInCoordinateMode(ChangeListItem changeItem) {
+    private List<Callable<PartitionGenerationResult>> getPartitionTasksForChangedChunks(ChangeListItem changeItem) {
+        String currentEtag = etag;
+        String previousEtag = oldEtag;
 
-        //get all ids for kId
-        List<String> partitionIds = coordinateViewRepository.findDistinctIdsByKid(changeItem.getKidId());
+        return changeItem.getChangedChunks().entrySet().stream()
+            .map(changedPartition -> (Callable<PartitionGenerationResult>) () -> {
+                List<ChunkMetaViewDto> entities = getChunkMetaData(changeItem, changedPartition.getKey()).stream()
+                    .filter(entity -> changedPartition.getValue().contains(entity.getChunk()))
+                    .collect(Collectors.toList());
 
-        log.debug("PartitionIds {}", partitionIds);
+                return partitionGeneratorService.calculatePartitionChunks(currentEtag, previousEtag, entities,
+                    changeItem.getKidId(), changedPartition.getKey(), changeItem.getNewStorageMode(),
+                    changedPartition.getValue());
+            }).collect(Collectors.toList());
+    }
 
-        for (String partitionId : partitionIds) {
-            List<ChunkMetaViewDto> entities =
-                coordinateViewRepository.findAllByKidAndId(changeItem.getKidId(), partitionId).stream()
+    private List<ChunkMetaViewDto> getChunkMetaData(ChangeListItem changeItem, String partitionId) {
+        switch (changeItem.getNewStorageMode()) {
+            case "POINT":
+                return pointViewRepository.findAllByKid(changeItem.getKidId()).stream()
+                    .map(pointViewMapper::map).collect(Collectors.toList());
+            case "VECTOR":
+                return vectorViewRepository.findAllByKidAndId(changeItem.getKidId(), partitionId).stream()
+                    .map(vectorViewMapper::map).collect(Collectors.toList());
+            case "COORDINATE":
+                return coordinateViewRepository.findAllByKidAndId(changeItem.getKidId(), partitionId).stream()
                     .map(coordinateViewMapper::map).collect(Collectors.toList());
+            default:
+                return List.of();
+        }
+    }
 
-            partitionGeneratorService.generatePartition(
-                etag, entities, changeItem.getKidId(), partitionId, changeItem.getNewStorageMode());
+    private Callable<PartitionGenerationResult> getPartitionTaskForKidInPointMode(ChangeListItem changeItem) {
+        String currentEtag = etag;
 
-        }
+        return () -> {
+            List<ChunkMetaViewDto> entities = pointViewRepository.findAllByKid(changeItem.getKidId()).stream()
+                .map(pointViewMapper::map).collect(Collectors.toList());
+
+            return partitionGeneratorService.calculatePartition(
+                currentEtag, entities, changeItem.getKidId(), null, changeItem.getNewStorageMode());
+        };
+    }
+
+    /**
+     * Creates the partition tasks of a kid from the ordered stream of its chunks. The stream is read in one pass,
+     * a task is created as soon as all chunks of a partition are read.
+     */
+    private <T extends AbstractChunkMetaViewEntity> Iterator<Callable<PartitionGenerationResult>>
+        getPartitionTasksForKid(ChangeListItem changeItem, Stream<T> entityStream,
+                                Function<T, ChunkMetaViewDto> mapper) {
+        String currentEtag = etag;
+        Iterator<T> entityIterator = entityStream.iterator();
+
+        return new Iterator<>() {
+            private ChunkMetaViewDto nextChunk = readNextChunk();
+
+            @Override
+            public boolean hasNext() {
+                return nextChunk != null;
+            }
+
+            @Override
+            public Callable<PartitionGenerationResult> next() {
+                if (nextChunk == null) {
+                    throw new NoSuchElementException();
+                }
+
+                String partitionId = nextChunk.getId();
+                List<ChunkMetaViewDto> entities = new ArrayList<>();
+
+                while (nextChunk != null && Objects.equals(partitionId, nextChunk.getId())) {
+                    entities.add(nextChunk);
+                    nextChunk = readNextChunk();
+                }
+
+                log.debug("PartitionId {}", partitionId);
 
+                return () -> partitionGeneratorService.calculatePartition(
+                    currentEtag, entities, changeItem.getKidId(), partitionId, changeItem.getNewStorageMode());
+            }
+
+            private ChunkMetaViewDto readNextChunk() {
+                if (!entityIterator.hasNext()) {
+                    entityStream.close();
+                    return null;
+                }
+
+                T entity = entityIterator.next();
+                // the entities are not needed after mapping, keep the persistence context small
+                entityManager.detach(entity);
+                return mapper.apply(entity);
+            }
+        };
     }
 
 
+
     private List<RevocationListJsonResponseItemDto> getRevocationListData(String etag) {
         Optional<RevocationListJsonEntity> optionalData = revocationListService.getRevocationListJsonData(etag);
         if (optionalData.isPresent()) {
@@ -0,0 +1,178 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.service;
+
+import eu.europa.ec.dgc.revocationdistribution.config.DgcConfigProperties;
+import eu.europa.ec.dgc.revocationdistribution.repository.HashesRepository;
+import java.nio.ByteBuffer;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Coalesces the db lookups of concurrent requests. The lookups arriving within the batch window are checked with
+ * one query and the result is split up by request again.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class HashQueryBatcher {
+
+    private final HashesRepository hashesRepository;
+
+    private final DgcConfigProperties properties;
+
+    private BlockingQueue<PendingLookup> pendingLookups;
+
+    private ExecutorService collectorExecutor;
+
+    private ExecutorService queryExecutor;
+
+
+    @PostConstruct
+    private void postConstruct() {
+        int queueSize = Math.max(1, properties.getLookup().getQueueSize());
+        pendingLookups = new LinkedBlockingQueue<>(queueSize);
+        queryExecutor = LookupService.createBoundedExecutor(properties.getLookup().getQueryParallelism(), queueSize,
+            "lookup-query-");
+
+        collectorExecutor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("lookup-batcher-"));
+        collectorExecutor.submit(this::collectBatches);
+    }
+
+    @PreDestroy
+    private void preDestroy() {
+        collectorExecutor.shutdownNow();
+        queryExecutor.shutdownNow();
+    }
+
+    /**
+     * Gets the hashes, which are revoked and not expired.
+     * @param hashes the hashes to check
+     * @return future of the revoked hashes, each hash is contained once, completed exceptionally with a
+     *     {@link RejectedExecutionException} if too many lookups are pending
+     */
+    public CompletableFuture<List<byte[]>> getRevokedHashes(List<byte[]> hashes) {
+        PendingLookup pendingLookup = new PendingLookup(hashes);
+        if (!pendingLookups.offer(pendingLookup)) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Too many pending lookups."));
+        }
+        return pendingLookup.result;
+    }
+
+    private void collectBatches() {
+        long batchWindow = TimeUnit.MILLISECONDS.toNanos(properties.getLookup().getBatchWindow());
+        int maxBatchSize = properties.getLookup().getMaxBatchSize();
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<PendingLookup> batch = new ArrayList<>();
+                PendingLookup pendingLookup = pendingLookups.take();
+                int batchSize = pendingLookup.hashes.size();
+                batch.add(pendingLookup);
+
+                long deadline = System.nanoTime() + batchWindow;
+                while (batchSize < maxBatchSize) {
+                    pendingLookup = pendingLookups.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (pendingLookup == null) {
+                        break;
+                    }
+                    batchSize += pendingLookup.hashes.size();
+                    batch.add(pendingLookup);
+                }
+
+                try {
+                    queryExecutor.submit(() -> queryBatch(batch));
+                } catch (RejectedExecutionException e) {
+                    batch.forEach(lookup -> lookup.result.completeExceptionally(e));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void queryBatch(List<PendingLookup> batch) {
+        try {
+            Set<ByteBuffer> hashes = batch.stream().flatMap(pendingLookup -> pendingLookup.hashes.stream())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+            Set<ByteBuffer> revokedHashes = new HashSet<>();
+            List<byte[]> queryHashes = new ArrayList<>();
+            ZonedDateTime checkTime = ZonedDateTime.now();
+
+            for (ByteBuffer hash : hashes) {
+                queryHashes.add(hash.array());
+
+                if (queryHashes.size() == properties.getLookup().getMaxBatchSize()) {
+                    queryRevokedHashes(queryHashes, checkTime, revokedHashes);
+                    queryHashes.clear();
+                }
+            }
+            queryRevokedHashes(queryHashes, checkTime, revokedHashes);
+
+            log.debug("Checked {} lookups with {} hashes in one batch.", batch.size(), hashes.size());
+
+            for (PendingLookup pendingLookup : batch) {
+                pendingLookup.result.complete(pendingLookup.hashes.stream().filter(revokedHashes::contains)
+                    .map(ByteBuffer::array).collect(Collectors.toList()));
+            }
+        } catch (RuntimeException e) {
+            log.error("Lookup of hashes failed: {}", e.getMessage());
+            batch.forEach(pendingLookup -> pendingLookup.result.completeExceptionally(e));
+        }
+    }
+
+    private void queryRevokedHashes(List<byte[]> queryHashes, ZonedDateTime checkTime, Set<ByteBuffer> revokedHashes) {
+        if (!queryHashes.isEmpty()) {
+            hashesRepository.getHashesPresentInListAndDbAndNotExpired(queryHashes, checkTime).stream()
+                .map(ByteBuffer::wrap).forEach(revokedHashes::add);
+        }
+    }
+
+    private static class PendingLookup {
+
+        private final Set<ByteBuffer> hashes;
+
+        private final CompletableFuture<List<byte[]>> result = new CompletableFuture<>();
+
+        PendingLookup(List<byte[]> hashes) {
+            this.hashes = hashes.stream().map(ByteBuffer::wrap).collect(Collectors.toCollection(LinkedHashSet::new));
+        }
+    }
+}
@@ -21,30 +21,35 @@
 package eu.europa.ec.dgc.revocationdistribution.service;
 
 
-import com.nimbusds.jose.JOSEException;
-import com.nimbusds.jose.jwk.ECKey;
-import com.nimbusds.jose.util.Base64URL;
-import eu.europa.ec.dgc.revocationdistribution.client.IssuanceDgciRestClient;
-import eu.europa.ec.dgc.revocationdistribution.dto.DidAuthentication;
-import eu.europa.ec.dgc.revocationdistribution.dto.DidDocument;
+import eu.europa.ec.dgc.revocationdistribution.config.DgcConfigProperties;
 import eu.europa.ec.dgc.revocationdistribution.dto.RevocationCheckTokenPayload;
 import eu.europa.ec.dgc.revocationdistribution.exception.TokenValidationException;
-import eu.europa.ec.dgc.revocationdistribution.repository.HashesRepository;
-import feign.FeignException;
+import eu.europa.ec.dgc.revocationdistribution.model.RevocationLookupFilter;
+import eu.europa.ec.dgc.revocationdistribution.model.RevocationLookupIndex;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwt;
 import java.security.PublicKey;
-import java.text.ParseException;
 import java.time.Instant;
-import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.util.encoders.DecoderException;
 import org.bouncycastle.util.encoders.Hex;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
 @Slf4j
@@ -54,21 +59,74 @@ public class LookupService {
 
     private final RevocationCheckTokenParser revocationCheckTokenParser;
 
-    private final IssuanceDgciRestClient issuanceDgciRestClient;
+    private final PublicKeyCache publicKeyCache;
 
-    private final HashesRepository hashesRepository;
+    private final HashQueryBatcher hashQueryBatcher;
+
+    private final DgcConfigProperties properties;
+
+    private final RevocationLookupIndexService revocationLookupIndexService;
+
+    private ExecutorService lookupExecutor;
+
+    private ExecutorService verifyExecutor;
+
+
+    @PostConstruct
+    private void postConstruct() {
+        int queueSize = Math.max(1, properties.getLookup().getQueueSize());
+
+        lookupExecutor = createBoundedExecutor(properties.getLookup().getParallelism(), queueSize, "lookup-");
+
+        int verifyParallelism = properties.getLookup().getVerifyParallelism();
+        verifyExecutor = createBoundedExecutor(
+            verifyParallelism > 0 ? verifyParallelism : Runtime.getRuntime().availableProcessors(),
+            queueSize, "lookup-verify-");
+    }
+
+    @PreDestroy
+    private void preDestroy() {
+        lookupExecutor.shutdownNow();
+        verifyExecutor.shutdownNow();
+    }
+
+    /**
+     * Creates a fixed thread pool with a bounded queue. Tasks submitted to a full queue are rejected with a
+     * {@link java.util.concurrent.RejectedExecutionException}, which is answered with 503 Service Unavailable.
+     */
+    static ExecutorService createBoundedExecutor(int parallelism, int queueSize, String threadNamePrefix) {
+        int threads = Math.max(1, parallelism);
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueSize)), new CustomizableThreadFactory(threadNamePrefix));
+    }
+
+    /**
+     * Looks up the revocation state for a list of revocation check tokens. The tokens are validated asynchronously
+     * on the lookup worker pools, so neither the calling thread nor a worker thread is blocked.
+     *
+     * @param revocationCheckTokens list of revocation check tokens
+     * @return future of the revoked hashes, completed exceptionally if one of the tokens could not be validated
+     */
+    public CompletableFuture<List<String>> lookupRevocation(List<String> revocationCheckTokens) {
+        return validateRevocationCheckTokens(revocationCheckTokens).thenCompose(this::checkForRevocation);
+    }
 
     /**
      * Validates the given recocationCheckTokes. Therefore, it checks the format and signature. For the signature check
-     * the public key of the certificate is downloaded.
+     * the public key of the certificate is downloaded, if it is not cached.
      *
      * @param revocationCheckTokens list of revocation check tokens to be validated
-     * @return List of token payload
-     * @throws TokenValidationException is thrown when one of the tokens could not be validated
+     * @return future of the token payloads, completed exceptionally with a {@link TokenValidationException}
+     *     when one of the tokens could not be validated
      */
-    public List<RevocationCheckTokenPayload> validateRevocationCheckTokens(List<String> revocationCheckTokens)
-        throws TokenValidationException {
-        List<RevocationCheckTokenPayload> tokenPayloads = new ArrayList<>();
+    public CompletableFuture<List<RevocationCheckTokenPayload>> validateRevocationCheckTokens(
+        List<String> revocationCheckTokens) {
+        return CompletableFuture.supplyAsync(() -> extractClaims(revocationCheckTokens), lookupExecutor)
+            .thenCompose(tokenClaims -> verifyRevocationCheckTokens(revocationCheckTokens, tokenClaims));
+    }
+
+    private List<Claims> extractClaims(List<String> revocationCheckTokens) throws TokenValidationException {
+        List<Claims> tokenClaims = new ArrayList<>();
 
         for (String token : revocationCheckTokens) {
             Jwt jwt = revocationCheckTokenParser.extractPayload(token);
@@ -87,83 +145,79 @@ public class LookupService {
                 throw new TokenValidationException("Required Fields Missing in token", HttpStatus.BAD_REQUEST.value());
             }
 
-            PublicKey publicKey = downloadPublicKey(claims.getSubject());
-            RevocationCheckTokenPayload payload = revocationCheckTokenParser.parseToken(token, publicKey);
-
-            tokenPayloads.add(payload);
+            tokenClaims.add(claims);
         }
 
-        return tokenPayloads;
+        return tokenClaims;
+    }
+
+    private CompletableFuture<List<RevocationCheckTokenPayload>> verifyRevocationCheckTokens(
+        List<String> revocationCheckTokens, List<Claims> tokenClaims) {
+        // the public keys of all tokens are resolved at once, so that the downloads run concurrently
+        return publicKeyCache.getPublicKeys(tokenClaims.stream().map(Claims::getSubject).collect(Collectors.toList()))
+            .thenCompose(publicKeys -> {
+                // the signatures are verified in parallel, the order of the payloads is kept
+                List<CompletableFuture<RevocationCheckTokenPayload>> verifications =
+                    IntStream.range(0, revocationCheckTokens.size())
+                        .mapToObj(i -> CompletableFuture.supplyAsync(() -> revocationCheckTokenParser.parseToken(
+                            revocationCheckTokens.get(i), publicKeys.get(tokenClaims.get(i).getSubject())),
+                            verifyExecutor))
+                        .collect(Collectors.toList());
+
+                return CompletableFuture.allOf(verifications.toArray(new CompletableFuture[0]))
+                    .thenApply(v -> verifications.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+            });
     }
 
     /**
-     * Checks if the revocation status of the given tokens.
+     * Checks if the revocation status of the given tokens. The check is done in the lookup index, if available,
+     * otherwise in the db. The hashes checked in the db are screened by the lookup filter, if available.
      *
      * @param tokenPayloads tokens to be checked
-     * @return list of revoked tokens an empty list meens none of the provided certificates / token are revoked.
+     * @return future of the list of revoked tokens an empty list meens none of the provided certificates / token
+     *     are revoked.
      */
+    public CompletableFuture<List<String>> checkForRevocation(List<RevocationCheckTokenPayload> tokenPayloads) {
 
-    public List<String> checkForRevocation(List<RevocationCheckTokenPayload> tokenPayloads) {
+        List<byte[]> hashes = tokenPayloads.stream().map(RevocationCheckTokenPayload::getPayload)
+            .flatMap(List::stream).map(this::decodeHexHash).filter(Objects::nonNull).collect(Collectors.toList());
 
-        List<String> hashes = tokenPayloads.stream().map(RevocationCheckTokenPayload::getPayload)
-            .flatMap(List::stream).collect(Collectors.toList());
+        if (hashes.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
 
-        return hashesRepository.getHashesPresentInListAndDbAndNotExpired(hashes, ZonedDateTime.now());
+        Optional<RevocationLookupIndex> index = revocationLookupIndexService.getIndex();
 
-    }
+        if (index.isPresent()) {
+            long checkTime = Instant.now().getEpochSecond();
 
-    /**
-     * Downloads the public key of a dcc from the issuance service.
-     *
-     * @param hash of the cert, for which the public key is downloaded
-     * @return Public key of the certificate
-     * @throws TokenValidationException is thrown if the public key could not be determined
-     */
-    private PublicKey downloadPublicKey(String hash) throws TokenValidationException {
-        ResponseEntity<DidDocument> responseEntity;
-        DidDocument didDocument;
-
-        try {
-            String urlEncodedHash = Base64URL.encode(Hex.decode(hash)).toString();
-            responseEntity = issuanceDgciRestClient.getDgciByHash(urlEncodedHash);
-        } catch (IllegalArgumentException e) {
-            log.error("Encoding of dgci hash for public key request failed.");
-            throw new TokenValidationException("Token verification failed: Wrong format of DGCI hash for public key",
-                HttpStatus.BAD_REQUEST.value());
-        } catch (FeignException e) {
-            if (e.status() == HttpStatus.NOT_FOUND.value()) {
-                log.error("Download of dgci failed. {}",
-                    e.status());
-                throw new TokenValidationException("Token verification failed: Public key not found.",
-                    HttpStatus.BAD_REQUEST.value());
-            }
-
-            log.error("Download of dgci failed. {}",
-                e.status());
-            throw new TokenValidationException("Token verification failed due to Server Error",
-                HttpStatus.INTERNAL_SERVER_ERROR.value());
+            return CompletableFuture.completedFuture(hashes.stream()
+                .filter(hash -> index.get().isRevoked(hash, checkTime))
+                .map(Hex::toHexString).distinct().collect(Collectors.toList()));
         }
 
-        if (responseEntity.getStatusCode() != HttpStatus.OK) {
-            throw new TokenValidationException("Token verification failed: No Public key found.",
-                HttpStatus.BAD_REQUEST.value());
-        }
+        Optional<RevocationLookupFilter> filter = revocationLookupIndexService.getFilter();
 
-        didDocument = responseEntity.getBody();
+        if (filter.isPresent()) {
+            // only the hashes, which might be revoked, are checked in the db
+            hashes = hashes.stream().filter(filter.get()::mightBeRevoked).collect(Collectors.toList());
 
-        if (didDocument.getAuthentication().isEmpty()) {
-            throw new TokenValidationException("Token verification failed: No Public key found.",
-                HttpStatus.BAD_REQUEST.value());
+            if (hashes.isEmpty()) {
+                return CompletableFuture.completedFuture(new ArrayList<>());
+            }
         }
 
-        DidAuthentication didAuth = didDocument.getAuthentication().get(0);
+        // the db lookups of concurrent requests are combined into one query
+        return hashQueryBatcher.getRevokedHashes(hashes).thenApply(revokedHashes ->
+            revokedHashes.stream().map(Hex::toHexString).collect(Collectors.toList()));
+    }
 
+    private byte[] decodeHexHash(String hash) {
         try {
-            return ECKey.parse(didAuth.getPublicKeyJsw().toString()).toPublicKey();
-        } catch (ParseException | JOSEException e) {
-            log.error("Parsing of publicKey failed. {}", e.toString());
-            throw new TokenValidationException("Token verification failed: Public key could not be parsed",
-                HttpStatus.BAD_REQUEST.value());
+            return Hex.decode(hash);
+        } catch (DecoderException e) {
+            log.warn("Invalid hash in revocation check token payload: {}", hash);
+            return null;
         }
     }
 }
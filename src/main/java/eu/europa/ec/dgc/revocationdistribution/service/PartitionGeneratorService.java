@@ -24,18 +24,27 @@ package eu.europa.ec.dgc.revocationdistribution.service;
 import eu.europa.ec.dgc.revocationdistribution.dto.ChunkMetaViewDto;
 import eu.europa.ec.dgc.revocationdistribution.dto.PartitionChunksJsonItemDto;
 import eu.europa.ec.dgc.revocationdistribution.dto.SliceDataDto;
+import eu.europa.ec.dgc.revocationdistribution.entity.ArchiveEntity;
 import eu.europa.ec.dgc.revocationdistribution.entity.PartitionEntity;
 import eu.europa.ec.dgc.revocationdistribution.entity.SliceEntity;
+import eu.europa.ec.dgc.revocationdistribution.model.PartitionGenerationResult;
 import eu.europa.ec.dgc.revocationdistribution.model.SliceType;
+import eu.europa.ec.dgc.revocationdistribution.repository.ArchiveRepository;
 import eu.europa.ec.dgc.revocationdistribution.repository.PartitionRepository;
 import eu.europa.ec.dgc.revocationdistribution.repository.SliceRepository;
 import eu.europa.ec.dgc.revocationdistribution.utils.HelperFunctions;
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -49,54 +58,73 @@ public class PartitionGeneratorService {
 
     private final SliceRepository sliceRepository;
 
+    private final ArchiveRepository archiveRepository;
+
     private final HelperFunctions helperFunctions;
 
     private final Optional<SliceCalculationBloomFilterImpl> sliceCalculationBloomFilter;
 
     private final Optional<SliceCalculationVarHashListImpl> sliceCalculationHashList;
 
+    private final GeneratorMetrics generatorMetrics;
+
     /**
-     * This function generates the partition and corresponding slices for the given data. The slice data is
-     * stored as bloomfilter, varhashlist or as both. Corresponding to the application settings.
+     * This function calculates the partition and corresponding slices for the given data. The slice data is
+     * calculated as bloomfilter, varhashlist or as both. Corresponding to the application settings.
+     * The calculated entities are not stored, this is done by {@link #savePartition(PartitionGenerationResult)}.
      * @param etag The etag value of the generated data set.
      * @param entities The entries, holding the hashes and metadata
      * @param kid The kid of the given data
      * @param id The partition id of the given data
+     * @return the calculated partition and slice entities
      */
-
-    public void generatePartition(String etag, List<ChunkMetaViewDto> entities,
-                                   String kid, String id, String storageMode) {
+    public PartitionGenerationResult calculatePartition(String etag, List<ChunkMetaViewDto> entities,
+                                                        String kid, String id, String storageMode) {
         log.info("Generate Partition of entities: {}, kId: {}, ID: {}, etag: {}", entities.size(), kid, id, etag);
-        sliceCalculationBloomFilter.ifPresent(calculationBloomFilter -> generatePartition(etag, entities, kid, id,
-            calculationBloomFilter, storageMode));
 
-        sliceCalculationHashList.ifPresent(sliceCalculationVarHashList -> generatePartition(etag, entities, kid, id,
-            sliceCalculationVarHashList, storageMode));
+        return generatorMetrics.recordPartition(storageMode, () -> {
+            PartitionGenerationResult result = new PartitionGenerationResult();
 
-    }
+            sliceCalculationBloomFilter.ifPresent(calculationBloomFilter -> calculatePartition(result, etag,
+                entities, kid, id, calculationBloomFilter, storageMode, null, List.of()));
 
+            sliceCalculationHashList.ifPresent(sliceCalculationVarHashList -> calculatePartition(result, etag,
+                entities, kid, id, sliceCalculationVarHashList, storageMode, null, List.of()));
 
-    private void generatePartition(String etag, List<ChunkMetaViewDto> entities,
-                                   String kid, String id, SliceCalculation sliceCalculation, String storageMode) {
+            return result;
+        });
+    }
+
+    private void calculatePartition(PartitionGenerationResult result, String etag, List<ChunkMetaViewDto> entities,
+                                    String kid, String id, SliceCalculation sliceCalculation, String storageMode,
+                                    PartitionEntity previousPartition, List<SliceEntity> keptSlices) {
 
-        String x = null;
-        String y = null;
+        String x = previousPartition == null ? null : previousPartition.getX();
+        String y = previousPartition == null ? null : previousPartition.getY();
         ZonedDateTime lastUpdated = ZonedDateTime.parse("2021-06-01T00:00:00Z");
         ZonedDateTime expired = ZonedDateTime.parse("2021-06-01T00:00:00Z");
 
-        if (entities.isEmpty()) {
+        if (entities.isEmpty() && keptSlices.isEmpty()) {
             log.info("No Entries found in View for kid: {} id: {}", kid, id);
             return;
         }
 
         Map<String, Map<String, PartitionChunksJsonItemDto>> chunksJson = new HashMap<>();
+        List<SliceEntity> partitionSlices = new ArrayList<>();
+
+        for (SliceEntity keptSlice : keptSlices) {
+            chunksJson.put(keptSlice.getChunk(), previousPartition.getChunks().get(keptSlice.getChunk()));
+
+            lastUpdated = lastUpdated.isAfter(keptSlice.getLastUpdated()) ? lastUpdated : keptSlice.getLastUpdated();
+            expired = expired.isAfter(keptSlice.getExpired()) ? expired : keptSlice.getExpired();
+        }
 
         for (ChunkMetaViewDto mve : entities) {
 
             if (!Objects.equals(mve.getKid(), kid) || !Objects.equals(mve.getId(), id)) {
                 log.error("Kid and/or id does not match: kid: {} , {} id {}, {}", kid, mve.getKid(), id, mve.getId());
             } else {
-                log.info("Number of hashes per slice: {}",mve.getHashes().length);
+                log.info("Number of hashes per slice: {}", mve.getHashCount());
                 SliceDataDto sliceDataDto = sliceCalculation.calculateSlice(mve.getHashes(), storageMode);
                 if (sliceDataDto != null) {
                     Map<String, PartitionChunksJsonItemDto> chunkItemsMap;
@@ -110,9 +138,9 @@ public class PartitionGeneratorService {
                     chunkItemsMap.put(helperFunctions.getDateTimeString(mve.getExpired()), sliceDataDto.getMetaData());
                     chunksJson.put(mve.getChunk(), chunkItemsMap);
 
-                    saveSlice(etag, mve.getKid(), id, mve.getChunk(), sliceDataDto.getMetaData().getHash(),
-                        mve.getLastUpdated(), mve.getExpired(), sliceCalculation.getSliceType(),
-                        sliceDataDto.getBinaryData());
+                    partitionSlices.add(createSlice(etag, mve.getKid(), id, mve.getChunk(),
+                        sliceDataDto.getMetaData().getHash(), mve.getLastUpdated(), mve.getExpired(),
+                        sliceCalculation.getSliceType(), sliceDataDto.getBinaryData()));
 
                     x = mve.getX();
                     y = mve.getY();
@@ -123,14 +151,147 @@ public class PartitionGeneratorService {
             }
         }
         if (!chunksJson.isEmpty()) {
-            savePartition(etag, kid, id, x, y, null,
-                lastUpdated, expired, sliceCalculation.getSliceType(), chunksJson);
+            result.getSlices().addAll(partitionSlices);
+            result.getPartitions().add(createPartition(etag, kid, id, x, y, null,
+                lastUpdated, expired, sliceCalculation.getSliceType(), chunksJson));
+
+            createArchives(result, etag, kid, id, sliceCalculation.getSliceType(), keptSlices, partitionSlices);
         }
 
     }
 
-    private void saveSlice(String etag, String kid, String id, String chunk, String hash,
-                           ZonedDateTime lastUpdated, ZonedDateTime expired, SliceType dataType, byte[] binaryData) {
+    /**
+     * This function recalculates the given chunks of a partition. The slices of all other chunks are taken over
+     * from the previous data set. Same as for {@link #calculatePartition(String, List, String, String, String)}
+     * the calculated entities are not stored.
+     * @param etag The etag value of the generated data set.
+     * @param previousEtag The etag value of the current data set.
+     * @param entities The entries of the changed chunks, holding the hashes and metadata
+     * @param kid The kid of the given data
+     * @param id The partition id of the given data
+     * @param chunks The chunks to recalculate
+     * @return the calculated partition, the new slice entities and the archives
+     */
+    public PartitionGenerationResult calculatePartitionChunks(String etag, String previousEtag,
+                                                              List<ChunkMetaViewDto> entities, String kid, String id,
+                                                              String storageMode, Set<String> chunks) {
+        log.info("Generate chunks {} of Partition of entities: {}, kId: {}, ID: {}, etag: {}",
+            chunks, entities.size(), kid, id, etag);
+
+        return generatorMetrics.recordPartition(storageMode, () -> {
+            PartitionGenerationResult result = new PartitionGenerationResult();
+
+            sliceCalculationBloomFilter.ifPresent(calculationBloomFilter -> calculatePartitionChunks(result, etag,
+                previousEtag, entities, kid, id, calculationBloomFilter, storageMode, chunks));
+
+            sliceCalculationHashList.ifPresent(sliceCalculationVarHashList -> calculatePartitionChunks(result, etag,
+                previousEtag, entities, kid, id, sliceCalculationVarHashList, storageMode, chunks));
+
+            return result;
+        });
+    }
+
+    private void calculatePartitionChunks(PartitionGenerationResult result, String etag, String previousEtag,
+                                          List<ChunkMetaViewDto> entities, String kid, String id,
+                                          SliceCalculation sliceCalculation, String storageMode, Set<String> chunks) {
+
+        SliceType dataType = sliceCalculation.getSliceType();
+        Optional<PartitionEntity> previousPartition;
+        List<SliceEntity> keptSlices = List.of();
+
+        if (id == null) {
+            previousPartition =
+                partitionRepository.findOneByEtagAndKidAndIdIsNullAndDataType(previousEtag, kid, dataType);
+        } else {
+            previousPartition =
+                partitionRepository.findOneByEtagAndKidAndIdAndDataType(previousEtag, kid, id, dataType);
+        }
+
+        if (previousPartition.isPresent()) {
+            if (id == null) {
+                keptSlices = sliceRepository.findAllByEtagAndKidAndIdIsNullAndDataTypeAndChunkNotIn(
+                    previousEtag, kid, dataType, chunks);
+            } else {
+                keptSlices = sliceRepository.findAllByEtagAndKidAndIdAndDataTypeAndChunkNotIn(
+                    previousEtag, kid, id, dataType, chunks);
+            }
+        }
+
+        calculatePartition(result, etag, entities, kid, id, sliceCalculation, storageMode,
+            previousPartition.orElse(null), keptSlices);
+    }
+
+    /**
+     * Checks if partitions of all calculated slice types are available for the kid in the given data set.
+     * @param etag The etag of the data set
+     * @param kid The kid to check
+     * @return true if the data of the kid is complete
+     */
+    public boolean isPartitionDataAvailable(String etag, String kid) {
+        return sliceCalculationBloomFilter.map(calculation ->
+                partitionRepository.existsByEtagAndKidAndDataType(etag, kid, calculation.getSliceType())).orElse(true)
+            && sliceCalculationHashList.map(calculation ->
+                partitionRepository.existsByEtagAndKidAndDataType(etag, kid, calculation.getSliceType())).orElse(true);
+    }
+
+    /**
+     * Stores the calculated partitions and slices in the db.
+     * @param result The calculated partition and slice entities.
+     */
+    public void savePartition(PartitionGenerationResult result) {
+        sliceRepository.saveAll(result.getSlices());
+        archiveRepository.saveAll(result.getArchives());
+        partitionRepository.saveAll(result.getPartitions());
+
+        generatorMetrics.recordSlices(result.getSlices());
+    }
+
+
+    /**
+     * Creates the gzip compressed tar archives for the whole partition and for each new chunk of the partition.
+     * The archives of the kept chunks are taken over from the previous data set.
+     * The archives are served for unfiltered slice requests.
+     */
+    private void createArchives(PartitionGenerationResult result, String etag, String kid, String id,
+                                SliceType dataType, List<SliceEntity> keptSlices, List<SliceEntity> newSlices) {
+
+        Map<String, List<SliceEntity>> chunkSlices = newSlices.stream()
+            .collect(Collectors.groupingBy(SliceEntity::getChunk, LinkedHashMap::new, Collectors.toList()));
+
+        List<SliceEntity> partitionSlices = new ArrayList<>(keptSlices);
+        partitionSlices.addAll(newSlices);
+
+        try {
+            result.getArchives().add(createArchive(etag, kid, id, null, dataType, partitionSlices));
+
+            for (Map.Entry<String, List<SliceEntity>> chunk : chunkSlices.entrySet()) {
+                result.getArchives().add(createArchive(etag, kid, id, chunk.getKey(), dataType, chunk.getValue()));
+            }
+        } catch (IOException | NoSuchAlgorithmException e) {
+            log.error("Could not create archives for kid: {} id: {}, {}", kid, id, e.getMessage());
+            result.getArchives().clear();
+        }
+    }
+
+    private ArchiveEntity createArchive(String etag, String kid, String id, String chunk, SliceType dataType,
+                                        List<SliceEntity> sliceEntities) throws IOException, NoSuchAlgorithmException {
+
+        ArchiveEntity archiveEntity = new ArchiveEntity();
+
+        archiveEntity.setEtag(etag);
+        archiveEntity.setKid(kid);
+        archiveEntity.setId(id);
+        archiveEntity.setChunk(chunk);
+        archiveEntity.setDataType(dataType);
+        archiveEntity.setBinaryData(helperFunctions.createTarForSlices(sliceEntities));
+        archiveEntity.setContentHash(helperFunctions.calculateHash(archiveEntity.getBinaryData()));
+
+        return archiveEntity;
+    }
+
+    private SliceEntity createSlice(String etag, String kid, String id, String chunk, String hash,
+                                    ZonedDateTime lastUpdated, ZonedDateTime expired, SliceType dataType,
+                                    byte[] binaryData) {
 
         SliceEntity sliceEntity = new SliceEntity();
 
@@ -143,16 +304,14 @@ public class PartitionGeneratorService {
         sliceEntity.setExpired(expired);
         sliceEntity.setDataType(dataType);
         sliceEntity.setBinaryData(binaryData);
-        sliceEntity.setToBeDeleted(false);
-
-        sliceRepository.save(sliceEntity);
 
+        return sliceEntity;
     }
 
 
-    private void savePartition(String etag, String kid, String id, String x, String y, String z,
-                               ZonedDateTime lastUpdated, ZonedDateTime expired, SliceType dataType,
-                               Map<String, Map<String, PartitionChunksJsonItemDto>> chunksJson) {
+    private PartitionEntity createPartition(String etag, String kid, String id, String x, String y, String z,
+                                            ZonedDateTime lastUpdated, ZonedDateTime expired, SliceType dataType,
+                                            Map<String, Map<String, PartitionChunksJsonItemDto>> chunksJson) {
 
         PartitionEntity partitionEntity = new PartitionEntity();
 
@@ -166,9 +325,8 @@ public class PartitionGeneratorService {
         partitionEntity.setExpired(expired);
         partitionEntity.setDataType(dataType);
         partitionEntity.setChunks(chunksJson);
-        partitionEntity.setToBeDeleted(false);
 
-        partitionRepository.save(partitionEntity);
+        return partitionEntity;
     }
 
 
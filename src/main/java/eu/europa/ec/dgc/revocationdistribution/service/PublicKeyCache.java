@@ -0,0 +1,233 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.util.Base64URL;
+import eu.europa.ec.dgc.revocationdistribution.client.IssuanceDgciRestClient;
+import eu.europa.ec.dgc.revocationdistribution.config.DgcConfigProperties;
+import eu.europa.ec.dgc.revocationdistribution.dto.DidAuthentication;
+import eu.europa.ec.dgc.revocationdistribution.dto.DidDocument;
+import eu.europa.ec.dgc.revocationdistribution.exception.TokenValidationException;
+import feign.FeignException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.security.PublicKey;
+import java.text.ParseException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.util.encoders.Hex;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Time bounded cache for the public keys of the dcc, which are downloaded from the issuance service. Keys, which
+ * are not found, are cached too, but for a shorter time. Failed downloads are not cached.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class PublicKeyCache {
+
+    private final IssuanceDgciRestClient issuanceDgciRestClient;
+
+    private final DgcConfigProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private ExecutorService downloadExecutor;
+
+    private AsyncCache<String, Optional<PublicKey>> cache;
+
+
+    @PostConstruct
+    private void postConstruct() {
+        DgcConfigProperties.PublicKeyCacheConfig config = properties.getPublicKeyCache();
+
+        downloadExecutor = Executors.newFixedThreadPool(Math.max(1, config.getParallelism()),
+            new CustomizableThreadFactory("public-key-download-"));
+
+        long expireAfterWrite = TimeUnit.MILLISECONDS.toNanos(config.getExpireAfterWrite());
+        long notFoundExpireAfterWrite = TimeUnit.MILLISECONDS.toNanos(config.getNotFoundExpireAfterWrite());
+
+        cache = Caffeine.newBuilder()
+            .maximumSize(config.getMaxSize())
+            .expireAfter(new Expiry<String, Optional<PublicKey>>() {
+                @Override
+                public long expireAfterCreate(String hash, Optional<PublicKey> publicKey, long currentTime) {
+                    return publicKey.isPresent() ? expireAfterWrite : notFoundExpireAfterWrite;
+                }
+
+                @Override
+                public long expireAfterUpdate(String hash, Optional<PublicKey> publicKey, long currentTime,
+                                              long currentDuration) {
+                    return expireAfterCreate(hash, publicKey, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String hash, Optional<PublicKey> publicKey, long currentTime,
+                                            long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .executor(downloadExecutor)
+            .recordStats()
+            .buildAsync();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "publicKeys");
+    }
+
+    @PreDestroy
+    private void preDestroy() {
+        downloadExecutor.shutdownNow();
+    }
+
+    /**
+     * Gets the public keys for the given dgci hashes. The keys, which are not cached, are downloaded concurrently.
+     * The returned future fails as soon as one of the keys could not be determined or was not found.
+     *
+     * @param hashes the hashes of the certs
+     * @return future of the public keys by hash, completed exceptionally with a {@link TokenValidationException}
+     *     if one of the public keys could not be determined
+     */
+    public CompletableFuture<Map<String, PublicKey>> getPublicKeys(Collection<String> hashes) {
+        Map<String, CompletableFuture<Optional<PublicKey>>> futures = new LinkedHashMap<>();
+
+        for (String hash : hashes) {
+            futures.computeIfAbsent(hash, key -> cache.get(key, this::downloadPublicKey));
+        }
+
+        CompletableFuture<Map<String, PublicKey>> result = new CompletableFuture<>();
+        // fail fast, without waiting for the other downloads, also if a key was not found
+        futures.values().forEach(future -> future.whenComplete((publicKey, e) -> {
+            if (e != null) {
+                result.completeExceptionally(toTokenValidationException(e));
+            } else if (publicKey.isEmpty()) {
+                result.completeExceptionally(publicKeyNotFound());
+            }
+        }));
+
+        CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).whenComplete((v, e) -> {
+            if (e != null) {
+                result.completeExceptionally(toTokenValidationException(e));
+                return;
+            }
+
+            Map<String, PublicKey> publicKeys = new LinkedHashMap<>();
+            for (Map.Entry<String, CompletableFuture<Optional<PublicKey>>> entry : futures.entrySet()) {
+                Optional<PublicKey> publicKey = entry.getValue().join();
+                if (publicKey.isEmpty()) {
+                    result.completeExceptionally(publicKeyNotFound());
+                    return;
+                }
+                publicKeys.put(entry.getKey(), publicKey.get());
+            }
+            result.complete(publicKeys);
+        });
+
+        return result;
+    }
+
+    private TokenValidationException publicKeyNotFound() {
+        return new TokenValidationException("Token verification failed: Public key not found.",
+            HttpStatus.BAD_REQUEST.value());
+    }
+
+    private TokenValidationException toTokenValidationException(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+
+        if (cause instanceof TokenValidationException) {
+            return (TokenValidationException) cause;
+        }
+        log.error("Download of public key failed. {}", cause.toString());
+        return new TokenValidationException("Token verification failed due to Server Error",
+            HttpStatus.INTERNAL_SERVER_ERROR.value());
+    }
+
+    /**
+     * Downloads the public key of a dcc from the issuance service.
+     *
+     * @param hash of the cert, for which the public key is downloaded
+     * @return Public key of the certificate, empty if no public key was found
+     * @throws TokenValidationException is thrown if the public key could not be determined
+     */
+    private Optional<PublicKey> downloadPublicKey(String hash) throws TokenValidationException {
+        ResponseEntity<DidDocument> responseEntity;
+        DidDocument didDocument;
+
+        try {
+            String urlEncodedHash = Base64URL.encode(Hex.decode(hash)).toString();
+            responseEntity = issuanceDgciRestClient.getDgciByHash(urlEncodedHash);
+        } catch (IllegalArgumentException e) {
+            log.error("Encoding of dgci hash for public key request failed.");
+            throw new TokenValidationException("Token verification failed: Wrong format of DGCI hash for public key",
+                HttpStatus.BAD_REQUEST.value());
+        } catch (FeignException e) {
+            if (e.status() == HttpStatus.NOT_FOUND.value()) {
+                log.error("Download of dgci failed. {}",
+                    e.status());
+                return Optional.empty();
+            }
+
+            log.error("Download of dgci failed. {}",
+                e.status());
+            throw new TokenValidationException("Token verification failed due to Server Error",
+                HttpStatus.INTERNAL_SERVER_ERROR.value());
+        }
+
+        if (responseEntity.getStatusCode() != HttpStatus.OK) {
+            return Optional.empty();
+        }
+
+        didDocument = responseEntity.getBody();
+
+        if (didDocument.getAuthentication().isEmpty()) {
+            return Optional.empty();
+        }
+
+        DidAuthentication didAuth = didDocument.getAuthentication().get(0);
+
+        try {
+            return Optional.of(ECKey.parse(didAuth.getPublicKeyJsw().toString()).toPublicKey());
+        } catch (ParseException | JOSEException e) {
+            log.error("Parsing of publicKey failed. {}", e.toString());
+            throw new TokenValidationException("Token verification failed: Public key could not be parsed",
+                HttpStatus.BAD_REQUEST.value());
+        }
+    }
+}
@@ -20,23 +20,48 @@
 
 package eu.europa.ec.dgc.revocationdistribution.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import eu.europa.ec.dgc.revocationdistribution.config.DgcConfigProperties;
 import eu.europa.ec.dgc.revocationdistribution.dto.RevocationCheckTokenPayload;
 import eu.europa.ec.dgc.revocationdistribution.exception.TokenValidationException;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jws;
 import io.jsonwebtoken.Jwt;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.SignatureException;
 import java.security.PublicKey;
+import javax.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class RevocationCheckTokenParser {
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    private final DgcConfigProperties properties;
+
+    /**
+     * The parsers are immutable and thread safe, so one parser is reused per public key. The public keys are the
+     * instances held in the {@link PublicKeyCache}.
+     */
+    private Cache<PublicKey, JwtParser> parsers;
+
+
+    @PostConstruct
+    private void postConstruct() {
+        parsers = Caffeine.newBuilder()
+            .maximumSize(properties.getPublicKeyCache().getMaxSize())
+            .weakKeys()
+            .build();
+    }
+
     /**
      * parse Token.
      *
@@ -45,18 +70,12 @@ public class RevocationCheckTokenParser {
      * @return RevocationCheckTokenPayload
      */
     public RevocationCheckTokenPayload parseToken(String jwtCompact, PublicKey publicKey) {
-
-
-
         try {
+            JwtParser parser = parsers.get(publicKey, key -> Jwts.parserBuilder().setSigningKey(key).build());
+            Jws<Claims> token = parser.parseClaimsJws(jwtCompact);
 
-
-            Jwt token = Jwts.parserBuilder().setSigningKey(publicKey).build().parseClaimsJws(jwtCompact);
-
-
-            String payloadJson = objectMapper.writeValueAsString(token.getBody());
-            return objectMapper.readValue(payloadJson, RevocationCheckTokenPayload.class);
-        } catch (JsonProcessingException e) {
+            return objectMapper.convertValue(token.getBody(), RevocationCheckTokenPayload.class);
+        } catch (IllegalArgumentException e) {
             throw new TokenValidationException("Failed to parse revocation check token",
                 HttpStatus.BAD_REQUEST.value());
         } catch (SignatureException e) {
@@ -32,14 +32,24 @@ import eu.europa.ec.dgc.revocationdistribution.config.DgcConfigProperties;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
 
@@ -62,9 +72,13 @@ public class RevocationListDownloadServiceGatewayImpl {
 
     private final GeneratorService generatorService;
 
+    private final DataSetSnapshotService dataSetSnapshotService;
+
 
     private ZonedDateTime lastUpdatedBatchDate;
 
+    private ExecutorService fetchExecutor;
+
 
     @PostConstruct
     private void postConstruct() {
@@ -85,6 +99,15 @@ public class RevocationListDownloadServiceGatewayImpl {
                 log.error("Could not parse loaded last Updated timestamp: 2021-06-01T00:00:00Z");
             }
         }
+
+        fetchExecutor = Executors.newFixedThreadPool(
+            Math.max(1, properties.getRevocationListDownload().getFetchParallelism()),
+            new CustomizableThreadFactory("batch-fetcher-"));
+    }
+
+    @PreDestroy
+    private void preDestroy() {
+        fetchExecutor.shutdownNow();
     }
 
 
@@ -121,37 +144,36 @@ public class RevocationListDownloadServiceGatewayImpl {
         List<String> deletedBatchIds = new ArrayList<>();
         List<String> goneBatchIds = new ArrayList<>();
 
-        while (revocationListIterator.hasNext() && abortTime.isAfter(ZonedDateTime.now())) {
+        // Batches are fetched concurrently, but stored in the order of the batch list, so that the last
+        // updated date only moves forward over batches which are stored.
+        Deque<Future<FetchedBatch>> pendingBatches = new ArrayDeque<>();
+        int queueSize = Math.max(1, properties.getRevocationListDownload().getFetchQueueSize());
+        boolean aborted = false;
+
+        while (!aborted && revocationListIterator.hasNext() && abortTime.isAfter(ZonedDateTime.now())) {
             List<RevocationBatchListDto.RevocationBatchListItemDto> batchListItems = revocationListIterator.next();
 
             for (RevocationBatchListDto.RevocationBatchListItemDto batchListItem : batchListItems) {
-                if (batchListItem.getDeleted()) {
-                    deletedBatchIds.add(batchListItem.getBatchId());
-                } else {
-                    try {
-
-                        RevocationBatchDto revocationBatchDto =
-                            dgcGatewayDownloadConnector.getRevocationListBatchById(batchListItem.getBatchId());
-
-                        //log.trace(revocationBatchDto.toString());
+                pendingBatches.add(fetchBatch(batchListItem));
 
-                        revocationListservice.updateRevocationListBatch(batchListItem.getBatchId(), revocationBatchDto);
-                        log.info("Downloaded batch: {}", batchListItem.getBatchId());
-
-                    } catch (RevocationBatchGoneException e) {
-                        goneBatchIds.add(batchListItem.getBatchId());
-                    } catch (RevocationBatchDownloadException | RevocationBatchParseException e) {
-                        log.error("Batch download failed");
+                if (pendingBatches.size() >= queueSize) {
+                    aborted = !storeNextBatch(pendingBatches, deletedBatchIds, goneBatchIds, abortTime);
+                    if (aborted) {
+                        break;
                     }
                 }
-                lastUpdatedBatchDate = batchListItem.getDate();
-
-                if (abortTime.isBefore(ZonedDateTime.now())) {
-                    break;
-                }
             }
         }
 
+        while (!aborted && !pendingBatches.isEmpty()) {
+            aborted = !storeNextBatch(pendingBatches, deletedBatchIds, goneBatchIds, abortTime);
+        }
+
+        if (!pendingBatches.isEmpty()) {
+            log.info("Download time limit reached, {} fetched batches are discarded.", pendingBatches.size());
+            pendingBatches.forEach(pendingBatch -> pendingBatch.cancel(true));
+        }
+
         if (!deletedBatchIds.isEmpty()) {
             log.info("Deleted batches: {}", deletedBatchIds);
             revocationListservice.deleteBatchListItemsByIds(deletedBatchIds);
@@ -175,6 +197,7 @@ public class RevocationListDownloadServiceGatewayImpl {
 
         if (needsCalculation) {
             generatorService.generateNewDataSet();
+            dataSetSnapshotService.reloadSnapshot();
         } else {
             log.info("No recalculation of data needed.");
         }
@@ -184,6 +207,59 @@ public class RevocationListDownloadServiceGatewayImpl {
         log.info("Revocation list download finished");
     }
 
+    private Future<FetchedBatch> fetchBatch(RevocationBatchListDto.RevocationBatchListItemDto batchListItem) {
+        if (batchListItem.getDeleted()) {
+            return CompletableFuture.completedFuture(new FetchedBatch(batchListItem, null, false));
+        }
+
+        return fetchExecutor.submit(() -> {
+            try {
+                return new FetchedBatch(batchListItem,
+                    dgcGatewayDownloadConnector.getRevocationListBatchById(batchListItem.getBatchId()), false);
+            } catch (RevocationBatchGoneException e) {
+                return new FetchedBatch(batchListItem, null, true);
+            } catch (RevocationBatchDownloadException | RevocationBatchParseException e) {
+                log.error("Batch download failed");
+                return new FetchedBatch(batchListItem, null, false);
+            }
+        });
+    }
+
+    /**
+     * Waits for the oldest pending batch and stores it.
+     *
+     * @return false if the download should be stopped, e.g. the download time limit is reached
+     */
+    private boolean storeNextBatch(Deque<Future<FetchedBatch>> pendingBatches, List<String> deletedBatchIds,
+                                   List<String> goneBatchIds, ZonedDateTime abortTime) {
+        FetchedBatch fetchedBatch;
+        try {
+            fetchedBatch = pendingBatches.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            // the last updated date must not move over the failed batch, so the download stops here
+            log.error("Batch download failed unexpectedly: {}", e.getCause().getMessage());
+            return false;
+        }
+
+        RevocationBatchListDto.RevocationBatchListItemDto batchListItem = fetchedBatch.getBatchListItem();
+
+        if (batchListItem.getDeleted()) {
+            deletedBatchIds.add(batchListItem.getBatchId());
+        } else if (fetchedBatch.isGone()) {
+            goneBatchIds.add(batchListItem.getBatchId());
+        } else if (fetchedBatch.getRevocationBatch() != null) {
+            revocationListservice.updateRevocationListBatch(batchListItem.getBatchId(),
+                fetchedBatch.getRevocationBatch());
+            log.info("Downloaded batch: {}", batchListItem.getBatchId());
+        }
+        lastUpdatedBatchDate = batchListItem.getDate();
+
+        return abortTime.isAfter(ZonedDateTime.now());
+    }
+
     private void saveLastUpdated() {
         log.info("Save last updated date: {}", lastUpdatedBatchDate);
         DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssXXX");
@@ -199,4 +275,12 @@ public class RevocationListDownloadServiceGatewayImpl {
         infoService.setValueForKey(InfoService.NEEDS_CALCULATION_KEY, Boolean.toString(needsCalculation));
     }
 
+    @Getter
+    @RequiredArgsConstructor
+    private static class FetchedBatch {
+        private final RevocationBatchListDto.RevocationBatchListItemDto batchListItem;
+        private final RevocationBatchDto revocationBatch;
+        private final boolean gone;
+    }
+
 }
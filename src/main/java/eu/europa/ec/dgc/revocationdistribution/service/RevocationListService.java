@@ -21,51 +21,58 @@
 package eu.europa.ec.dgc.revocationdistribution.service;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import eu.europa.ec.dgc.gateway.connector.dto.RevocationBatchDto;
 import eu.europa.ec.dgc.revocationdistribution.dto.PartitionResponseDto;
+import eu.europa.ec.dgc.revocationdistribution.entity.ArchiveEntity;
 import eu.europa.ec.dgc.revocationdistribution.entity.BatchListEntity;
 import eu.europa.ec.dgc.revocationdistribution.entity.HashesEntity;
-import eu.europa.ec.dgc.revocationdistribution.entity.PartitionEntity;
 import eu.europa.ec.dgc.revocationdistribution.entity.RevocationListJsonEntity;
-import eu.europa.ec.dgc.revocationdistribution.entity.SliceEntity;
 import eu.europa.ec.dgc.revocationdistribution.exception.DataNotChangedException;
 import eu.europa.ec.dgc.revocationdistribution.exception.DataNotFoundException;
-import eu.europa.ec.dgc.revocationdistribution.mapper.PartitionListMapper;
+import eu.europa.ec.dgc.revocationdistribution.model.ArchiveBinaryData;
+import eu.europa.ec.dgc.revocationdistribution.model.DataSetSnapshot;
+import eu.europa.ec.dgc.revocationdistribution.model.SliceReference;
 import eu.europa.ec.dgc.revocationdistribution.model.SliceType;
+import eu.europa.ec.dgc.revocationdistribution.repository.ArchiveRepository;
 import eu.europa.ec.dgc.revocationdistribution.repository.BatchListRepository;
 import eu.europa.ec.dgc.revocationdistribution.repository.HashesRepository;
-import eu.europa.ec.dgc.revocationdistribution.repository.PartitionRepository;
 import eu.europa.ec.dgc.revocationdistribution.repository.RevocationListJsonRepository;
 import eu.europa.ec.dgc.revocationdistribution.repository.SliceRepository;
+import eu.europa.ec.dgc.revocationdistribution.utils.HelperFunctions;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.zip.GZIPOutputStream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
-import org.bouncycastle.util.encoders.Hex;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Slf4j
 @RequiredArgsConstructor
 @Service
 public class RevocationListService {
 
+    private static final int SLICE_LOAD_BATCH_SIZE = 100;
+
     private final BatchListRepository batchListRepository;
     private final HashesRepository hashesRepository;
     private final RevocationListJsonRepository revocationListJsonRepository;
-    private final PartitionRepository partitionRepository;
-    private final PartitionListMapper partitionListMapper;
     private final SliceRepository sliceRepository;
+    private final ArchiveRepository archiveRepository;
+    private final HelperFunctions helperFunctions;
+    private final SliceDataCache sliceDataCache;
+    private final ObjectMapper objectMapper;
 
 
     /**
@@ -87,8 +94,7 @@ public class RevocationListService {
                 try {
                     hashes.add(getHashEntity(batchListEntity, batchEntry, revocationBatchDto.getKid()));
                 } catch (IndexOutOfBoundsException e) {
-                    log.error("Error calculating x,y,z. Hash value length is to short: {}",
-                        batchEntry.getHash().getBytes(StandardCharsets.UTF_8).length);
+                    log.error("Hash value length is invalid: {}", batchEntry.getHash());
                 } catch (IllegalArgumentException e) {
                     log.error("Hash failed base64 decoding: {}", batchEntry.getHash());
                 }
@@ -97,7 +103,11 @@ public class RevocationListService {
             }
         }
         log.trace("before db save");
-        hashesRepository.saveAll(hashes);
+        long start = System.nanoTime();
+        long inserted = hashesRepository.bulkInsert(hashes);
+        long duration = Math.max(System.nanoTime() - start, 1);
+        log.debug("Inserted {} hashes of batch {} in {} ms ({} hashes/s)", inserted, batchId,
+            TimeUnit.NANOSECONDS.toMillis(duration), inserted * TimeUnit.SECONDS.toNanos(1) / duration);
         log.trace("Stop batchupdate");
     }
 
@@ -137,6 +147,7 @@ public class RevocationListService {
     @Transactional
     public void setAllHashesUpdatedStatesToFalse() {
         hashesRepository.setAllUpdatedStatesToFalse();
+        hashesRepository.setAllKidAggregatesUpdatedStatesToFalse();
     }
 
     /**
@@ -144,7 +155,21 @@ public class RevocationListService {
      */
     @Transactional
     public void deleteAllOrphanedHashes() {
+        List<String> kids = hashesRepository.findDistinctKidsOfOrphanedHashes();
         hashesRepository.deleteAllOrphanedHashes();
+        kids.forEach(hashesRepository::refreshAggregatesForKid);
+    }
+
+    /**
+     * Recalculates the aggregated hash data of all kids with updated hashes.
+     * Downloaded hashes and hashes of deleted batches are marked as updated.
+     * The aggregates are committed in their own transaction, so that the partition workers of the generator, which
+     * read them with their own db connections, see the refreshed data.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void refreshUpdatedAggregates() {
+        int kidCount = hashesRepository.refreshUpdatedAggregates();
+        log.info("Refreshed aggregated data of {} kids.", kidCount);
     }
 
     /**
@@ -160,24 +185,24 @@ public class RevocationListService {
     /**
      * Gets all partition metadata of a kid filtered by date.
      *
+     * @param snapshot        the snapshot of the data set.
      * @param kid             the kid of the partition.
-     * @param etag            the etag of the data set.
      * @param ifModifiedSince Only newer data should be returned.
      * @return the partition meta data
      * @throws DataNotFoundException thrown if no data was found
      * @throws DataNotChangedException thrown if no data changed after date
      */
     public List<PartitionResponseDto> getPartitionsByKidAndDate(
-        String etag, String kid, SliceType dataType, ZonedDateTime ifModifiedSince)
+        DataSetSnapshot snapshot, String kid, SliceType dataType, ZonedDateTime ifModifiedSince)
         throws DataNotFoundException, DataNotChangedException {
 
-        List<PartitionResponseDto> partitions =
-            partitionRepository.findAllByEtagAndKidAndDataTypeAndLastUpdatedAfter(
-            etag, kid, dataType, ifModifiedSince).stream().map(partitionListMapper::map).collect(Collectors.toList());
+        List<PartitionResponseDto> partitions = snapshot.getPartitions(kid, dataType).stream()
+            .filter(partition -> partition.getLastUpdated().isAfter(ifModifiedSince))
+            .collect(Collectors.toList());
 
         if (partitions.isEmpty()) {
             //check if there is data at all. -> throws exception if not
-            getPartitionsByKid(etag, kid, dataType);
+            getPartitionsByKid(snapshot, kid, dataType);
             throw new DataNotChangedException();
         }
 
@@ -187,17 +212,15 @@ public class RevocationListService {
     /**
      * Gets all partition metadata of a kid.
      *
-     * @param kid  the kid of the partition.
-     * @param etag the etag of the data set.
+     * @param snapshot the snapshot of the data set.
+     * @param kid      the kid of the partition.
      * @return the partition meta data
      * @throws DataNotFoundException thrown if no data was found
      */
-    public List<PartitionResponseDto> getPartitionsByKid(String etag, String kid, SliceType dataType)
+    public List<PartitionResponseDto> getPartitionsByKid(DataSetSnapshot snapshot, String kid, SliceType dataType)
         throws DataNotFoundException {
 
-        List<PartitionResponseDto> partitions =
-            partitionRepository.findAllByEtagAndKidAndDataType(etag, kid, dataType).stream()
-            .map(partitionListMapper::map).collect(Collectors.toList());
+        List<PartitionResponseDto> partitions = snapshot.getPartitions(kid, dataType);
 
         if (partitions.isEmpty()) {
             throw new DataNotFoundException();
@@ -209,74 +232,56 @@ public class RevocationListService {
     /**
      * Gets a partition meta data.
      *
-     * @param etag the etag of the data set.
-     * @param kid  the kid of the partition.
-     * @param id   the id of the partition
+     * @param snapshot the snapshot of the data set.
+     * @param kid      the kid of the partition.
+     * @param id       the id of the partition
      * @return the partition meta data
      * @throws DataNotFoundException thrown if no data was found
      */
-    public PartitionResponseDto getPartitionsByKidAndId(String etag, String kid, String id, SliceType dataType)
-        throws DataNotFoundException {
-
-        Optional<PartitionEntity> partition;
+    public PartitionResponseDto getPartitionsByKidAndId(
+        DataSetSnapshot snapshot, String kid, String id, SliceType dataType) throws DataNotFoundException {
 
-        if (id.equalsIgnoreCase("null")) {
-            log.info("id is null");
-            partition = partitionRepository.findOneByEtagAndKidAndIdIsNullAndDataType(etag, kid, dataType);
-        } else {
-            partition = partitionRepository.findOneByEtagAndKidAndIdAndDataType(etag, kid, id, dataType);
-        }
-
-        if (partition.isEmpty()) {
-            throw new DataNotFoundException();
-        }
-        return partitionListMapper.map(partition.get());
+        return findPartition(snapshot, kid, id, dataType).orElseThrow(DataNotFoundException::new);
     }
 
 
     /**
      * Gets a partition meta data.
      *
-     * @param etag the etag of the data set.
-     * @param kid  the kid of the partition.
-     * @param id   the id of the partition
+     * @param snapshot the snapshot of the data set.
+     * @param kid      the kid of the partition.
+     * @param id       the id of the partition
      * @param ifModifiedSince only data after this dae are returned
      * @return the partition meta data
      * @throws DataNotFoundException thrown if no data was found
      * @throws DataNotChangedException thrown if no data changed after date
      */
     public PartitionResponseDto getPartitionsByKidAndIdAndDate(
-        String etag, String kid, String id, SliceType dataType, ZonedDateTime ifModifiedSince)
+        DataSetSnapshot snapshot, String kid, String id, SliceType dataType, ZonedDateTime ifModifiedSince)
         throws DataNotFoundException {
 
-        Optional<PartitionEntity> partition;
+        PartitionResponseDto partition =
+            findPartition(snapshot, kid, id, dataType).orElseThrow(DataNotFoundException::new);
 
-        if (id.equalsIgnoreCase("null")) {
-            log.info("id is null");
-            partition =
-                partitionRepository.findOneByEtagAndKidAndIdIsNullAndDataTypeAndLastUpdatedAfter(
-                    etag, kid, dataType, ifModifiedSince);
-        } else {
-            partition =
-                partitionRepository.findOneByEtagAndKidAndIdAndDataTypeAndLastUpdatedAfter(
-                    etag, kid, id, dataType, ifModifiedSince);
+        if (!partition.getLastUpdated().isAfter(ifModifiedSince)) {
+            throw new DataNotChangedException();
         }
+        return partition;
+    }
 
-        if (partition.isEmpty()) {
-            Long count;
-
-            if (id.equalsIgnoreCase("null")) {
-                count = partitionRepository.countByEtagAndKidAndIdIsNullAndDataType(etag, kid,dataType);
-            } else {
-                count = partitionRepository.countByEtagAndKidAndIdAndDataType(etag, kid, id, dataType);
-            }
+    private Optional<PartitionResponseDto> findPartition(
+        DataSetSnapshot snapshot, String kid, String id, SliceType dataType) {
 
-            if (count == 0) {
-                throw new DataNotFoundException();
-            }
-            throw new DataNotChangedException();
+        if (id.equalsIgnoreCase("null")) {
+            log.info("id is null");
+            return snapshot.getPartitions(kid, dataType).stream()
+                .filter(partition -> partition.getId() == null)
+                .findFirst();
         }
-        return partitionListMapper.map(partition.get());
+
+        return snapshot.getPartitions(kid, dataType).stream()
+            .filter(partition -> id.equals(partition.getId()))
+            .findFirst();
     }
 
 
@@ -287,26 +292,26 @@ public class RevocationListService {
      * @param etag the etag of the data set.
      * @param kid  the kid of the partition.
      * @param id   the id of the partition
-     * @return the partition binary slice data
+     * @return the partition binary slice data as streamed gzip file
      * @throws DataNotFoundException thrown if no data was found
      */
-    public byte[] getAllChunkDataFromPartition(String etag, String kid, String id, SliceType dataType)
+    public StreamingResponseBody getAllChunkDataFromPartition(String etag, String kid, String id, SliceType dataType)
         throws DataNotFoundException {
 
-        List<SliceEntity> sliceEntityList;
+        List<SliceReference> sliceReferences;
         if (id.equalsIgnoreCase("null")) {
             log.info("id is null");
-            sliceEntityList = sliceRepository.findAllByEtagAndKidAndIdIsNullAndDataType(etag, kid, dataType);
+            sliceReferences = sliceRepository.findAllByEtagAndKidAndIdIsNullAndDataType(etag, kid, dataType);
 
         } else {
-            sliceEntityList = sliceRepository.findAllByEtagAndKidAndIdAndDataType(etag, kid, id, dataType);
+            sliceReferences = sliceRepository.findAllByEtagAndKidAndIdAndDataType(etag, kid, id, dataType);
         }
 
-        if (sliceEntityList.isEmpty()) {
+        if (sliceReferences.isEmpty()) {
             throw new DataNotFoundException();
         }
 
-        return createTarForSlices(sliceEntityList);
+        return createTarForSlices(sliceReferences);
     }
 
 
@@ -317,29 +322,29 @@ public class RevocationListService {
      * @param kid  the kid of the partition.
      * @param id   the id of the partition
      * @param ifModifiedDateTime only data after this date are returned
-     * @return the partition binary slice data
+     * @return the partition binary slice data as streamed gzip file
      * @throws DataNotFoundException thrown if no data was found
      */
-    public byte[] getAllChunkDataFromPartitionSinceDate(
+    public StreamingResponseBody getAllChunkDataFromPartitionSinceDate(
         String etag,
         String kid,
         String id,
         SliceType dataType,
         ZonedDateTime ifModifiedDateTime) throws DataNotFoundException, DataNotChangedException {
 
-        List<SliceEntity> sliceEntityList;
+        List<SliceReference> sliceReferences;
 
         if (id.equalsIgnoreCase("null")) {
             log.info("id is null");
-            sliceEntityList = sliceRepository.findAllByEtagAndKidAndIdIsNullAndDataTypeAndLastUpdatedAfter(
+            sliceReferences = sliceRepository.findAllByEtagAndKidAndIdIsNullAndDataTypeAndLastUpdatedAfter(
                 etag, kid, dataType, ifModifiedDateTime);
 
         } else {
-            sliceEntityList = sliceRepository.findAllByEtagAndKidAndIdAndDataTypeAndLastUpdatedAfter(
+            sliceReferences = sliceRepository.findAllByEtagAndKidAndIdAndDataTypeAndLastUpdatedAfter(
                 etag, kid, id, dataType, ifModifiedDateTime);
         }
 
-        if (sliceEntityList.isEmpty()) {
+        if (sliceReferences.isEmpty()) {
             Long count;
 
             if (id.equalsIgnoreCase("null")) {
@@ -355,7 +360,7 @@ public class RevocationListService {
             throw new DataNotChangedException();
         }
 
-        return createTarForSlices(sliceEntityList);
+        return createTarForSlices(sliceReferences);
 
     }
 
@@ -368,31 +373,31 @@ public class RevocationListService {
      * @param kid    the kid of the partition.
      * @param id     the id of the partition
      * @param filter only the slices, which ids are part of the filter are returned.
-     * @return the partition binary slice data
+     * @return the partition binary slice data as streamed gzip file
      * @throws DataNotFoundException thrown if no data was found
      */
-    public byte[] getAllChunkDataFromPartitionWithFilter(
+    public StreamingResponseBody getAllChunkDataFromPartitionWithFilter(
         String etag,
         String kid,
         String id,
         SliceType dataType,
         List<String> filter) throws DataNotFoundException {
 
-        List<SliceEntity> sliceEntityList;
+        List<SliceReference> sliceReferences;
         if (id.equalsIgnoreCase("null")) {
-            sliceEntityList =
+            sliceReferences =
                 sliceRepository.findAllByEtagAndKidAndIdIsNullAndDataTypeAndChunkIn(etag, kid, dataType, filter);
 
         } else {
-            sliceEntityList =
+            sliceReferences =
                 sliceRepository.findAllByEtagAndKidAndIdAndDataTypeAndChunkIn(etag, kid, id, dataType, filter);
         }
 
-        if (sliceEntityList.isEmpty()) {
+        if (sliceReferences.isEmpty()) {
             throw new DataNotFoundException();
         }
 
-        return createTarForSlices(sliceEntityList);
+        return createTarForSlices(sliceReferences);
 
     }
 
@@ -405,11 +410,11 @@ public class RevocationListService {
      * @param id     the id of the partition
      * @param filter only the slices, which ids are part of the filter are returned.
      * @param ifModifiedDateTime only data after this date are returned
-     * @return the partition binary slice data
+     * @return the partition binary slice data as streamed gzip file
      * @throws DataNotFoundException thrown if no data was found
      */
 
-    public byte[] getAllChunkDataFromPartitionWithFilterSinceDate(
+    public StreamingResponseBody getAllChunkDataFromPartitionWithFilterSinceDate(
         String etag,
         String kid,
         String id,
@@ -417,17 +422,17 @@ public class RevocationListService {
         List<String> filter,
         ZonedDateTime ifModifiedDateTime) throws DataNotFoundException, DataNotChangedException {
 
-        List<SliceEntity> sliceEntityList;
+        List<SliceReference> sliceReferences;
         if (id.equalsIgnoreCase("null")) {
-            sliceEntityList = sliceRepository.findAllByEtagAndKidAndIdIsNullAndDataTypeAndChunkInAndLastUpdatedAfter(
+            sliceReferences = sliceRepository.findAllByEtagAndKidAndIdIsNullAndDataTypeAndChunkInAndLastUpdatedAfter(
                 etag, kid, dataType, filter, ifModifiedDateTime);
 
         } else {
-            sliceEntityList = sliceRepository.findAllByEtagAndKidAndIdAndDataTypeAndChunkInAndLastUpdatedAfter(
+            sliceReferences = sliceRepository.findAllByEtagAndKidAndIdAndDataTypeAndChunkInAndLastUpdatedAfter(
                 etag, kid, id, dataType, filter, ifModifiedDateTime);
         }
 
-        if (sliceEntityList.isEmpty()) {
+        if (sliceReferences.isEmpty()) {
             Long count;
 
             if (id.equalsIgnoreCase("null")) {
@@ -442,7 +447,7 @@ public class RevocationListService {
             throw new DataNotChangedException();
         }
 
-        return createTarForSlices(sliceEntityList);
+        return createTarForSlices(sliceReferences);
 
     }
 
@@ -453,27 +458,27 @@ public class RevocationListService {
      * @param kid  the kid of the partition.
      * @param id   the id of the partition
      * @param cid  the id of the chunk
-     * @return the chunk binary slice data
+     * @return the chunk binary slice data as streamed gzip file
      * @throws DataNotFoundException thrown if no data was found
      */
-    public byte[] getChunkData(String etag, String kid, String id, String cid, SliceType dataType)
+    public StreamingResponseBody getChunkData(String etag, String kid, String id, String cid, SliceType dataType)
         throws DataNotFoundException {
 
-        List<SliceEntity> sliceEntityList;
+        List<SliceReference> sliceReferences;
         if (id.equalsIgnoreCase("null")) {
             log.info("id is null");
-            sliceEntityList =
+            sliceReferences =
                 sliceRepository.findAllByEtagAndKidAndIdIsNullAndChunkAndDataType(etag, kid, cid, dataType);
 
         } else {
-            sliceEntityList = sliceRepository.findAllByEtagAndKidAndIdAndChunkAndDataType(etag, kid, id, cid, dataType);
+            sliceReferences = sliceRepository.findAllByEtagAndKidAndIdAndChunkAndDataType(etag, kid, id, cid, dataType);
         }
 
-        if (sliceEntityList.isEmpty()) {
+        if (sliceReferences.isEmpty()) {
             throw new DataNotFoundException();
         }
 
-        return createTarForSlices(sliceEntityList);
+        return createTarForSlices(sliceReferences);
     }
 
     /**
@@ -484,11 +489,11 @@ public class RevocationListService {
      * @param id   the id of the partition
      * @param cid  the id of the chunk
      * @param ifModifiedDateTime only data after this dae are returned
-     * @return the chunk binary slice data
+     * @return the chunk binary slice data as streamed gzip file
      * @throws DataNotFoundException thrown if no data was found
      */
 
-    public byte[] getChunkDataSinceDate(
+    public StreamingResponseBody getChunkDataSinceDate(
         String etag,
         String kid,
         String id,
@@ -496,18 +501,18 @@ public class RevocationListService {
         SliceType dataType,
         ZonedDateTime ifModifiedDateTime) throws DataNotFoundException, DataNotChangedException {
 
-        List<SliceEntity> sliceEntityList;
+        List<SliceReference> sliceReferences;
         if (id.equalsIgnoreCase("null")) {
             log.info("id is null");
-            sliceEntityList = sliceRepository.findAllByEtagAndKidAndIdIsNullAndChunkAndDataTypeAndLastUpdatedAfter(
+            sliceReferences = sliceRepository.findAllByEtagAndKidAndIdIsNullAndChunkAndDataTypeAndLastUpdatedAfter(
                 etag, kid, cid, dataType, ifModifiedDateTime);
 
         } else {
-            sliceEntityList = sliceRepository.findAllByEtagAndKidAndIdAndChunkAndDataTypeAndLastUpdatedAfter(
+            sliceReferences = sliceRepository.findAllByEtagAndKidAndIdAndChunkAndDataTypeAndLastUpdatedAfter(
                 etag, kid, id, cid, dataType, ifModifiedDateTime);
         }
 
-        if (sliceEntityList.isEmpty()) {
+        if (sliceReferences.isEmpty()) {
             Long count;
 
             if (id.equalsIgnoreCase("null")) {
@@ -522,7 +527,7 @@ public class RevocationListService {
             throw new DataNotChangedException();
         }
 
-        return createTarForSlices(sliceEntityList);
+        return createTarForSlices(sliceReferences);
 
     }
 
@@ -535,10 +540,10 @@ public class RevocationListService {
      * @param id     the id of the partition
      * @param cid    the id of the chunk
      * @param filter only the slices, which ids are part of the filter are returned.
-     * @return the chunk binary slice data
+     * @return the chunk binary slice data as streamed gzip file
      * @throws DataNotFoundException thrown if no data was found
      */
-    public byte[] getAllSliceDataForChunkWithFilter(
+    public StreamingResponseBody getAllSliceDataForChunkWithFilter(
         String etag,
         String kid,
         String id,
@@ -546,23 +551,23 @@ public class RevocationListService {
         SliceType dataType,
         List<String> filter) throws DataNotFoundException {
 
-        List<SliceEntity> sliceEntityList;
+        List<SliceReference> sliceReferences;
 
         if (id.equalsIgnoreCase("null")) {
             log.info("id is null");
-            sliceEntityList = sliceRepository.findAllByEtagAndKidAndIdIsNullAndChunkAndDataTypeAndHashIn(
+            sliceReferences = sliceRepository.findAllByEtagAndKidAndIdIsNullAndChunkAndDataTypeAndHashIn(
                 etag, kid, cid, dataType, filter);
 
         } else {
-            sliceEntityList = sliceRepository.findAllByEtagAndKidAndIdAndChunkAndDataTypeAndHashIn(
+            sliceReferences = sliceRepository.findAllByEtagAndKidAndIdAndChunkAndDataTypeAndHashIn(
                 etag, kid, id, cid, dataType, filter);
         }
 
-        if (sliceEntityList.isEmpty()) {
+        if (sliceReferences.isEmpty()) {
             throw new DataNotFoundException();
         }
 
-        return createTarForSlices(sliceEntityList);
+        return createTarForSlices(sliceReferences);
     }
 
     /**
@@ -575,10 +580,10 @@ public class RevocationListService {
      * @param cid    the id of the chunk
      * @param filter only the slices, which ids are part of the filter are returned.
      * @param ifModifiedDateTime only data after this dae are returned
-     * @return the chunk binary slice data
+     * @return the chunk binary slice data as streamed gzip file
      * @throws DataNotFoundException thrown if no data was found
      */
-    public byte[] getAllSliceDataForChunkWithFilterSinceDate(
+    public StreamingResponseBody getAllSliceDataForChunkWithFilterSinceDate(
         String etag,
         String kid,
         String id,
@@ -587,20 +592,20 @@ public class RevocationListService {
         List<String> filter,
         ZonedDateTime ifModifiedDateTime) throws DataNotFoundException, DataNotChangedException {
 
-        List<SliceEntity> sliceEntityList;
+        List<SliceReference> sliceReferences;
 
         if (id.equalsIgnoreCase("null")) {
             log.info("id is null");
-            sliceEntityList =
+            sliceReferences =
                 sliceRepository.findAllByEtagAndKidAndIdIsNullAndChunkAndDataTypeAndHashInAndLastUpdatedAfter(
                 etag, kid, cid, dataType, filter, ifModifiedDateTime);
 
         } else {
-            sliceEntityList = sliceRepository.findAllByEtagAndKidAndIdAndChunkAndDataTypeAndHashInAndLastUpdatedAfter(
+            sliceReferences = sliceRepository.findAllByEtagAndKidAndIdAndChunkAndDataTypeAndHashInAndLastUpdatedAfter(
                 etag, kid, id, cid, dataType, filter, ifModifiedDateTime);
         }
 
-        if (sliceEntityList.isEmpty()) {
+        if (sliceReferences.isEmpty()) {
             Long count;
 
             if (id.equalsIgnoreCase("null")) {
@@ -618,7 +623,7 @@ public class RevocationListService {
             throw new DataNotChangedException();
         }
 
-        return createTarForSlices(sliceEntityList);
+        return createTarForSlices(sliceReferences);
     }
 
 
@@ -630,31 +635,28 @@ public class RevocationListService {
      * @param id   the id of the partition
      * @param cid  the id of the chunk
      * @param sid  the id of the slice
-     * @return the chunk binary slice data
+     * @return the chunk binary slice data as streamed gzip file
      * @throws DataNotFoundException thrown if no data was found
      */
-    public byte[] getSliceData(String etag, String kid, String id, String cid, String sid, SliceType dataType)
-        throws DataNotFoundException {
+    public StreamingResponseBody getSliceData(
+        String etag, String kid, String id, String cid, String sid, SliceType dataType) throws DataNotFoundException {
 
-        Optional<SliceEntity> sliceEntity;
+        Optional<SliceReference> sliceReference;
         if (id.equalsIgnoreCase("null")) {
             log.info("id is null");
-            sliceEntity = sliceRepository.findOneByEtagAndKidAndIdIsNullAndChunkAndHashAndDataType(
+            sliceReference = sliceRepository.findOneByEtagAndKidAndIdIsNullAndChunkAndHashAndDataType(
                 etag, kid, cid, sid, dataType);
 
         } else {
-            sliceEntity = sliceRepository.findOneByEtagAndKidAndIdAndChunkAndHashAndDataType(
+            sliceReference = sliceRepository.findOneByEtagAndKidAndIdAndChunkAndHashAndDataType(
                 etag, kid, id, cid, sid, dataType);
         }
 
-        if (sliceEntity.isEmpty()) {
+        if (sliceReference.isEmpty()) {
             throw new DataNotFoundException();
         }
 
-        List<SliceEntity> sliceEntityList = new ArrayList<>();
-        sliceEntityList.add(sliceEntity.get());
-
-        return createTarForSlices(sliceEntityList);
+        return createTarForSlices(List.of(sliceReference.get()));
     }
 
     /**
@@ -666,10 +668,10 @@ public class RevocationListService {
      * @param cid  the id of the chunk
      * @param sid  the id of the slice
      * @param ifModifiedDateTime only data after this dae are returned
-     * @return the chunk binary slice data
+     * @return the chunk binary slice data as streamed gzip file
      * @throws DataNotFoundException thrown if no data was found
      */
-    public byte[] getSliceDataSinceDate(
+    public StreamingResponseBody getSliceDataSinceDate(
         String etag,
         String kid,
         String id,
@@ -678,18 +680,19 @@ public class RevocationListService {
         SliceType dataType,
         ZonedDateTime ifModifiedDateTime) throws DataNotFoundException, DataNotChangedException {
 
-        Optional<SliceEntity> sliceEntity;
+        Optional<SliceReference> sliceReference;
         if (id.equalsIgnoreCase("null")) {
             log.info("id is null");
-            sliceEntity = sliceRepository.findOneByEtagAndKidAndIdIsNullAndChunkAndHashAndDataTypeAndLastUpdatedAfter(
-                etag, kid, cid, sid, dataType, ifModifiedDateTime);
+            sliceReference =
+                sliceRepository.findOneByEtagAndKidAndIdIsNullAndChunkAndHashAndDataTypeAndLastUpdatedAfter(
+                    etag, kid, cid, sid, dataType, ifModifiedDateTime);
 
         } else {
-            sliceEntity = sliceRepository.findOneByEtagAndKidAndIdAndChunkAndHashAndDataTypeAndLastUpdatedAfter(
+            sliceReference = sliceRepository.findOneByEtagAndKidAndIdAndChunkAndHashAndDataTypeAndLastUpdatedAfter(
                 etag, kid, id, cid, sid, dataType, ifModifiedDateTime);
         }
 
-        if (sliceEntity.isEmpty()) {
+        if (sliceReference.isEmpty()) {
             Long count;
 
             if (id.equalsIgnoreCase("null")) {
@@ -706,12 +709,112 @@ public class RevocationListService {
             throw new DataNotChangedException();
         }
 
-        List<SliceEntity> sliceEntityList = new ArrayList<>();
-        sliceEntityList.add(sliceEntity.get());
+        return createTarForSlices(List.of(sliceReference.get()));
+
 
-        return createTarForSlices(sliceEntityList);
+    }
 
 
+    /**
+     * Gets the precalculated archive with all slices of a partition.
+     *
+     * @param etag the etag of the data set.
+     * @param kid  the kid of the partition.
+     * @param id   the id of the partition
+     * @return the archive, empty if no archive is available
+     */
+    public Optional<ArchiveEntity> getPartitionArchive(String etag, String kid, String id, SliceType dataType) {
+        if (id.equalsIgnoreCase("null")) {
+            return archiveRepository.findOneByEtagAndKidAndIdIsNullAndChunkIsNullAndDataType(etag, kid, dataType);
+        }
+        return archiveRepository.findOneByEtagAndKidAndIdAndChunkIsNullAndDataType(etag, kid, id, dataType);
+    }
+
+    /**
+     * Gets the precalculated archive with all slices of a chunk.
+     *
+     * @param etag the etag of the data set.
+     * @param kid  the kid of the partition.
+     * @param id   the id of the partition
+     * @param cid  the id of the chunk
+     * @return the archive, empty if no archive is available
+     */
+    public Optional<ArchiveEntity> getChunkArchive(
+        String etag, String kid, String id, String cid, SliceType dataType) {
+        if (id.equalsIgnoreCase("null")) {
+            return archiveRepository.findOneByEtagAndKidAndIdIsNullAndChunkAndDataType(etag, kid, cid, dataType);
+        }
+        return archiveRepository.findOneByEtagAndKidAndIdAndChunkAndDataType(etag, kid, id, cid, dataType);
+    }
+
+
+    /**
+     * Gets the partition metadata and slice data of several kids as one tar archive. For each kid the archive
+     * contains the entry {kid}/partitions.json with the partition metadata and for each partition the entry
+     * {kid}/{id}/slices.tar.gz with the precalculated archive of the partition.
+     *
+     * @param snapshot the snapshot of the data set.
+     * @param kids     the kids to include, all kids of the data set if null or empty
+     * @param dataType the slice type of the data
+     * @return the archive as streamed tar file
+     * @throws DataNotFoundException thrown if none of the kids has partitions
+     */
+    public StreamingResponseBody getBulkArchive(DataSetSnapshot snapshot, List<String> kids, SliceType dataType)
+        throws DataNotFoundException {
+
+        List<String> selectedKids = (kids == null || kids.isEmpty())
+            ? snapshot.getKids(dataType)
+            : kids.stream()
+                .distinct()
+                .filter(kid -> !snapshot.getPartitions(kid, dataType).isEmpty())
+                .collect(Collectors.toList());
+
+        if (selectedKids.isEmpty()) {
+            throw new DataNotFoundException();
+        }
+
+        String etag = snapshot.getEtag();
+
+        return outputStream -> {
+            TarArchiveOutputStream outTar = new TarArchiveOutputStream(outputStream);
+
+            for (String kid : selectedKids) {
+                List<PartitionResponseDto> partitions = snapshot.getPartitions(kid, dataType);
+
+                helperFunctions.addToTar(outTar, kid + "/partitions.json", objectMapper.writeValueAsBytes(partitions));
+
+                // the archives are loaded one after another, so only a single archive is held in memory
+                for (PartitionResponseDto partition : partitions) {
+                    String id = String.valueOf(partition.getId());
+
+                    helperFunctions.addToTar(outTar, kid + "/" + id + "/slices.tar.gz",
+                        getPartitionArchiveData(etag, kid, id, dataType));
+                }
+            }
+
+            outTar.finish();
+            outTar.flush();
+        };
+    }
+
+    private byte[] getPartitionArchiveData(String etag, String kid, String id, SliceType dataType)
+        throws IOException {
+        // the binary data is loaded as projection, so the archives are not collected in the persistence context,
+        // which is kept open for the whole streamed response
+        Optional<ArchiveBinaryData> archive = id.equalsIgnoreCase("null")
+            ? archiveRepository.findBinaryDataByEtagAndKidAndIdIsNullAndChunkIsNullAndDataType(etag, kid, dataType)
+            : archiveRepository.findBinaryDataByEtagAndKidAndIdAndChunkIsNullAndDataType(etag, kid, id, dataType);
+
+        if (archive.isPresent()) {
+            return archive.get().getBinaryData();
+        }
+
+        // the archive creation of the partition has failed, the archive is assembled from the slices
+        log.warn("No archive available for kid: {} id: {}, assembling it from the slices.", kid, id);
+        ByteArrayOutputStream archiveData = new ByteArrayOutputStream();
+        getAllChunkDataFromPartition(etag, kid, id, dataType).writeTo(archiveData);
+
+        return archiveData.toByteArray();
     }
 
 
@@ -725,10 +828,14 @@ public class RevocationListService {
     }
 
 
-    private String decodeBase64Hash(String b64Hash) {
+    private byte[] decodeBase64Hash(String b64Hash) {
         byte[] decodedBytes = Base64.getDecoder().decode(b64Hash);
 
-        return Hex.toHexString(decodedBytes);
+        if (decodedBytes.length != HashesEntity.HASH_LENGTH) {
+            throw new IndexOutOfBoundsException("Hash length " + decodedBytes.length);
+        }
+
+        return decodedBytes;
     }
 
 
@@ -741,19 +848,21 @@ public class RevocationListService {
         batchListEntity.setType(BatchListEntity.RevocationHashType.valueOf(revocationBatchDto.getHashType().name()));
         batchListEntity.setKid(revocationBatchDto.getKid());
 
-        return batchListRepository.save(batchListEntity);
+        // the batch needs to be in the database before the hashes are bulk inserted
+        return batchListRepository.saveAndFlush(batchListEntity);
     }
 
 
     private HashesEntity getHashEntity(BatchListEntity batch, RevocationBatchDto.BatchEntryDto hash, String kid)
         throws IndexOutOfBoundsException {
 
-        String hexHash = decodeBase64Hash(hash.getHash());
+        byte[] hashBytes = decodeBase64Hash(hash.getHash());
         HashesEntity hashesEntity = new HashesEntity();
-        hashesEntity.setHash(hexHash);
-        hashesEntity.setX(hexHash.charAt(0));
-        hashesEntity.setY(hexHash.charAt(1));
-        hashesEntity.setZ(hexHash.charAt(2));
+        hashesEntity.setHash(hashBytes);
+        // x, y and z are the first three hex digits of the hash
+        hashesEntity.setX(Character.forDigit((hashBytes[0] >> 4) & 0xF, 16));
+        hashesEntity.setY(Character.forDigit(hashBytes[0] & 0xF, 16));
+        hashesEntity.setZ(Character.forDigit((hashBytes[1] >> 4) & 0xF, 16));
         hashesEntity.setKid(kid);
         hashesEntity.setBatch(batch);
         hashesEntity.setUpdated(true);
@@ -762,34 +871,36 @@ public class RevocationListService {
     }
 
 
-    private byte[] createTarForSlices(List<SliceEntity> sliceEntityList) {
+    /**
+     * Creates the gzip compressed tar file of the given slices. The tar file is written directly to the response
+     * stream and the slices are taken in batches from the slice data cache, so at most the binary data of a single
+     * batch of slices is loaded from the db at a time.
+     */
+    StreamingResponseBody createTarForSlices(List<SliceReference> sliceReferences) {
 
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        try {
-            GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream);
+        return outputStream -> {
+            GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream);
             TarArchiveOutputStream outTar = new TarArchiveOutputStream(gzipOutputStream);
 
-            for (SliceEntity sliceEntity : sliceEntityList) {
-                String archiveEntryName = String.format("%s/%s/%s/%s",
-                    sliceEntity.getKid(),
-                    sliceEntity.getId(),
-                    sliceEntity.getChunk(),
-                    sliceEntity.getHash());
+            for (int start = 0; start < sliceReferences.size(); start += SLICE_LOAD_BATCH_SIZE) {
+                List<SliceReference> batch = sliceReferences.subList(start,
+                    Math.min(start + SLICE_LOAD_BATCH_SIZE, sliceReferences.size()));
+                List<Optional<byte[]>> batchData = sliceDataCache.getSliceData(batch);
 
-                TarArchiveEntry tarArchiveEntry = new TarArchiveEntry(archiveEntryName);
-                tarArchiveEntry.setSize(sliceEntity.getBinaryData().length);
+                for (int i = 0; i < batch.size(); i++) {
+                    SliceReference sliceReference = batch.get(i);
+                    // an incomplete archive must not be sent as a successful response, the download is aborted
+                    byte[] binaryData = batchData.get(i).orElseThrow(() -> new IOException(
+                        "Slice " + sliceReference.getDbId() + " was deleted during the download."));
 
-                outTar.putArchiveEntry(tarArchiveEntry);
-                outTar.write(sliceEntity.getBinaryData());
-                outTar.closeArchiveEntry();
+                    helperFunctions.addSliceToTar(outTar, sliceReference, binaryData);
+                }
             }
 
-            gzipOutputStream.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        return byteArrayOutputStream.toByteArray();
+            outTar.finish();
+            gzipOutputStream.finish();
+            gzipOutputStream.flush();
+        };
     }
 
 
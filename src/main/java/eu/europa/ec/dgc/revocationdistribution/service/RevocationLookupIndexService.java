@@ -0,0 +1,174 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.service;
+
+import eu.europa.ec.dgc.revocationdistribution.config.DgcConfigProperties;
+import eu.europa.ec.dgc.revocationdistribution.config.DgcConfigProperties.LookupIndexType;
+import eu.europa.ec.dgc.revocationdistribution.model.RevocationLookupFilter;
+import eu.europa.ec.dgc.revocationdistribution.model.RevocationLookupIndex;
+import eu.europa.ec.dgc.revocationdistribution.repository.HashesRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Holds the in memory index of the revoked hashes for the lookup. Depending on the configured type, this is the
+ * exact {@link RevocationLookupIndex} or the {@link RevocationLookupFilter}, which only screens the hashes before
+ * the db lookup. The index is rebuilt in the background, when a new data set is published. Until the first index
+ * is built, the lookup is done in the db.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class RevocationLookupIndexService {
+
+    private final HashesRepository hashesRepository;
+
+    private final DgcConfigProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicReference<RevocationLookupIndex> index = new AtomicReference<>();
+
+    private final AtomicReference<RevocationLookupFilter> filter = new AtomicReference<>();
+
+    private ExecutorService buildExecutor;
+
+
+    @PostConstruct
+    private void postConstruct() {
+        buildExecutor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("lookup-index-builder-"));
+
+        Gauge.builder("dgc.lookup.index.size", index, currentIndex ->
+                currentIndex.get() == null ? 0 : currentIndex.get().getSize())
+            .description("Number of hashes in the lookup index")
+            .register(meterRegistry);
+
+        Gauge.builder("dgc.lookup.filter.size", filter, currentFilter ->
+                currentFilter.get() == null ? 0 : currentFilter.get().getSize())
+            .description("Number of hashes in the lookup bloom filter")
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    private void preDestroy() {
+        buildExecutor.shutdownNow();
+    }
+
+    /**
+     * Gets the current lookup index.
+     * @return the index, empty if the index is disabled or not built yet
+     */
+    public Optional<RevocationLookupIndex> getIndex() {
+        if (!isEnabled(LookupIndexType.HASHSET)) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(index.get());
+    }
+
+    /**
+     * Gets the current lookup bloom filter.
+     * @return the filter, empty if the filter is disabled or not built yet
+     */
+    public Optional<RevocationLookupFilter> getFilter() {
+        if (!isEnabled(LookupIndexType.BLOOMFILTER)) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(filter.get());
+    }
+
+    /**
+     * Starts the rebuild of the index in the background. The current index is used until the new one is built.
+     * @param etag the etag of the published data set
+     */
+    public void rebuildIndex(String etag) {
+        if (properties.getLookupIndex().isEnabled()) {
+            buildExecutor.submit(() -> buildIndex(etag));
+        }
+    }
+
+    private void buildIndex(String etag) {
+        if (isEnabled(LookupIndexType.BLOOMFILTER)) {
+            buildFilter(etag);
+            return;
+        }
+
+        RevocationLookupIndex currentIndex = index.get();
+        if (currentIndex != null && Objects.equals(currentIndex.getEtag(), etag)) {
+            return;
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+            RevocationLookupIndex.Builder builder = RevocationLookupIndex.builder(etag);
+
+            hashesRepository.forEachNotExpiredHash(ZonedDateTime.now(), builder::add);
+            RevocationLookupIndex newIndex = builder.build();
+            index.set(newIndex);
+
+            log.info("Built lookup index for etag {} with {} hashes in {} ms.", etag, newIndex.getSize(),
+                System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.error("Building of lookup index for etag {} failed: {}", etag, e.getMessage());
+        }
+    }
+
+    private void buildFilter(String etag) {
+        RevocationLookupFilter currentFilter = filter.get();
+        if (currentFilter != null && Objects.equals(currentFilter.getEtag(), etag)) {
+            return;
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+            ZonedDateTime checkTime = ZonedDateTime.now();
+
+            // the filter is sized from the count, so the hashes do not need to be buffered
+            long expectedSize = hashesRepository.countNotExpiredHashes(checkTime);
+            RevocationLookupFilter.Builder builder = RevocationLookupFilter.builder(etag,
+                (int) Math.min(Integer.MAX_VALUE, expectedSize), properties.getLookupIndex().getProbRate());
+
+            hashesRepository.forEachNotExpiredHash(checkTime, builder::add);
+            RevocationLookupFilter newFilter = builder.build();
+            filter.set(newFilter);
+
+            log.info("Built lookup filter for etag {} with {} hashes in {} ms.", etag, newFilter.getSize(),
+                System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.error("Building of lookup filter for etag {} failed: {}", etag, e.getMessage());
+        }
+    }
+
+    private boolean isEnabled(LookupIndexType type) {
+        return properties.getLookupIndex().isEnabled() && properties.getLookupIndex().getType() == type;
+    }
+}
@@ -27,7 +27,14 @@ public interface SliceCalculation {
 
     SliceType getSliceType();
 
-    SliceDataDto calculateSlice(String[] hashes, String storageMode);
+    /**
+     * Calculates the slice binary data.
+     *
+     * @param hashes      the hashes of the slice packed into one array of fixed length hashes
+     * @param storageMode the storage mode of the kid
+     * @return the slice data or null if the slice could not be calculated
+     */
+    SliceDataDto calculateSlice(byte[] hashes, String storageMode);
 
 
 }
@@ -26,14 +26,19 @@ import eu.europa.ec.dgc.bloomfilter.BloomFilterImpl;
 import eu.europa.ec.dgc.bloomfilter.exception.FilterException;
 import eu.europa.ec.dgc.revocationdistribution.config.DgcConfigProperties;
 import eu.europa.ec.dgc.revocationdistribution.dto.SliceDataDto;
+import eu.europa.ec.dgc.revocationdistribution.entity.HashesEntity;
 import eu.europa.ec.dgc.revocationdistribution.model.SliceType;
+import eu.europa.ec.dgc.revocationdistribution.utils.BloomFilterBuilder;
 import eu.europa.ec.dgc.revocationdistribution.utils.HelperFunctions;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Random;
+import javax.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.bouncycastle.util.encoders.DecoderException;
+import org.bouncycastle.util.encoders.Hex;
 import org.springframework.stereotype.Service;
 
 
@@ -46,44 +51,64 @@ public class SliceCalculationBloomFilterImpl implements SliceCalculation {
     private final HelperFunctions helperFunctions;
 
 
+    private static final int BUILDER_CHECK_HASH_COUNT = 1000;
+
+    private boolean builderEnabled;
+
+    /**
+     * Checks that the optimized bloom filter builder creates the same binary data as the bloom filter library.
+     * If the output differs, e.g. after an update of the library, the library is used for the calculation.
+     */
+    @PostConstruct
+    private void checkBloomFilterBuilder() {
+        byte[] hashes = new byte[BUILDER_CHECK_HASH_COUNT * HashesEntity.HASH_LENGTH];
+        new Random(BUILDER_CHECK_HASH_COUNT).nextBytes(hashes);
+
+        try {
+            builderEnabled = Arrays.equals(
+                BloomFilterBuilder.build(hashes, HashesEntity.HASH_LENGTH, properties.getBloomFilter().getProbRate()),
+                calculateWithLibrary(hashes, BUILDER_CHECK_HASH_COUNT));
+        } catch (NoSuchAlgorithmException | IOException | FilterException | RuntimeException e) {
+            log.warn("Bloom filter builder check failed: {}", e.getMessage());
+            builderEnabled = false;
+        }
+
+        if (builderEnabled) {
+            log.info("Bloom filter builder is used for the slice calculation.");
+        } else {
+            log.warn("Bloom filter builder output differs from the bloom filter library, the library is used.");
+        }
+    }
+
     @Override
     public SliceType getSliceType() {
         return SliceType.BLOOMFILTER;
     }
 
     @Override
-    public SliceDataDto calculateSlice(String[] hashes, String storageMode) {
-        if (hashes.length <= 0) {
+    public SliceDataDto calculateSlice(byte[] hashes, String storageMode) {
+        int hashCount = hashes.length / HashesEntity.HASH_LENGTH;
+        if (hashCount <= 0) {
             return null;
         }
 
-        BloomFilter bloomFilter = new BloomFilterImpl(hashes.length, properties.getBloomFilter().getProbRate());
-
         SliceDataDto sliceDataDto = new SliceDataDto();
 
         sliceDataDto.getMetaData().setType(SliceType.BLOOMFILTER.name());
         sliceDataDto.getMetaData().setVersion(properties.getBloomFilter().getVersion());
 
-        for (String hash : hashes) {
-            try {
-                byte[] hashBytes = helperFunctions.getBytesFromHexString(hash);
-                bloomFilter.add(hashBytes);
-            } catch (NoSuchAlgorithmException | IOException | DecoderException | FilterException e) {
-                log.error("Could not add hash to bloom filter: {} , {}", hash, e.getMessage());
-            }
-        }
-
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
         try {
-            bloomFilter.writeTo(baos);
-        } catch (IOException | FilterException e) {
+            if (builderEnabled) {
+                sliceDataDto.setBinaryData(BloomFilterBuilder.build(
+                    hashes, HashesEntity.HASH_LENGTH, properties.getBloomFilter().getProbRate()));
+            } else {
+                sliceDataDto.setBinaryData(calculateWithLibrary(hashes, hashCount));
+            }
+        } catch (IOException | FilterException | NoSuchAlgorithmException e) {
             log.error("Could not get bloom filter binary data: {}", e.getMessage());
             return null;
         }
 
-        sliceDataDto.setBinaryData(baos.toByteArray());
-
         try {
             sliceDataDto.getMetaData().setHash(helperFunctions.calculateHash(sliceDataDto.getBinaryData()));
         } catch (NoSuchAlgorithmException e) {
@@ -94,5 +119,24 @@ public class SliceCalculationBloomFilterImpl implements SliceCalculation {
         return sliceDataDto;
     }
 
+    private byte[] calculateWithLibrary(byte[] hashes, int hashCount) throws IOException, FilterException {
+        BloomFilter bloomFilter = new BloomFilterImpl(hashCount, properties.getBloomFilter().getProbRate());
+
+        // the bloom filter does not keep the added data, so one buffer is reused for all hashes
+        byte[] hashBytes = new byte[HashesEntity.HASH_LENGTH];
+
+        for (int offset = 0; offset < hashCount * HashesEntity.HASH_LENGTH; offset += HashesEntity.HASH_LENGTH) {
+            System.arraycopy(hashes, offset, hashBytes, 0, HashesEntity.HASH_LENGTH);
+            try {
+                bloomFilter.add(hashBytes);
+            } catch (NoSuchAlgorithmException | IOException | FilterException e) {
+                log.error("Could not add hash to bloom filter: {} , {}", Hex.toHexString(hashBytes), e.getMessage());
+            }
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        bloomFilter.writeTo(baos);
+        return baos.toByteArray();
+    }
 
 }
@@ -24,13 +24,14 @@ import eu.europa.ec.dgc.partialvariablehashfilter.PartialVariableHashFilter;
 import eu.europa.ec.dgc.partialvariablehashfilter.PartitionOffset;
 import eu.europa.ec.dgc.revocationdistribution.config.DgcConfigProperties;
 import eu.europa.ec.dgc.revocationdistribution.dto.SliceDataDto;
+import eu.europa.ec.dgc.revocationdistribution.entity.HashesEntity;
 import eu.europa.ec.dgc.revocationdistribution.model.SliceType;
 import eu.europa.ec.dgc.revocationdistribution.utils.HelperFunctions;
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.bouncycastle.util.encoders.DecoderException;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
@@ -50,8 +51,9 @@ public class SliceCalculationVarHashListImpl implements SliceCalculation {
     }
 
     @Override
-    public SliceDataDto calculateSlice(String[] hashes, String storageMode) {
-        if (hashes.length <= 0) {
+    public SliceDataDto calculateSlice(byte[] hashes, String storageMode) {
+        int hashCount = hashes.length / HashesEntity.HASH_LENGTH;
+        if (hashCount <= 0) {
             return null;
         }
 
@@ -63,17 +65,12 @@ public class SliceCalculationVarHashListImpl implements SliceCalculation {
         sliceDataDto.getMetaData().setVersion(properties.getVarHashList().getVersion());
 
         PartialVariableHashFilter filter =
-            new PartialVariableHashFilter(minByteCount, getPartitionOffset(storageMode), hashes.length,
+            new PartialVariableHashFilter(minByteCount, getPartitionOffset(storageMode), hashCount,
                 properties.getVarHashList().getProbRate());
 
 
-        for (String hash : hashes) {
-            try {
-                byte[] hashBytes = helperFunctions.getBytesFromHexString(hash);
-                filter.add(hashBytes);
-            } catch (DecoderException e) {
-                log.error("Could not add hash to hash list: {} , {}", hash, e.getMessage());
-            }
+        for (int offset = 0; offset < hashCount * HashesEntity.HASH_LENGTH; offset += HashesEntity.HASH_LENGTH) {
+            filter.add(Arrays.copyOfRange(hashes, offset, offset + HashesEntity.HASH_LENGTH));
         }
 
         try {
@@ -0,0 +1,103 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import eu.europa.ec.dgc.revocationdistribution.config.DgcConfigProperties;
+import eu.europa.ec.dgc.revocationdistribution.model.SliceBinaryData;
+import eu.europa.ec.dgc.revocationdistribution.model.SliceCacheKey;
+import eu.europa.ec.dgc.revocationdistribution.model.SliceReference;
+import eu.europa.ec.dgc.revocationdistribution.repository.SliceRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Size bounded cache for the binary data of the slices. The data is held on the heap, so the max size of the cache
+ * bounds the memory of the cached data.
+ * The slices are not changed after they are stored, so the cached data stays valid when a new data set is published.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class SliceDataCache {
+
+    private final DgcConfigProperties properties;
+
+    private final SliceRepository sliceRepository;
+
+    private final MeterRegistry meterRegistry;
+
+    private Cache<SliceCacheKey, byte[]> cache;
+
+
+    @PostConstruct
+    private void postConstruct() {
+        cache = Caffeine.newBuilder()
+            .maximumWeight(properties.getSliceCache().getMaxSize())
+            .weigher((SliceCacheKey key, byte[] binaryData) -> binaryData.length)
+            .recordStats()
+            .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "sliceData");
+    }
+
+    /**
+     * Gets the binary data of the slices. The slices, which are not cached, are loaded from the db in one query.
+     * @param sliceReferences the slices
+     * @return the binary data in the order of the references, empty for the slices which do not exist anymore.
+     *     The arrays are shared with the cache and must not be modified.
+     */
+    public List<Optional<byte[]>> getSliceData(List<SliceReference> sliceReferences) {
+        Map<SliceCacheKey, SliceReference> references = new HashMap<>();
+        sliceReferences.forEach(sliceReference -> references.put(SliceCacheKey.of(sliceReference), sliceReference));
+
+        Map<SliceCacheKey, byte[]> binaryData =
+            cache.getAll(references.keySet(), missingKeys -> loadSliceData(missingKeys, references));
+
+        return sliceReferences.stream()
+            .map(sliceReference -> Optional.ofNullable(binaryData.get(SliceCacheKey.of(sliceReference))))
+            .collect(Collectors.toList());
+    }
+
+    private Map<SliceCacheKey, byte[]> loadSliceData(Iterable<? extends SliceCacheKey> keys,
+                                                     Map<SliceCacheKey, SliceReference> references) {
+        Map<Long, SliceCacheKey> keysByDbId = new HashMap<>();
+        keys.forEach(key -> keysByDbId.put(references.get(key).getDbId(), key));
+
+        Map<SliceCacheKey, byte[]> loaded = new HashMap<>();
+
+        for (SliceBinaryData sliceData : sliceRepository.findAllBinaryDataByDbIdIn(keysByDbId.keySet())) {
+            loaded.put(keysByDbId.get(sliceData.getDbId()), sliceData.getBinaryData());
+        }
+
+        return loaded;
+    }
+}
@@ -0,0 +1,234 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.utils;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Builds bloom filters over fixed length hashes without any allocation per hash. The serialized filter of a slice
+ * has the same binary format as the bloom filter of the dgc bloomfilter library (BloomFilterImpl.writeTo) and is
+ * written into an exactly sized array. The bits of the filter are also available as an array, which can be
+ * checked with {@link #mightContain(int[], int, byte, byte[])} by any number of threads.
+ */
+public final class BloomFilterBuilder {
+
+    private static final short VERSION = 1;
+
+    private static final byte HASH_ALGORITHM_SHA256 = 0;
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private static final int DIGEST_LENGTH = 32;
+
+    private static final int BITS_PER_FIELD = Integer.SIZE;
+
+    /**
+     * version (short), hash algorithm (byte), number of hashes (byte), probability rate (float),
+     * defined element amount (int), current element amount (int), data length (int).
+     */
+    private static final int HEADER_LENGTH = 2 + 1 + 1 + 4 + 4 + 4 + 4;
+
+    private static final ThreadLocal<MessageDigest> LOOKUP_DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not create digest for bloom filter", e);
+        }
+    });
+
+    private final float probRate;
+
+    private final int expectedCount;
+
+    private final int numBits;
+
+    private final byte numberOfHashes;
+
+    private final int[] data;
+
+    private final MessageDigest messageDigest;
+
+    private final byte[] digest = new byte[DIGEST_LENGTH];
+
+    private int count;
+
+    /**
+     * Creates an empty bloom filter.
+     *
+     * @param expectedCount the number of hashes, the filter is sized for
+     * @param probRate      the probability rate of the filter
+     * @throws NoSuchAlgorithmException if SHA-256 is not available
+     */
+    public BloomFilterBuilder(int expectedCount, float probRate) throws NoSuchAlgorithmException {
+        if (expectedCount <= 0) {
+            throw new IllegalArgumentException("No hashes to add to the bloom filter");
+        }
+
+        numBits = (int) Math.ceil((expectedCount * Math.log(probRate)) / Math.log(1 / Math.pow(2, Math.log(2))));
+        if (numBits <= 0) {
+            throw new IllegalArgumentException("Invalid bloom filter size for probability rate " + probRate);
+        }
+
+        this.probRate = probRate;
+        this.expectedCount = expectedCount;
+        numberOfHashes = (byte) Math.max(1, (int) Math.round((double) numBits / expectedCount * Math.log(2)));
+        int bytes = (int) Math.ceil(numBits / 8.0);
+        data = new int[(bytes / Integer.BYTES) + (bytes % Integer.BYTES)];
+        messageDigest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+    }
+
+    /**
+     * Creates the serialized bloom filter for the given hashes.
+     *
+     * @param hashes     the hashes packed into one array
+     * @param hashLength the length of a single hash in bytes
+     * @param probRate   the probability rate of the filter
+     * @return the binary data of the bloom filter
+     * @throws NoSuchAlgorithmException if SHA-256 is not available
+     */
+    public static byte[] build(byte[] hashes, int hashLength, float probRate) throws NoSuchAlgorithmException {
+        BloomFilterBuilder builder = new BloomFilterBuilder(hashes.length / hashLength, probRate);
+
+        for (int offset = 0; offset + hashLength <= hashes.length; offset += hashLength) {
+            builder.add(hashes, offset, hashLength);
+        }
+
+        return builder.toByteArray();
+    }
+
+    /**
+     * Adds a hash to the filter.
+     *
+     * @param hashes     the array containing the hash
+     * @param offset     the offset of the hash in the array
+     * @param hashLength the length of the hash in bytes
+     * @return the builder
+     */
+    public BloomFilterBuilder add(byte[] hashes, int offset, int hashLength) {
+        for (int i = 0; i < numberOfHashes; i++) {
+            int index = bitIndex(messageDigest, digest, hashes, offset, hashLength, i, numBits);
+            data[index / BITS_PER_FIELD] |= Integer.MIN_VALUE >>> (index % BITS_PER_FIELD);
+        }
+        count++;
+
+        return this;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getNumBits() {
+        return numBits;
+    }
+
+    public byte getNumberOfHashes() {
+        return numberOfHashes;
+    }
+
+    /**
+     * Gets a copy of the bits of the filter, which can be checked with
+     * {@link #mightContain(int[], int, byte, byte[])}.
+     *
+     * @return the bits of the filter
+     */
+    public int[] toBitArray() {
+        return data.clone();
+    }
+
+    /**
+     * Serializes the filter in the binary format of the dgc bloomfilter library.
+     *
+     * @return the binary data of the bloom filter
+     */
+    public byte[] toByteArray() {
+        ByteBuffer out = ByteBuffer.allocate(HEADER_LENGTH + data.length * Integer.BYTES);
+        out.putShort(VERSION);
+        out.put(HASH_ALGORITHM_SHA256);
+        out.put(numberOfHashes);
+        out.putFloat(probRate);
+        out.putInt(expectedCount);
+        out.putInt(count);
+        out.putInt(data.length);
+        out.asIntBuffer().put(data);
+
+        return out.array();
+    }
+
+    /**
+     * Checks if the hash might be contained in the bits of a filter. The bits are only read, so the check is
+     * thread safe.
+     *
+     * @param bits           the bits of the filter, see {@link #toBitArray()}
+     * @param numBits        the number of bits of the filter
+     * @param numberOfHashes the number of hash functions of the filter
+     * @param hash           the hash to check
+     * @return false if the hash is not contained, true if it might be contained
+     */
+    public static boolean mightContain(int[] bits, int numBits, byte numberOfHashes, byte[] hash) {
+        MessageDigest messageDigest = LOOKUP_DIGEST.get();
+        byte[] digest = new byte[DIGEST_LENGTH];
+
+        for (int i = 0; i < numberOfHashes; i++) {
+            int index = bitIndex(messageDigest, digest, hash, 0, hash.length, i, numBits);
+            if ((bits[index / BITS_PER_FIELD] & (Integer.MIN_VALUE >>> (index % BITS_PER_FIELD))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calculates the bit of the hash for the hash function with the given seed: SHA-256 of the hash and the big
+     * endian seed, modulo the number of bits.
+     */
+    private static int bitIndex(MessageDigest messageDigest, byte[] digest, byte[] hashes, int offset,
+                                int hashLength, int seed, int numBits) {
+        messageDigest.update(hashes, offset, hashLength);
+        messageDigest.update((byte) (seed >>> 24));
+        messageDigest.update((byte) (seed >>> 16));
+        messageDigest.update((byte) (seed >>> 8));
+        messageDigest.update((byte) seed);
+
+        try {
+            messageDigest.digest(digest, 0, DIGEST_LENGTH);
+        } catch (DigestException e) {
+            throw new IllegalStateException("Could not calculate hash for bloom filter", e);
+        }
+
+        return unsignedMod(digest, numBits);
+    }
+
+    /**
+     * Calculates the value of the big endian unsigned number modulo the divisor, without creating a BigInteger.
+     */
+    private static int unsignedMod(byte[] number, int divisor) {
+        long remainder = 0;
+        for (byte b : number) {
+            remainder = ((remainder << 8) | (b & 0xFF)) % divisor;
+        }
+        return (int) remainder;
+    }
+
+}
@@ -21,13 +21,21 @@
 package eu.europa.ec.dgc.revocationdistribution.utils;
 
 import eu.europa.ec.dgc.revocationdistribution.dto.RevocationListJsonResponseDto;
+import eu.europa.ec.dgc.revocationdistribution.entity.SliceEntity;
+import eu.europa.ec.dgc.revocationdistribution.model.SliceReference;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.bouncycastle.util.encoders.Hex;
 import org.springframework.stereotype.Service;
 
@@ -54,16 +62,6 @@ public class HelperFunctions {
         return Hex.toHexString(certHashBytes);
     }
 
-    /**
-     * Gets the byte array from a hex representation string.
-     *
-     * @param hex encoded string to be decoded.
-     * @return the byte data.
-     */
-    public byte[] getBytesFromHexString(String hex) {
-        return Hex.decode(hex);
-    }
-
 
     /**
      * Compare two RevocationListItems for equality.
@@ -83,4 +81,75 @@ public class HelperFunctions {
             && item1.getLastUpdated().truncatedTo(ChronoUnit.SECONDS)
                 .isEqual(item2.getLastUpdated().truncatedTo(ChronoUnit.SECONDS));
     }
+
+    /**
+     * Adds the binary data of a slice as entry to a tar archive.
+     * @param outTar the tar archive
+     * @param sliceEntity the slice to add
+     */
+    public void addSliceToTar(TarArchiveOutputStream outTar, SliceEntity sliceEntity) throws IOException {
+        addToTar(outTar, getSliceEntryName(sliceEntity.getKid(), sliceEntity.getId(), sliceEntity.getChunk(),
+            sliceEntity.getHash()), sliceEntity.getBinaryData());
+    }
+
+    /**
+     * Adds the binary data of a slice as entry to a tar archive.
+     * @param outTar the tar archive
+     * @param sliceReference the slice to add
+     * @param binaryData the binary data of the slice
+     */
+    public void addSliceToTar(TarArchiveOutputStream outTar, SliceReference sliceReference, byte[] binaryData)
+        throws IOException {
+        addToTar(outTar, getSliceEntryName(sliceReference.getKid(), sliceReference.getId(),
+            sliceReference.getChunk(), sliceReference.getHash()), binaryData);
+    }
+
+    /**
+     * Creates a gzip compressed tar archive of the given slices.
+     * @param sliceEntities the slices to add
+     * @return the archive data
+     */
+    public byte[] createTarForSlices(List<SliceEntity> sliceEntities) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream);
+             TarArchiveOutputStream outTar = new TarArchiveOutputStream(gzipOutputStream)) {
+
+            for (SliceEntity sliceEntity : sliceEntities) {
+                addSliceToTar(outTar, sliceEntity);
+            }
+
+            outTar.finish();
+        }
+
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * Gets the name of the tar archive entry of a slice.
+     * @param kid the kid of the slice
+     * @param id the partition id of the slice
+     * @param chunk the chunk of the slice
+     * @param hash the hash of the slice
+     * @return the entry name
+     */
+    public String getSliceEntryName(String kid, String id, String chunk, String hash) {
+        return String.format("%s/%s/%s/%s", kid, id, chunk, hash);
+    }
+
+    /**
+     * Adds binary data as entry to a tar archive.
+     * @param outTar the tar archive
+     * @param archiveEntryName the name of the entry
+     * @param binaryData the data of the entry
+     */
+    public void addToTar(TarArchiveOutputStream outTar, String archiveEntryName, byte[] binaryData)
+        throws IOException {
+        TarArchiveEntry tarArchiveEntry = new TarArchiveEntry(archiveEntryName);
+        tarArchiveEntry.setSize(binaryData.length);
+
+        outTar.putArchiveEntry(tarArchiveEntry);
+        outTar.write(binaryData);
+        outTar.closeArchiveEntry();
+    }
 }
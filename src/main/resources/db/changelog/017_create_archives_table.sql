@@ -0,0 +1,58 @@
+--liquibase formatted sql
+--changeset slaurenz:create-archives-table splitStatements:false
+
+CREATE TABLE IF NOT EXISTS archives
+(
+    db_id BIGSERIAL,
+    etag text COLLATE pg_catalog."default" NOT NULL,
+    kid text COLLATE pg_catalog."default" NOT NULL,
+    partition_id text COLLATE pg_catalog."default",
+    chunk text COLLATE pg_catalog."default",
+    data_type text COLLATE pg_catalog."default",
+    content_hash text COLLATE pg_catalog."default",
+    to_be_deleted boolean,
+    archive_binary_data bytea,
+    CONSTRAINT archives_pkey PRIMARY KEY (db_id)
+)
+WITH (
+    OIDS = FALSE
+);
+
+CREATE INDEX IF NOT EXISTS idx_archives_kid_partition_chunk
+    ON archives USING btree
+    (kid, partition_id, chunk, data_type);
+
+-- recreate set new etag function to handle the archives
+CREATE OR REPLACE FUNCTION set_new_etag(
+	new_etag text)
+    RETURNS integer
+    LANGUAGE 'plpgsql'
+    COST 100
+    VOLATILE PARALLEL UNSAFE
+AS $BODY$
+	BEGIN
+		-- Update etag in info table
+		INSERT INTO info (key, value)
+		VALUES('CURRENTETAG', new_etag)
+		ON CONFLICT (key)
+		DO UPDATE SET value = EXCLUDED.value;
+
+		-- Delete old slices, archives and partitions
+		DELETE FROM partitions WHERE to_be_deleted=true;
+		DELETE FROM slices WHERE to_be_deleted=true;
+		DELETE FROM archives WHERE to_be_deleted=true;
+
+		-- Update etag field of slices, archives and partitions
+		Update partitions SET etag = new_etag;
+		Update slices SET etag = new_etag;
+		Update archives SET etag = new_etag;
+
+		-- Update etag in info table
+		INSERT INTO info (key, value)
+		VALUES('CURRENTETAG', new_etag)
+		ON CONFLICT (key)
+		DO UPDATE SET value = EXCLUDED.value;
+
+		RETURN 1;
+	END;
+$BODY$;
@@ -0,0 +1,209 @@
+--liquibase formatted sql
+--changeset slaurenz:create-aggregate-tables splitStatements:false
+
+-- Aggregated hash data per kid. The tables are refreshed per kid, when the hashes of a kid changed,
+-- so that the generator does not need to aggregate the whole hashes table on every read.
+
+CREATE TABLE IF NOT EXISTS kid_aggregates
+(
+    kid text COLLATE pg_catalog."default" NOT NULL,
+    c bigint NOT NULL,
+    hashtypes text COLLATE pg_catalog."default",
+    updated boolean,
+    expired timestamp with time zone,
+    lastupdated timestamp with time zone,
+    CONSTRAINT kid_aggregates_pkey PRIMARY KEY (kid)
+)
+WITH (
+    OIDS = FALSE
+);
+
+CREATE TABLE IF NOT EXISTS chunk_aggregates
+(
+    row_id BIGSERIAL,
+    storage_mode text COLLATE pg_catalog."default" NOT NULL,
+    kid text COLLATE pg_catalog."default" NOT NULL,
+    partition_id text COLLATE pg_catalog."default",
+    x text COLLATE pg_catalog."default",
+    y text COLLATE pg_catalog."default",
+    chunk text COLLATE pg_catalog."default",
+    expired timestamp with time zone,
+    lastupdated timestamp with time zone,
+    hashes character varying[],
+    CONSTRAINT chunk_aggregates_pkey PRIMARY KEY (row_id)
+)
+WITH (
+    OIDS = FALSE
+);
+
+CREATE INDEX IF NOT EXISTS idx_chunk_aggregates_mode_kid_partition
+    ON chunk_aggregates USING btree
+    (storage_mode, kid, partition_id, chunk, expired);
+
+CREATE INDEX IF NOT EXISTS idx_hashes_kid
+    ON hashes USING btree
+    ((COALESCE(kid, 'UNKNOWN_KID'::character varying)));
+
+
+-- Recalculates the aggregates of one kid from the hashes table
+CREATE OR REPLACE FUNCTION refresh_kid_aggregates(
+	p_kid text)
+    RETURNS integer
+    LANGUAGE 'plpgsql'
+    COST 100
+    VOLATILE PARALLEL UNSAFE
+AS $BODY$
+	BEGIN
+		DELETE FROM kid_aggregates WHERE kid = p_kid;
+		DELETE FROM chunk_aggregates WHERE kid = p_kid;
+
+		INSERT INTO kid_aggregates (kid, c, hashtypes, updated, expired, lastupdated)
+		SELECT p_kid,
+			count(*),
+			array_to_string(array_agg(DISTINCT batch_list.type), ','::text),
+			bool_or(hashes.updated),
+			max(batch_list.expires),
+			max(hashes.last_updated)
+		FROM hashes
+			LEFT JOIN batch_list ON hashes.batch_id::text = batch_list.batch_id::text
+		WHERE COALESCE(hashes.kid, 'UNKNOWN_KID'::character varying) = p_kid
+		HAVING count(*) > 0;
+
+		INSERT INTO chunk_aggregates (storage_mode, kid, partition_id, x, y, chunk, expired, lastupdated, hashes)
+		SELECT 'POINT', p_kid, NULL::text, NULL::text, NULL::text, hashes.x::text,
+			max(date_trunc('minute'::text, batch_list.expires)),
+			max(hashes.last_updated),
+			array_agg(DISTINCT hashes.hash)
+		FROM hashes
+			LEFT JOIN batch_list ON hashes.batch_id::text = batch_list.batch_id::text
+		WHERE COALESCE(hashes.kid, 'UNKNOWN_KID'::character varying) = p_kid AND hashes.batch_id IS NOT NULL
+		GROUP BY hashes.x, (date_trunc('minute'::text, batch_list.expires));
+
+		INSERT INTO chunk_aggregates (storage_mode, kid, partition_id, x, y, chunk, expired, lastupdated, hashes)
+		SELECT 'VECTOR', p_kid, hashes.x::text, hashes.x::text, NULL::text, hashes.y::text,
+			max(date_trunc('minute'::text, batch_list.expires)),
+			max(hashes.last_updated),
+			array_agg(DISTINCT hashes.hash)
+		FROM hashes
+			LEFT JOIN batch_list ON hashes.batch_id::text = batch_list.batch_id::text
+		WHERE COALESCE(hashes.kid, 'UNKNOWN_KID'::character varying) = p_kid AND hashes.batch_id IS NOT NULL
+		GROUP BY hashes.x, hashes.y, (date_trunc('minute'::text, batch_list.expires));
+
+		INSERT INTO chunk_aggregates (storage_mode, kid, partition_id, x, y, chunk, expired, lastupdated, hashes)
+		SELECT 'COORDINATE', p_kid, concat(hashes.x, hashes.y), hashes.x::text, hashes.y::text, hashes.z::text,
+			max(date_trunc('minute'::text, batch_list.expires)),
+			max(hashes.last_updated),
+			array_agg(DISTINCT hashes.hash)
+		FROM hashes
+			LEFT JOIN batch_list ON hashes.batch_id::text = batch_list.batch_id::text
+		WHERE COALESCE(hashes.kid, 'UNKNOWN_KID'::character varying) = p_kid AND hashes.batch_id IS NOT NULL
+		GROUP BY hashes.x, hashes.y, hashes.z, (date_trunc('minute'::text, batch_list.expires));
+
+		RETURN 1;
+	END;
+$BODY$;
+
+
+-- Recalculates the aggregates of all kids with updated hashes.
+-- New hashes and hashes of deleted batches are flagged as updated.
+CREATE OR REPLACE FUNCTION refresh_updated_aggregates()
+    RETURNS integer
+    LANGUAGE 'plpgsql'
+    COST 100
+    VOLATILE PARALLEL UNSAFE
+AS $BODY$
+	DECLARE
+		updated_kid text;
+		kid_count integer := 0;
+	BEGIN
+		FOR updated_kid IN
+			SELECT DISTINCT COALESCE(hashes.kid, 'UNKNOWN_KID'::character varying) FROM hashes WHERE hashes.updated = true
+		LOOP
+			PERFORM refresh_kid_aggregates(updated_kid);
+			kid_count := kid_count + 1;
+		END LOOP;
+
+		RETURN kid_count;
+	END;
+$BODY$;
+
+
+-- initial load of the aggregates
+SELECT refresh_kid_aggregates(kids.kid)
+FROM (SELECT DISTINCT COALESCE(hashes.kid, 'UNKNOWN_KID'::character varying)::text AS kid FROM hashes) kids;
+
+
+-- recreate the views on top of the aggregate tables
+DROP VIEW IF EXISTS kid_view;
+DROP VIEW IF EXISTS point_view;
+DROP VIEW IF EXISTS vector_view;
+DROP VIEW IF EXISTS coordinate_view;
+
+CREATE OR REPLACE VIEW kid_view
+ AS
+ WITH configuration AS (
+         SELECT
+                CASE
+                    WHEN configuration_1.key = 'POINTLIMIT'::text THEN 'POINT'::text
+                    WHEN configuration_1.key = 'VECTORLIMIT'::text THEN 'VECTOR'::text
+                    WHEN configuration_1.key = 'COORDINATELIMIT'::text THEN 'COORDINATE'::text
+                    ELSE NULL::text
+                END AS storage_mode,
+            to_number(configuration_1.value, '999999999999'::text) AS minlimit,
+            to_number(configuration_1.value2, '999999999999'::text) AS maxlimit
+           FROM configuration configuration_1
+          WHERE configuration_1.key = ANY (ARRAY['POINTLIMIT'::text, 'VECTORLIMIT'::text, 'COORDINATELIMIT'::text])
+        )
+ SELECT a.kid,
+    a.hashtypes,
+    configuration.storage_mode,
+    a.lastupdated,
+    a.expired,
+    a.updated
+   FROM kid_aggregates a,
+    configuration
+  WHERE a.c::numeric >= configuration.minlimit AND a.c::numeric <= configuration.maxlimit;
+
+CREATE OR REPLACE VIEW point_view
+ AS
+ SELECT chunk_aggregates.row_id::text AS row_id,
+    chunk_aggregates.kid,
+    chunk_aggregates.expired,
+    chunk_aggregates.lastupdated,
+    chunk_aggregates.hashes,
+    chunk_aggregates.chunk,
+    chunk_aggregates.partition_id,
+    chunk_aggregates.x,
+    chunk_aggregates.y
+   FROM chunk_aggregates
+  WHERE chunk_aggregates.storage_mode = 'POINT'::text;
+
+CREATE OR REPLACE VIEW vector_view
+ AS
+ SELECT chunk_aggregates.row_id::text AS row_id,
+    chunk_aggregates.kid,
+    chunk_aggregates.expired,
+    chunk_aggregates.lastupdated,
+    chunk_aggregates.hashes,
+    chunk_aggregates.chunk,
+    chunk_aggregates.partition_id,
+    chunk_aggregates.x,
+    chunk_aggregates.y
+   FROM chunk_aggregates
+  WHERE chunk_aggregates.storage_mode = 'VECTOR'::text
+  ORDER BY chunk_aggregates.kid, chunk_aggregates.partition_id, chunk_aggregates.expired;
+
+CREATE OR REPLACE VIEW coordinate_view
+ AS
+ SELECT chunk_aggregates.row_id::text AS row_id,
+    chunk_aggregates.kid,
+    chunk_aggregates.expired,
+    chunk_aggregates.lastupdated,
+    chunk_aggregates.hashes,
+    chunk_aggregates.chunk,
+    chunk_aggregates.partition_id,
+    chunk_aggregates.x,
+    chunk_aggregates.y
+   FROM chunk_aggregates
+  WHERE chunk_aggregates.storage_mode = 'COORDINATE'::text
+  ORDER BY chunk_aggregates.kid, chunk_aggregates.partition_id, chunk_aggregates.chunk, chunk_aggregates.expired;
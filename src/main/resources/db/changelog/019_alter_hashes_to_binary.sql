@@ -0,0 +1,125 @@
+--liquibase formatted sql
+--changeset slaurenz:binary-hashes splitStatements:false
+
+-- Store the revoked hashes in binary form instead of hex strings
+
+DROP VIEW IF EXISTS point_view;
+DROP VIEW IF EXISTS vector_view;
+DROP VIEW IF EXISTS coordinate_view;
+
+ALTER TABLE hashes ALTER COLUMN hash TYPE bytea USING decode(hash, 'hex');
+
+ALTER TABLE chunk_aggregates ALTER COLUMN hashes TYPE bytea USING NULL;
+
+
+-- Recalculates the aggregates of one kid from the hashes table.
+-- The hashes of a chunk are concatenated to one packed binary value of 16 byte hashes.
+CREATE OR REPLACE FUNCTION refresh_kid_aggregates(
+	p_kid text)
+    RETURNS integer
+    LANGUAGE 'plpgsql'
+    COST 100
+    VOLATILE PARALLEL UNSAFE
+AS $BODY$
+	BEGIN
+		DELETE FROM kid_aggregates WHERE kid = p_kid;
+		DELETE FROM chunk_aggregates WHERE kid = p_kid;
+
+		INSERT INTO kid_aggregates (kid, c, hashtypes, updated, expired, lastupdated)
+		SELECT p_kid,
+			count(*),
+			array_to_string(array_agg(DISTINCT batch_list.type), ','::text),
+			bool_or(hashes.updated),
+			max(batch_list.expires),
+			max(hashes.last_updated)
+		FROM hashes
+			LEFT JOIN batch_list ON hashes.batch_id::text = batch_list.batch_id::text
+		WHERE COALESCE(hashes.kid, 'UNKNOWN_KID'::character varying) = p_kid
+		HAVING count(*) > 0;
+
+		INSERT INTO chunk_aggregates (storage_mode, kid, partition_id, x, y, chunk, expired, lastupdated, hashes)
+		SELECT 'POINT', p_kid, NULL::text, NULL::text, NULL::text, hashes.x::text,
+			max(date_trunc('minute'::text, batch_list.expires)),
+			max(hashes.last_updated),
+			string_agg(DISTINCT hashes.hash, ''::bytea ORDER BY hashes.hash)
+		FROM hashes
+			LEFT JOIN batch_list ON hashes.batch_id::text = batch_list.batch_id::text
+		WHERE COALESCE(hashes.kid, 'UNKNOWN_KID'::character varying) = p_kid AND hashes.batch_id IS NOT NULL
+			AND octet_length(hashes.hash) = 16
+		GROUP BY hashes.x, (date_trunc('minute'::text, batch_list.expires));
+
+		INSERT INTO chunk_aggregates (storage_mode, kid, partition_id, x, y, chunk, expired, lastupdated, hashes)
+		SELECT 'VECTOR', p_kid, hashes.x::text, hashes.x::text, NULL::text, hashes.y::text,
+			max(date_trunc('minute'::text, batch_list.expires)),
+			max(hashes.last_updated),
+			string_agg(DISTINCT hashes.hash, ''::bytea ORDER BY hashes.hash)
+		FROM hashes
+			LEFT JOIN batch_list ON hashes.batch_id::text = batch_list.batch_id::text
+		WHERE COALESCE(hashes.kid, 'UNKNOWN_KID'::character varying) = p_kid AND hashes.batch_id IS NOT NULL
+			AND octet_length(hashes.hash) = 16
+		GROUP BY hashes.x, hashes.y, (date_trunc('minute'::text, batch_list.expires));
+
+		INSERT INTO chunk_aggregates (storage_mode, kid, partition_id, x, y, chunk, expired, lastupdated, hashes)
+		SELECT 'COORDINATE', p_kid, concat(hashes.x, hashes.y), hashes.x::text, hashes.y::text, hashes.z::text,
+			max(date_trunc('minute'::text, batch_list.expires)),
+			max(hashes.last_updated),
+			string_agg(DISTINCT hashes.hash, ''::bytea ORDER BY hashes.hash)
+		FROM hashes
+			LEFT JOIN batch_list ON hashes.batch_id::text = batch_list.batch_id::text
+		WHERE COALESCE(hashes.kid, 'UNKNOWN_KID'::character varying) = p_kid AND hashes.batch_id IS NOT NULL
+			AND octet_length(hashes.hash) = 16
+		GROUP BY hashes.x, hashes.y, hashes.z, (date_trunc('minute'::text, batch_list.expires));
+
+		RETURN 1;
+	END;
+$BODY$;
+
+
+-- reload the aggregates in the new format
+SELECT refresh_kid_aggregates(kids.kid)
+FROM (SELECT DISTINCT COALESCE(hashes.kid, 'UNKNOWN_KID'::character varying)::text AS kid FROM hashes) kids;
+
+
+CREATE OR REPLACE VIEW point_view
+ AS
+ SELECT chunk_aggregates.row_id::text AS row_id,
+    chunk_aggregates.kid,
+    chunk_aggregates.expired,
+    chunk_aggregates.lastupdated,
+    chunk_aggregates.hashes,
+    chunk_aggregates.chunk,
+    chunk_aggregates.partition_id,
+    chunk_aggregates.x,
+    chunk_aggregates.y
+   FROM chunk_aggregates
+  WHERE chunk_aggregates.storage_mode = 'POINT'::text;
+
+CREATE OR REPLACE VIEW vector_view
+ AS
+ SELECT chunk_aggregates.row_id::text AS row_id,
+    chunk_aggregates.kid,
+    chunk_aggregates.expired,
+    chunk_aggregates.lastupdated,
+    chunk_aggregates.hashes,
+    chunk_aggregates.chunk,
+    chunk_aggregates.partition_id,
+    chunk_aggregates.x,
+    chunk_aggregates.y
+   FROM chunk_aggregates
+  WHERE chunk_aggregates.storage_mode = 'VECTOR'::text
+  ORDER BY chunk_aggregates.kid, chunk_aggregates.partition_id, chunk_aggregates.expired;
+
+CREATE OR REPLACE VIEW coordinate_view
+ AS
+ SELECT chunk_aggregates.row_id::text AS row_id,
+    chunk_aggregates.kid,
+    chunk_aggregates.expired,
+    chunk_aggregates.lastupdated,
+    chunk_aggregates.hashes,
+    chunk_aggregates.chunk,
+    chunk_aggregates.partition_id,
+    chunk_aggregates.x,
+    chunk_aggregates.y
+   FROM chunk_aggregates
+  WHERE chunk_aggregates.storage_mode = 'COORDINATE'::text
+  ORDER BY chunk_aggregates.kid, chunk_aggregates.partition_id, chunk_aggregates.chunk, chunk_aggregates.expired;
@@ -0,0 +1,55 @@
+--liquibase formatted sql
+--changeset slaurenz:create-delta-archive-tables splitStatements:false
+
+-- The etags of the last data sets, the slice changes between them and the delta archives from the last data sets
+-- to the current one. Clients holding one of the last etags can update with the delta archive.
+
+CREATE TABLE IF NOT EXISTS etag_history
+(
+    db_id BIGSERIAL,
+    etag text COLLATE pg_catalog."default" NOT NULL,
+    created_at timestamp with time zone,
+    CONSTRAINT etag_history_pkey PRIMARY KEY (db_id)
+)
+WITH (
+    OIDS = FALSE
+);
+
+CREATE TABLE IF NOT EXISTS slice_changes
+(
+    db_id BIGSERIAL,
+    etag text COLLATE pg_catalog."default" NOT NULL,
+    kid text COLLATE pg_catalog."default" NOT NULL,
+    partition_id text COLLATE pg_catalog."default",
+    chunk text COLLATE pg_catalog."default",
+    hash text COLLATE pg_catalog."default",
+    data_type text COLLATE pg_catalog."default",
+    slice_db_id bigint,
+    deleted boolean,
+    CONSTRAINT slice_changes_pkey PRIMARY KEY (db_id)
+)
+WITH (
+    OIDS = FALSE
+);
+
+CREATE INDEX IF NOT EXISTS idx_slice_changes_etag_data_type
+    ON slice_changes USING btree
+    (etag, data_type);
+
+CREATE TABLE IF NOT EXISTS delta_archives
+(
+    db_id BIGSERIAL,
+    from_etag text COLLATE pg_catalog."default" NOT NULL,
+    to_etag text COLLATE pg_catalog."default" NOT NULL,
+    data_type text COLLATE pg_catalog."default",
+    content_hash text COLLATE pg_catalog."default",
+    archive_binary_data bytea,
+    CONSTRAINT delta_archives_pkey PRIMARY KEY (db_id)
+)
+WITH (
+    OIDS = FALSE
+);
+
+CREATE INDEX IF NOT EXISTS idx_delta_archives_etags
+    ON delta_archives USING btree
+    (from_etag, to_etag, data_type);
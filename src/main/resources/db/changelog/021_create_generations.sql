@@ -0,0 +1,96 @@
+--liquibase formatted sql
+--changeset slaurenz:create-generations splitStatements:false
+
+-- Partitions, slices and archives are no longer rewritten with the new etag when a data set is published.
+-- Each data set gets an ascending generation number. A row is part of all data sets from the generation which
+-- added it (valid_from) up to the generation which removed it (valid_to). Publishing a data set only switches
+-- the current etag, removed rows are deleted in the background.
+
+CREATE TABLE IF NOT EXISTS generations
+(
+    generation BIGSERIAL,
+    etag text COLLATE pg_catalog."default" NOT NULL,
+    created_at timestamp with time zone,
+    CONSTRAINT generations_pkey PRIMARY KEY (generation),
+    CONSTRAINT generations_etag_key UNIQUE (etag)
+)
+WITH (
+    OIDS = FALSE
+);
+
+INSERT INTO generations (etag, created_at)
+SELECT value, now() FROM info WHERE key = 'CURRENTETAG';
+
+-- only the current data set is taken over
+DELETE FROM partitions WHERE to_be_deleted = true OR etag NOT IN (SELECT etag FROM generations);
+DELETE FROM slices WHERE to_be_deleted = true OR etag NOT IN (SELECT etag FROM generations);
+DELETE FROM archives WHERE to_be_deleted = true OR etag NOT IN (SELECT etag FROM generations);
+
+ALTER TABLE partitions ADD COLUMN IF NOT EXISTS valid_from bigint;
+ALTER TABLE partitions ADD COLUMN IF NOT EXISTS valid_to bigint;
+ALTER TABLE partitions DROP COLUMN IF EXISTS to_be_deleted;
+
+ALTER TABLE slices ADD COLUMN IF NOT EXISTS valid_from bigint;
+ALTER TABLE slices ADD COLUMN IF NOT EXISTS valid_to bigint;
+ALTER TABLE slices DROP COLUMN IF EXISTS to_be_deleted;
+
+ALTER TABLE archives ADD COLUMN IF NOT EXISTS valid_from bigint;
+ALTER TABLE archives ADD COLUMN IF NOT EXISTS valid_to bigint;
+ALTER TABLE archives DROP COLUMN IF EXISTS to_be_deleted;
+
+UPDATE partitions p SET valid_from = g.generation FROM generations g WHERE g.etag = p.etag;
+UPDATE slices s SET valid_from = g.generation FROM generations g WHERE g.etag = s.etag;
+UPDATE archives a SET valid_from = g.generation FROM generations g WHERE g.etag = a.etag;
+
+-- the generation of new rows is taken from their etag
+CREATE OR REPLACE FUNCTION set_valid_from()
+    RETURNS trigger
+    LANGUAGE 'plpgsql'
+    COST 100
+    VOLATILE NOT LEAKPROOF
+AS $BODY$
+	BEGIN
+		NEW.valid_from := (SELECT generation FROM generations WHERE etag = NEW.etag);
+		RETURN NEW;
+	END;
+$BODY$;
+
+CREATE TRIGGER set_valid_from_trigger
+    BEFORE INSERT
+    ON partitions
+    FOR EACH ROW
+    EXECUTE PROCEDURE set_valid_from();
+
+CREATE TRIGGER set_valid_from_trigger
+    BEFORE INSERT
+    ON slices
+    FOR EACH ROW
+    EXECUTE PROCEDURE set_valid_from();
+
+CREATE TRIGGER set_valid_from_trigger
+    BEFORE INSERT
+    ON archives
+    FOR EACH ROW
+    EXECUTE PROCEDURE set_valid_from();
+
+ALTER TABLE partitions ALTER COLUMN valid_from SET NOT NULL;
+ALTER TABLE slices ALTER COLUMN valid_from SET NOT NULL;
+ALTER TABLE archives ALTER COLUMN valid_from SET NOT NULL;
+
+-- recreate set new etag function, publishing a data set only switches the current etag
+CREATE OR REPLACE FUNCTION set_new_etag(
+	new_etag text)
+    RETURNS integer
+    LANGUAGE 'plpgsql'
+    COST 100
+    VOLATILE PARALLEL UNSAFE
+AS $BODY$
+	BEGIN
+		INSERT INTO info (key, value)
+		VALUES('CURRENTETAG', new_etag)
+		ON CONFLICT (key)
+		DO UPDATE SET value = EXCLUDED.value;
+
+		RETURN 1;
+	END;
+$BODY$;
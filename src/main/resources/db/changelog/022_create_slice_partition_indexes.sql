@@ -0,0 +1,43 @@
+--liquibase formatted sql
+--changeset slaurenz:create-slice-partition-indexes
+
+-- The slices and partitions are selected by kid, partition id, data type and chunk within the generation of the
+-- requested data set. The generation columns are part of the keys, so that the counts and the visibility checks
+-- are answered from the index. INCLUDE columns are not available before PostgreSQL 11.
+
+-- slices of the partitioned kids (VECTOR, COORDINATE)
+CREATE INDEX IF NOT EXISTS idx_slices_kid_partition_type_chunk
+    ON slices USING btree
+    (kid, partition_id, data_type, chunk, hash, valid_from, valid_to)
+    WHERE partition_id IS NOT NULL;
+
+-- slices of the kids without partition id (POINT)
+CREATE INDEX IF NOT EXISTS idx_slices_kid_type_chunk_without_partition
+    ON slices USING btree
+    (kid, data_type, chunk, hash, valid_from, valid_to)
+    WHERE partition_id IS NULL;
+
+-- slices added by a data set, used for the delta archives
+CREATE INDEX IF NOT EXISTS idx_slices_etag
+    ON slices USING btree
+    (etag);
+
+CREATE INDEX IF NOT EXISTS idx_partitions_kid_type_partition
+    ON partitions USING btree
+    (kid, data_type, partition_id, valid_from, valid_to);
+
+-- removed rows, used by the cleanup of the generations and the delta archives
+CREATE INDEX IF NOT EXISTS idx_slices_valid_to
+    ON slices USING btree
+    (valid_to)
+    WHERE valid_to IS NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_partitions_valid_to
+    ON partitions USING btree
+    (valid_to)
+    WHERE valid_to IS NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_archives_valid_to
+    ON archives USING btree
+    (valid_to)
+    WHERE valid_to IS NOT NULL;
@@ -0,0 +1,85 @@
+--liquibase formatted sql
+--changeset slaurenz:aggregate-kid-storage-mode splitStatements:false
+
+-- The chunks of a kid are only aggregated in the storage mode of the kid, instead of all three modes.
+-- A kid is refreshed whenever its hashes change, so a kid changing its storage mode is aggregated in the new mode.
+-- When the limits of the storage modes are changed, all kids need to be refreshed.
+
+CREATE INDEX IF NOT EXISTS idx_chunk_aggregates_kid
+    ON chunk_aggregates USING btree
+    (kid);
+
+
+-- Recalculates the aggregates of one kid from the hashes table.
+-- The hashes of a chunk are concatenated to one packed binary value of 16 byte hashes.
+CREATE OR REPLACE FUNCTION refresh_kid_aggregates(
+	p_kid text)
+    RETURNS integer
+    LANGUAGE 'plpgsql'
+    COST 100
+    VOLATILE PARALLEL UNSAFE
+AS $BODY$
+	DECLARE
+		kid_storage_mode text;
+	BEGIN
+		DELETE FROM kid_aggregates WHERE kid = p_kid;
+		DELETE FROM chunk_aggregates WHERE kid = p_kid;
+
+		INSERT INTO kid_aggregates (kid, c, hashtypes, updated, expired, lastupdated)
+		SELECT p_kid,
+			count(*),
+			array_to_string(array_agg(DISTINCT batch_list.type), ','::text),
+			bool_or(hashes.updated),
+			max(batch_list.expires),
+			max(hashes.last_updated)
+		FROM hashes
+			LEFT JOIN batch_list ON hashes.batch_id::text = batch_list.batch_id::text
+		WHERE COALESCE(hashes.kid, 'UNKNOWN_KID'::character varying) = p_kid
+		HAVING count(*) > 0;
+
+		SELECT kid_view.storage_mode INTO kid_storage_mode FROM kid_view WHERE kid_view.kid = p_kid;
+
+		IF kid_storage_mode = 'POINT' THEN
+			INSERT INTO chunk_aggregates (storage_mode, kid, partition_id, x, y, chunk, expired, lastupdated, hashes)
+			SELECT 'POINT', p_kid, NULL::text, NULL::text, NULL::text, hashes.x::text,
+				max(date_trunc('minute'::text, batch_list.expires)),
+				max(hashes.last_updated),
+				string_agg(DISTINCT hashes.hash, ''::bytea ORDER BY hashes.hash)
+			FROM hashes
+				LEFT JOIN batch_list ON hashes.batch_id::text = batch_list.batch_id::text
+			WHERE COALESCE(hashes.kid, 'UNKNOWN_KID'::character varying) = p_kid AND hashes.batch_id IS NOT NULL
+				AND octet_length(hashes.hash) = 16
+			GROUP BY hashes.x, (date_trunc('minute'::text, batch_list.expires));
+		ELSIF kid_storage_mode = 'VECTOR' THEN
+			INSERT INTO chunk_aggregates (storage_mode, kid, partition_id, x, y, chunk, expired, lastupdated, hashes)
+			SELECT 'VECTOR', p_kid, hashes.x::text, hashes.x::text, NULL::text, hashes.y::text,
+				max(date_trunc('minute'::text, batch_list.expires)),
+				max(hashes.last_updated),
+				string_agg(DISTINCT hashes.hash, ''::bytea ORDER BY hashes.hash)
+			FROM hashes
+				LEFT JOIN batch_list ON hashes.batch_id::text = batch_list.batch_id::text
+			WHERE COALESCE(hashes.kid, 'UNKNOWN_KID'::character varying) = p_kid AND hashes.batch_id IS NOT NULL
+				AND octet_length(hashes.hash) = 16
+			GROUP BY hashes.x, hashes.y, (date_trunc('minute'::text, batch_list.expires));
+		ELSIF kid_storage_mode = 'COORDINATE' THEN
+			INSERT INTO chunk_aggregates (storage_mode, kid, partition_id, x, y, chunk, expired, lastupdated, hashes)
+			SELECT 'COORDINATE', p_kid, concat(hashes.x, hashes.y), hashes.x::text, hashes.y::text, hashes.z::text,
+				max(date_trunc('minute'::text, batch_list.expires)),
+				max(hashes.last_updated),
+				string_agg(DISTINCT hashes.hash, ''::bytea ORDER BY hashes.hash)
+			FROM hashes
+				LEFT JOIN batch_list ON hashes.batch_id::text = batch_list.batch_id::text
+			WHERE COALESCE(hashes.kid, 'UNKNOWN_KID'::character varying) = p_kid AND hashes.batch_id IS NOT NULL
+				AND octet_length(hashes.hash) = 16
+			GROUP BY hashes.x, hashes.y, hashes.z, (date_trunc('minute'::text, batch_list.expires));
+		END IF;
+
+		RETURN 1;
+	END;
+$BODY$;
+
+
+-- remove the aggregates of the other storage modes
+DELETE FROM chunk_aggregates
+WHERE NOT EXISTS (SELECT 1 FROM kid_view
+	WHERE kid_view.kid = chunk_aggregates.kid AND kid_view.storage_mode = chunk_aggregates.storage_mode);
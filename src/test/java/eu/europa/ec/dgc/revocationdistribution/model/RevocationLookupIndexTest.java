@@ -0,0 +1,107 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class RevocationLookupIndexTest {
+
+    private static final long NOW = 1_700_000_000L;
+
+    @Test
+    void containsAllAddedHashes() {
+        Random random = new Random(1);
+        List<byte[]> hashes = new ArrayList<>();
+        RevocationLookupIndex.Builder builder = RevocationLookupIndex.builder("etag");
+
+        for (int i = 0; i < 10000; i++) {
+            byte[] hash = new byte[16];
+            random.nextBytes(hash);
+            hashes.add(hash);
+            builder.add(hash, NOW + 60);
+        }
+
+        RevocationLookupIndex index = builder.build();
+
+        Assertions.assertEquals(10000, index.getSize());
+        Assertions.assertEquals("etag", index.getEtag());
+        hashes.forEach(hash -> Assertions.assertTrue(index.isRevoked(hash, NOW)));
+
+        for (int i = 0; i < 10000; i++) {
+            byte[] hash = new byte[16];
+            random.nextBytes(hash);
+            Assertions.assertFalse(index.isRevoked(hash, NOW));
+        }
+    }
+
+    @Test
+    void expiredHashesAreNotRevoked() {
+        byte[] expired = new byte[16];
+        byte[] revoked = new byte[16];
+        revoked[15] = 1;
+
+        RevocationLookupIndex index = RevocationLookupIndex.builder("etag")
+            .add(expired, NOW - 1)
+            .add(revoked, NOW + 1)
+            .build();
+
+        Assertions.assertFalse(index.isRevoked(expired, NOW));
+        Assertions.assertTrue(index.isRevoked(revoked, NOW));
+    }
+
+    @Test
+    void duplicateHashesKeepLatestExpiration() {
+        byte[] hash = new byte[16];
+        hash[0] = 42;
+
+        RevocationLookupIndex index = RevocationLookupIndex.builder("etag")
+            .add(hash, NOW + 10)
+            .add(hash, NOW - 10)
+            .build();
+
+        Assertions.assertEquals(1, index.getSize());
+        Assertions.assertTrue(index.isRevoked(hash, NOW));
+    }
+
+    @Test
+    void hashesWithWrongLengthAreIgnored() {
+        RevocationLookupIndex index = RevocationLookupIndex.builder("etag")
+            .add(new byte[32], NOW + 10)
+            .build();
+
+        Assertions.assertEquals(0, index.getSize());
+        Assertions.assertFalse(index.isRevoked(new byte[32], NOW));
+        Assertions.assertFalse(index.isRevoked(new byte[16], NOW));
+    }
+
+    @Test
+    void emptyIndex() {
+        RevocationLookupIndex index = RevocationLookupIndex.builder(null).build();
+
+        Assertions.assertEquals(0, index.getSize());
+        Assertions.assertFalse(index.isRevoked(new byte[16], NOW));
+    }
+
+}
@@ -0,0 +1,196 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.repository;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+
+import eu.europa.ec.dgc.gateway.connector.DgcGatewayCountryListDownloadConnector;
+import eu.europa.ec.dgc.gateway.connector.DgcGatewayValidationRuleDownloadConnector;
+import eu.europa.ec.dgc.gateway.connector.DgcGatewayValueSetDownloadConnector;
+import eu.europa.ec.dgc.gateway.connector.client.DgcGatewayConnectorRestClientConfig;
+import eu.europa.ec.dgc.revocationdistribution.client.IssuanceDgciRestClient;
+import eu.europa.ec.dgc.revocationdistribution.entity.BatchListEntity;
+import eu.europa.ec.dgc.revocationdistribution.entity.HashesEntity;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import java.sql.Timestamp;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Writes hashes with the binary COPY of the bulk insert and reads them back. The inserts are rolled back after
+ * each test. Within the transaction now() is constant, so the timestamps set by the trigger can be compared.
+ */
+@SpringBootTest(
+    properties = {
+        "dgc.gateway.connector.enabled=false"
+    },
+    webEnvironment = SpringBootTest.WebEnvironment.NONE
+)
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Transactional
+class HashesRepositoryImplTest {
+
+    private static final String BATCH_ID = "batch-1";
+
+    private static final Timestamp OLD_TIMESTAMP = Timestamp.valueOf("2021-06-01 00:00:00");
+
+    @MockBean
+    DgcGatewayConnectorRestClientConfig dgcGatewayConnectorRestClientConfig;
+
+    @MockBean
+    IssuanceDgciRestClient issuanceDgciRestClient;
+
+    @MockBean
+    DgcGatewayValidationRuleDownloadConnector dgcGatewayValidationRuleDownloadConnector;
+
+    @MockBean
+    DgcGatewayValueSetDownloadConnector dgcGatewayValueSetDownloadConnector;
+
+    @MockBean
+    DgcGatewayCountryListDownloadConnector dgcGatewayCountryListDownloadConnector;
+
+    @Autowired
+    HashesRepository hashesRepository;
+
+    @Autowired
+    BatchListRepository batchListRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    BatchListEntity batch;
+
+    @BeforeEach
+    void createBatch() {
+        jdbcTemplate.update("DELETE FROM hashes");
+
+        batch = new BatchListEntity();
+        batch.setBatchId(BATCH_ID);
+        batch.setCountry("DE");
+        batch.setExpires(ZonedDateTime.now().plusDays(1));
+        batch.setType(BatchListEntity.RevocationHashType.SIGNATURE);
+        batch.setKid("kid1");
+        batch = batchListRepository.saveAndFlush(batch);
+    }
+
+    @Test
+    void bulkInsertedHashesAreReadBack() {
+        UUID id = UUID.randomUUID();
+        byte[] hash = new byte[] {(byte) 0xff, 0x00, (byte) 0x80, 0x7f, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12};
+        byte[] orphanedHash = new byte[HashesEntity.HASH_LENGTH];
+
+        long inserted = hashesRepository.bulkInsert(List.of(
+            createHash(id, hash, batch, "kid1", true),
+            createHash(null, orphanedHash, null, null, false)));
+
+        Assertions.assertEquals(2, inserted);
+
+        Map<String, Object> row = jdbcTemplate.queryForMap("SELECT * FROM hashes WHERE id = ?", id);
+        Assertions.assertArrayEquals(hash, (byte[]) row.get("hash"));
+        Assertions.assertEquals(BATCH_ID, row.get("batch_id"));
+        Assertions.assertEquals("kid1", row.get("kid"));
+        Assertions.assertEquals(true, row.get("updated"));
+        Assertions.assertEquals("f", row.get("x"));
+        Assertions.assertEquals("f", row.get("y"));
+        Assertions.assertEquals("0", row.get("z"));
+        Assertions.assertEquals(getNow(), row.get("last_updated"));
+
+        Map<String, Object> orphanedRow =
+            jdbcTemplate.queryForMap("SELECT * FROM hashes WHERE hash = ?", (Object) orphanedHash);
+        Assertions.assertNotNull(orphanedRow.get("id"));
+        Assertions.assertNull(orphanedRow.get("batch_id"));
+        Assertions.assertNull(orphanedRow.get("kid"));
+        Assertions.assertEquals(false, orphanedRow.get("updated"));
+    }
+
+    @Test
+    void bulkInsertOfManyHashes() {
+        List<HashesEntity> hashes = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            byte[] hash = new byte[HashesEntity.HASH_LENGTH];
+            hash[0] = (byte) i;
+            hash[1] = (byte) (i >> 8);
+            hashes.add(createHash(null, hash, batch, "kid1", true));
+        }
+
+        Assertions.assertEquals(10000, hashesRepository.bulkInsert(hashes));
+        Assertions.assertEquals(10000, jdbcTemplate.queryForObject(
+            "SELECT COUNT(DISTINCT hash) FROM hashes WHERE batch_id = ?", Long.class, BATCH_ID));
+        Assertions.assertEquals(0, hashesRepository.bulkInsert(List.of()));
+    }
+
+    @Test
+    void triggerUpdatesLastUpdatedOfUpdatedAndOrphanedHashes() {
+        hashesRepository.bulkInsert(List.of(
+            createHash(null, new byte[] {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1}, batch, "kid1", false),
+            createHash(null, new byte[] {2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2}, null, "kid1", false)));
+
+        // the trigger only fires for updated hashes and hashes without batch
+        jdbcTemplate.update("UPDATE hashes SET updated = false, last_updated = ?", OLD_TIMESTAMP);
+        Assertions.assertEquals(List.of(OLD_TIMESTAMP), getLastUpdated("batch_id IS NOT NULL"));
+        Assertions.assertEquals(List.of(getNow()), getLastUpdated("batch_id IS NULL"));
+        Assertions.assertEquals(List.of(true), jdbcTemplate.queryForList(
+            "SELECT updated FROM hashes WHERE batch_id IS NULL", Boolean.class));
+
+        jdbcTemplate.update("UPDATE hashes SET updated = true WHERE batch_id IS NOT NULL");
+        Assertions.assertEquals(List.of(getNow()), getLastUpdated("batch_id IS NOT NULL"));
+
+        // deleting the batch orphans its hashes, which marks them as updated
+        jdbcTemplate.update("UPDATE hashes SET updated = false, last_updated = ? WHERE batch_id IS NOT NULL",
+            OLD_TIMESTAMP);
+        jdbcTemplate.update("DELETE FROM batch_list WHERE batch_id = ?", BATCH_ID);
+        Assertions.assertEquals(List.of(getNow(), getNow()), getLastUpdated("batch_id IS NULL"));
+        Assertions.assertEquals(List.of(true, true), jdbcTemplate.queryForList(
+            "SELECT updated FROM hashes", Boolean.class));
+    }
+
+    private HashesEntity createHash(UUID id, byte[] hash, BatchListEntity batch, String kid, boolean updated) {
+        HashesEntity hashesEntity = new HashesEntity();
+        hashesEntity.setId(id);
+        hashesEntity.setHash(hash);
+        hashesEntity.setX(Character.forDigit((hash[0] >> 4) & 0xF, 16));
+        hashesEntity.setY(Character.forDigit(hash[0] & 0xF, 16));
+        hashesEntity.setZ(Character.forDigit((hash[1] >> 4) & 0xF, 16));
+        hashesEntity.setKid(kid);
+        hashesEntity.setBatch(batch);
+        hashesEntity.setUpdated(updated);
+        return hashesEntity;
+    }
+
+    private List<Timestamp> getLastUpdated(String condition) {
+        return jdbcTemplate.queryForList("SELECT last_updated FROM hashes WHERE " + condition, Timestamp.class);
+    }
+
+    private Timestamp getNow() {
+        return jdbcTemplate.queryForObject("SELECT now()", Timestamp.class);
+    }
+}
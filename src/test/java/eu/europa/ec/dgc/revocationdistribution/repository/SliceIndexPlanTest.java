@@ -0,0 +1,161 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.repository;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+
+import eu.europa.ec.dgc.gateway.connector.DgcGatewayCountryListDownloadConnector;
+import eu.europa.ec.dgc.gateway.connector.DgcGatewayValidationRuleDownloadConnector;
+import eu.europa.ec.dgc.gateway.connector.DgcGatewayValueSetDownloadConnector;
+import eu.europa.ec.dgc.gateway.connector.client.DgcGatewayConnectorRestClientConfig;
+import eu.europa.ec.dgc.revocationdistribution.client.IssuanceDgciRestClient;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Checks the query plans of the slice and partition lookups on a seeded data set. Each plan is compared with the
+ * plan after dropping the index, the changes are rolled back after each test.
+ */
+@Slf4j
+@SpringBootTest(
+    properties = {
+        "dgc.gateway.connector.enabled=false"
+    },
+    webEnvironment = SpringBootTest.WebEnvironment.NONE
+)
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+@Transactional
+class SliceIndexPlanTest {
+
+    private static final String IN_DATA_SET =
+        "x.valid_from <= (SELECT generation FROM generations WHERE etag = 'etag-2')"
+            + " AND (x.valid_to IS NULL OR x.valid_to > (SELECT generation FROM generations WHERE etag = 'etag-2'))";
+
+    private static final Pattern TOTAL_COST = Pattern.compile("cost=[0-9.]+\\.\\.([0-9.]+)");
+
+    @MockBean
+    DgcGatewayConnectorRestClientConfig dgcGatewayConnectorRestClientConfig;
+
+    @MockBean
+    IssuanceDgciRestClient issuanceDgciRestClient;
+
+    @MockBean
+    DgcGatewayValidationRuleDownloadConnector dgcGatewayValidationRuleDownloadConnector;
+
+    @MockBean
+    DgcGatewayValueSetDownloadConnector dgcGatewayValueSetDownloadConnector;
+
+    @MockBean
+    DgcGatewayCountryListDownloadConnector dgcGatewayCountryListDownloadConnector;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    /**
+     * Seeds 300 partitioned kids with 16 partitions of 16 chunks and 100 kids without partitions, each with both
+     * slice types. The slices of one chunk are removed in the second generation.
+     */
+    @BeforeEach
+    void seedData() {
+        jdbcTemplate.update("INSERT INTO generations (etag, created_at) VALUES ('etag-1', now()), ('etag-2', now())");
+
+        jdbcTemplate.update("INSERT INTO slices (etag, kid, partition_id, chunk, hash, data_type, lastupdated,"
+            + " slice_binary_data)"
+            + " SELECT 'etag-1', 'kid' || k, CASE WHEN k < 100 THEN NULL ELSE to_hex(p) END, to_hex(c),"
+            + " md5(k || '/' || p || '/' || c || t), t, now(), decode(repeat(md5(k::text), 10), 'hex')"
+            + " FROM generate_series(0, 399) k, generate_series(0, 15) p, generate_series(0, 15) c,"
+            + " unnest(ARRAY['BLOOMFILTER', 'VARHASHLIST']) t WHERE k >= 100 OR p = 0");
+        jdbcTemplate.update("UPDATE slices SET valid_to = (SELECT generation FROM generations WHERE etag = 'etag-2')"
+            + " WHERE chunk = '3'");
+
+        jdbcTemplate.update("INSERT INTO partitions (etag, kid, partition_id, data_type, lastupdated)"
+            + " SELECT 'etag-1', 'kid' || k, CASE WHEN k < 100 THEN NULL ELSE to_hex(p) END, t, now()"
+            + " FROM generate_series(0, 399) k, generate_series(0, 15) p,"
+            + " unnest(ARRAY['BLOOMFILTER', 'VARHASHLIST']) t WHERE k >= 100 OR p = 0");
+
+        jdbcTemplate.execute("ANALYZE slices");
+        jdbcTemplate.execute("ANALYZE partitions");
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+        "idx_slices_kid_partition_type_chunk | SELECT x.db_id, x.hash FROM slices x WHERE {} AND x.kid = 'kid200'"
+            + " AND x.partition_id = 'a' AND x.chunk = 'b' AND x.hash = 'h' AND x.data_type = 'BLOOMFILTER'",
+        "idx_slices_kid_partition_type_chunk | SELECT x.db_id, x.hash FROM slices x WHERE {} AND x.kid = 'kid200'"
+            + " AND x.partition_id = 'a' AND x.data_type = 'BLOOMFILTER' AND x.chunk IN ('1', '2')",
+        "idx_slices_kid_partition_type_chunk | SELECT COUNT(x.db_id) FROM slices x WHERE {} AND x.kid = 'kid200'"
+            + " AND x.partition_id = 'a' AND x.data_type = 'BLOOMFILTER'",
+        "idx_slices_kid_type_chunk_without_partition | SELECT x.db_id, x.hash FROM slices x WHERE {}"
+            + " AND x.kid = 'kid20' AND x.partition_id IS NULL AND x.chunk = 'b' AND x.data_type = 'BLOOMFILTER'",
+        "idx_slices_kid_type_chunk_without_partition | SELECT COUNT(x.db_id) FROM slices x WHERE {}"
+            + " AND x.kid = 'kid20' AND x.partition_id IS NULL AND x.data_type = 'BLOOMFILTER'",
+        "idx_partitions_kid_type_partition | SELECT x.db_id FROM partitions x WHERE {} AND x.kid = 'kid200'"
+            + " AND x.partition_id = 'a' AND x.data_type = 'BLOOMFILTER'",
+        "idx_partitions_kid_type_partition | SELECT x.db_id FROM partitions x WHERE {} AND x.kid = 'kid20'"
+            + " AND x.partition_id IS NULL AND x.data_type = 'BLOOMFILTER'",
+        "idx_slices_valid_to | SELECT x.db_id FROM slices x WHERE x.valid_to <= 1",
+        "idx_slices_etag | SELECT x.db_id FROM slices x WHERE x.etag = 'etag-2'"
+    })
+    void queryUsesIndex(String index, String query) {
+        String sql = query.replace("{}", IN_DATA_SET);
+
+        List<String> plan = explain(sql);
+        log.info("Plan with {}:\n{}", index, String.join("\n", plan));
+        Assertions.assertTrue(plan.stream().anyMatch(line -> line.contains(index)), String.join("\n", plan));
+        Assertions.assertTrue(plan.stream().noneMatch(line -> line.contains("Seq Scan on slices")
+            || line.contains("Seq Scan on partitions")), String.join("\n", plan));
+
+        jdbcTemplate.execute("DROP INDEX " + index);
+
+        List<String> planWithoutIndex = explain(sql);
+        log.info("Plan without {}:\n{}", index, String.join("\n", planWithoutIndex));
+        Assertions.assertTrue(planWithoutIndex.stream().noneMatch(line -> line.contains(index)),
+            String.join("\n", planWithoutIndex));
+        // without the index the query falls back to a more expensive plan
+        Assertions.assertTrue(getTotalCost(planWithoutIndex) > getTotalCost(plan),
+            String.join("\n", plan) + "\n---\n" + String.join("\n", planWithoutIndex));
+    }
+
+    private List<String> explain(String sql) {
+        return jdbcTemplate.queryForList("EXPLAIN " + sql, String.class);
+    }
+
+    /**
+     * Gets the estimated total cost of the plan from its top node, e.g. 8.31 of "(cost=0.29..8.31 rows=1 width=8)".
+     */
+    private double getTotalCost(List<String> plan) {
+        Matcher matcher = TOTAL_COST.matcher(plan.get(0));
+        Assertions.assertTrue(matcher.find(), plan.get(0));
+        return Double.parseDouble(matcher.group(1));
+    }
+}
@@ -0,0 +1,229 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.service;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.europa.ec.dgc.gateway.connector.DgcGatewayCountryListDownloadConnector;
+import eu.europa.ec.dgc.gateway.connector.DgcGatewayValidationRuleDownloadConnector;
+import eu.europa.ec.dgc.gateway.connector.DgcGatewayValueSetDownloadConnector;
+import eu.europa.ec.dgc.gateway.connector.client.DgcGatewayConnectorRestClientConfig;
+import eu.europa.ec.dgc.revocationdistribution.client.IssuanceDgciRestClient;
+import eu.europa.ec.dgc.revocationdistribution.controller.RevocationListController;
+import eu.europa.ec.dgc.revocationdistribution.exception.DataNotFoundException;
+import eu.europa.ec.dgc.revocationdistribution.utils.HelperFunctions;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Generates three data sets and checks the delta archives from both previous data sets to the current one, as
+ * served by the delta endpoint. The generator commits its data, so the tables are cleared after each test.
+ */
+@SpringBootTest(
+    properties = {
+        "dgc.gateway.connector.enabled=false"
+    },
+    webEnvironment = SpringBootTest.WebEnvironment.NONE
+)
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+class DeltaArchiveServiceTest {
+
+    private static final String KID = "kid1";
+
+    private static final String DELETED_KID = "kid2";
+
+    @MockBean
+    DgcGatewayConnectorRestClientConfig dgcGatewayConnectorRestClientConfig;
+
+    @MockBean
+    IssuanceDgciRestClient issuanceDgciRestClient;
+
+    @MockBean
+    DgcGatewayValidationRuleDownloadConnector dgcGatewayValidationRuleDownloadConnector;
+
+    @MockBean
+    DgcGatewayValueSetDownloadConnector dgcGatewayValueSetDownloadConnector;
+
+    @MockBean
+    DgcGatewayCountryListDownloadConnector dgcGatewayCountryListDownloadConnector;
+
+    @Autowired
+    GeneratorService generatorService;
+
+    @Autowired
+    RevocationListService revocationListService;
+
+    @Autowired
+    InfoService infoService;
+
+    @Autowired
+    RevocationListController revocationListController;
+
+    @Autowired
+    HelperFunctions helperFunctions;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    GenerationTestData testData;
+
+    String etag1;
+
+    String etag2;
+
+    String etag3;
+
+    /**
+     * Generates the data sets. The kid is stored in POINT mode, so each first digit of a hash is a chunk.
+     * The second data set adds chunk 3 and deletes the second kid, the third data set removes chunk 3 again and
+     * adds chunk 4.
+     */
+    @BeforeEach
+    void generateDataSets() {
+        testData = new GenerationTestData(jdbcTemplate, helperFunctions);
+        testData.clear();
+
+        testData.insertBatch("batch-a", KID, "1a000000000000000000000000000001", "2b000000000000000000000000000002");
+        testData.insertBatch("batch-b", DELETED_KID, "5c000000000000000000000000000005");
+        etag1 = generate();
+
+        testData.insertBatch("batch-c", KID, "3d000000000000000000000000000003");
+        revocationListService.deleteBatchListItemsByIds(List.of("batch-b"));
+        etag2 = generate();
+
+        revocationListService.deleteBatchListItemsByIds(List.of("batch-c"));
+        testData.insertBatch("batch-d", KID, "4e000000000000000000000000000004");
+        etag3 = generate();
+    }
+
+    @AfterEach
+    void cleanup() {
+        testData.clear();
+    }
+
+    @Test
+    void deltaFromPreviousDataSet() throws IOException {
+        Set<String> removedChunk = testData.getRemovedSliceEntryNames(etag3, KID);
+        Set<String> addedChunk = testData.getAddedSliceEntryNames(etag3, KID);
+        assertChunks(removedChunk, "3");
+        assertChunks(addedChunk, "4");
+
+        DeltaArchive delta = getDelta(etag2, etag3);
+
+        Assertions.assertEquals(removedChunk, delta.deleted);
+        Assertions.assertEquals(addedChunk, delta.added);
+    }
+
+    @Test
+    void deltaOverTwoDataSets() throws IOException {
+        Set<String> deletedKid = testData.getRemovedSliceEntryNames(etag2, DELETED_KID);
+        Assertions.assertFalse(deletedKid.isEmpty());
+
+        DeltaArchive delta = getDelta(etag1, etag3);
+
+        // chunk 3 was added and removed in between, so it is neither deleted nor added
+        Assertions.assertEquals(deletedKid, delta.deleted);
+        Assertions.assertEquals(testData.getAddedSliceEntryNames(etag3, KID), delta.added);
+    }
+
+    @Test
+    void historyIsRestartedWhenChangesAreMissing() throws IOException {
+        // the changes of the current data set were not recorded, e.g. by an instance without delta archives
+        jdbcTemplate.update("DELETE FROM etag_history");
+
+        testData.insertBatch("batch-e", KID, "6f000000000000000000000000000006");
+        String etag4 = generate();
+
+        Assertions.assertEquals(List.of(etag3, etag4),
+            jdbcTemplate.queryForList("SELECT etag FROM etag_history ORDER BY db_id", String.class));
+
+        DeltaArchive delta = getDelta(etag3, etag4);
+        Assertions.assertEquals(Set.of(), delta.deleted);
+        Set<String> addedChunk = testData.getAddedSliceEntryNames(etag4, KID);
+        assertChunks(addedChunk, "6");
+        Assertions.assertEquals(addedChunk, delta.added);
+
+        Assertions.assertThrows(DataNotFoundException.class, () -> getDelta(etag2, etag4));
+        Assertions.assertThrows(DataNotFoundException.class, () -> getDelta(etag1, etag4));
+    }
+
+    private String generate() {
+        generatorService.generateNewDataSet();
+        return infoService.getValueForKey(InfoService.CURRENT_ETAG);
+    }
+
+    private void assertChunks(Set<String> entryNames, String chunk) {
+        Assertions.assertFalse(entryNames.isEmpty());
+        entryNames.forEach(entryName -> Assertions.assertTrue(entryName.startsWith(KID + "/null/" + chunk + "/"),
+            entryName));
+    }
+
+    private DeltaArchive getDelta(String fromEtag, String toEtag) throws IOException {
+        ResponseEntity<StreamingResponseBody> response = revocationListController.getDelta(fromEtag, toEtag, null);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        response.getBody().writeTo(body);
+
+        DeltaArchive delta = new DeltaArchive();
+
+        try (TarArchiveInputStream tar =
+                 new TarArchiveInputStream(new GZIPInputStream(new ByteArrayInputStream(body.toByteArray())))) {
+            TarArchiveEntry entry;
+            while ((entry = tar.getNextTarEntry()) != null) {
+                if (entry.getName().equals(DeltaArchiveService.DELETED_SLICES_ENTRY)) {
+                    delta.deleted.addAll(objectMapper.readValue(tar.readAllBytes(), new TypeReference<List<String>>() {
+                    }));
+                } else {
+                    delta.added.add(entry.getName());
+                }
+            }
+        }
+
+        return delta;
+    }
+
+    private static class DeltaArchive {
+        private final Set<String> deleted = new HashSet<>();
+        private final Set<String> added = new HashSet<>();
+    }
+}
@@ -0,0 +1,240 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.service;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+
+import eu.europa.ec.dgc.gateway.connector.DgcGatewayCountryListDownloadConnector;
+import eu.europa.ec.dgc.gateway.connector.DgcGatewayValidationRuleDownloadConnector;
+import eu.europa.ec.dgc.gateway.connector.DgcGatewayValueSetDownloadConnector;
+import eu.europa.ec.dgc.gateway.connector.client.DgcGatewayConnectorRestClientConfig;
+import eu.europa.ec.dgc.revocationdistribution.client.IssuanceDgciRestClient;
+import eu.europa.ec.dgc.revocationdistribution.entity.PartitionEntity;
+import eu.europa.ec.dgc.revocationdistribution.model.SliceReference;
+import eu.europa.ec.dgc.revocationdistribution.model.SliceType;
+import eu.europa.ec.dgc.revocationdistribution.repository.ArchiveRepository;
+import eu.europa.ec.dgc.revocationdistribution.repository.PartitionRepository;
+import eu.europa.ec.dgc.revocationdistribution.repository.SliceRepository;
+import eu.europa.ec.dgc.revocationdistribution.utils.HelperFunctions;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Publishes data sets with removed kids and chunks and checks, which rows each data set sees and which rows are
+ * deleted by the cleanup. The default of one retained generation is used.
+ */
+@SpringBootTest(
+    properties = {
+        "dgc.gateway.connector.enabled=false"
+    },
+    webEnvironment = SpringBootTest.WebEnvironment.NONE
+)
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+class GenerationCleanupServiceTest {
+
+    private static final String KID = "kid1";
+
+    private static final String REMOVED_KID = "kid2";
+
+    private static final List<String> TABLES = List.of("slices", "partitions", "archives");
+
+    @MockBean
+    DgcGatewayConnectorRestClientConfig dgcGatewayConnectorRestClientConfig;
+
+    @MockBean
+    IssuanceDgciRestClient issuanceDgciRestClient;
+
+    @MockBean
+    DgcGatewayValidationRuleDownloadConnector dgcGatewayValidationRuleDownloadConnector;
+
+    @MockBean
+    DgcGatewayValueSetDownloadConnector dgcGatewayValueSetDownloadConnector;
+
+    @MockBean
+    DgcGatewayCountryListDownloadConnector dgcGatewayCountryListDownloadConnector;
+
+    @Autowired
+    GeneratorService generatorService;
+
+    @Autowired
+    GenerationCleanupService generationCleanupService;
+
+    @Autowired
+    RevocationListService revocationListService;
+
+    @Autowired
+    InfoService infoService;
+
+    @Autowired
+    SliceRepository sliceRepository;
+
+    @Autowired
+    PartitionRepository partitionRepository;
+
+    @Autowired
+    ArchiveRepository archiveRepository;
+
+    @Autowired
+    HelperFunctions helperFunctions;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    GenerationTestData testData;
+
+    String etag1;
+
+    String etag2;
+
+    Set<Long> slicesOfEtag1;
+
+    Set<Long> partitionsOfEtag1;
+
+    /**
+     * Publishes two data sets. The second one removes a kid and adds a chunk to the other kid, which replaces the
+     * partition of the kid.
+     */
+    @BeforeEach
+    void publishDataSets() {
+        testData = new GenerationTestData(jdbcTemplate, helperFunctions);
+        testData.clear();
+
+        testData.insertBatch("batch-a", KID, "1a000000000000000000000000000001", "2b000000000000000000000000000002");
+        testData.insertBatch("batch-b", REMOVED_KID, "5c000000000000000000000000000005");
+        etag1 = generate();
+        slicesOfEtag1 = getSliceIds(etag1);
+        partitionsOfEtag1 = getPartitionIds(etag1);
+
+        revocationListService.deleteBatchListItemsByIds(List.of("batch-b"));
+        testData.insertBatch("batch-c", KID, "3d000000000000000000000000000003");
+        etag2 = generate();
+    }
+
+    @AfterEach
+    void cleanup() {
+        testData.clear();
+    }
+
+    @Test
+    void previousDataSetKeepsItsRows() {
+        Assertions.assertEquals(slicesOfEtag1, getSliceIds(etag1));
+        Assertions.assertEquals(partitionsOfEtag1, getPartitionIds(etag1));
+        Assertions.assertTrue(hasArchive(etag1, REMOVED_KID));
+    }
+
+    @Test
+    void currentDataSetSeesOnlyValidRows() {
+        Assertions.assertEquals(getValidIds("slices"), getSliceIds(etag2));
+        Assertions.assertEquals(getValidIds("partitions"), getPartitionIds(etag2));
+        Assertions.assertFalse(hasArchive(etag2, REMOVED_KID));
+        Assertions.assertTrue(hasArchive(etag2, KID));
+
+        // the slices of the unchanged chunks are taken over
+        Assertions.assertTrue(getSliceIds(etag2).containsAll(getSliceIds(etag1, KID)));
+    }
+
+    @Test
+    void cleanupDeletesRowsRemovedUntilOldestRetainedGeneration() {
+        // changes chunk 1, so the third data set removes rows as well
+        testData.insertBatch("batch-d", KID, "1e000000000000000000000000000004");
+        String etag3 = generate();
+        long oldestRetainedGeneration = testData.getGeneration(etag2);
+
+        Set<Long> slicesOfEtag2 = getSliceIds(etag2);
+        Set<Long> slicesOfEtag3 = getSliceIds(etag3);
+
+        Map<String, Set<Long>> rows = new HashMap<>();
+        Map<String, Set<Long>> removedRows = new HashMap<>();
+        for (String table : TABLES) {
+            rows.put(table, getIds(table, "TRUE"));
+            removedRows.put(table, getIds(table, "valid_to <= " + oldestRetainedGeneration));
+            Assertions.assertFalse(removedRows.get(table).isEmpty(), table);
+            Assertions.assertFalse(getIds(table, "valid_to > " + oldestRetainedGeneration).isEmpty(), table);
+        }
+
+        generationCleanupService.cleanupGenerations();
+
+        for (String table : TABLES) {
+            rows.get(table).removeAll(removedRows.get(table));
+            Assertions.assertEquals(rows.get(table), getIds(table, "TRUE"), table);
+        }
+
+        Assertions.assertEquals(slicesOfEtag2, getSliceIds(etag2));
+        Assertions.assertEquals(slicesOfEtag3, getSliceIds(etag3));
+        Assertions.assertEquals(List.of(etag2, etag3),
+            jdbcTemplate.queryForList("SELECT etag FROM generations ORDER BY generation", String.class));
+    }
+
+    private String generate() {
+        generatorService.generateNewDataSet();
+        return infoService.getValueForKey(InfoService.CURRENT_ETAG);
+    }
+
+    /**
+     * Gets the slices of both kids in a data set, the kids are stored in POINT mode without partition id.
+     */
+    private Set<Long> getSliceIds(String etag) {
+        return getSliceIds(etag, KID, REMOVED_KID);
+    }
+
+    private Set<Long> getSliceIds(String etag, String... kids) {
+        return Stream.of(kids)
+            .flatMap(kid -> sliceRepository.findAllByEtagAndKidAndIdIsNullAndDataType(
+                etag, kid, SliceType.BLOOMFILTER).stream())
+            .map(SliceReference::getDbId)
+            .collect(Collectors.toSet());
+    }
+
+    private Set<Long> getPartitionIds(String etag) {
+        return partitionRepository.findAllByEtag(etag).stream()
+            .filter(partition -> partition.getDataType() == SliceType.BLOOMFILTER)
+            .map(PartitionEntity::getDbId)
+            .collect(Collectors.toSet());
+    }
+
+    private boolean hasArchive(String etag, String kid) {
+        return archiveRepository.findOneByEtagAndKidAndIdIsNullAndChunkIsNullAndDataType(
+            etag, kid, SliceType.BLOOMFILTER).isPresent();
+    }
+
+    private Set<Long> getValidIds(String table) {
+        return getIds(table, "valid_to IS NULL AND data_type = 'BLOOMFILTER'");
+    }
+
+    private Set<Long> getIds(String table, String condition) {
+        return new HashSet<>(jdbcTemplate.queryForList(
+            "SELECT db_id FROM " + table + " WHERE " + condition, Long.class));
+    }
+}
@@ -0,0 +1,108 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.service;
+
+import eu.europa.ec.dgc.revocationdistribution.utils.HelperFunctions;
+import java.sql.Timestamp;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Seeds batches and hashes for the tests, which run the generator on the database. The hashes are inserted as
+ * downloaded hashes, so the generator picks them up as updated. All batches expire at the same time, so each
+ * chunk is calculated as one slice.
+ */
+@RequiredArgsConstructor
+class GenerationTestData {
+
+    private static final ZonedDateTime EXPIRES = ZonedDateTime.now().plusDays(1).truncatedTo(ChronoUnit.DAYS);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final HelperFunctions helperFunctions;
+
+    /**
+     * Deletes the hashes and all generated data sets.
+     */
+    void clear() {
+        jdbcTemplate.execute("TRUNCATE hashes, batch_list, kid_aggregates, chunk_aggregates, partitions, slices,"
+            + " archives, revocation_list_json, generations, etag_history, slice_changes, delta_archives");
+    }
+
+    /**
+     * Inserts a batch with the given hashes.
+     * @param batchId the id of the batch
+     * @param kid the kid of the batch
+     * @param hashes the hashes as hex strings of 16 bytes, the first three digits are the coordinate of the hash
+     */
+    void insertBatch(String batchId, String kid, String... hashes) {
+        jdbcTemplate.update("INSERT INTO batch_list (batch_id, country, expires, kid, type, created_at)"
+            + " VALUES (?, 'DE', ?, ?, 'SIGNATURE', now())", batchId, Timestamp.from(EXPIRES.toInstant()), kid);
+
+        for (String hash : hashes) {
+            jdbcTemplate.update("INSERT INTO hashes (id, hash, batch_id, kid, updated, x, y, z)"
+                    + " VALUES (?, decode(?, 'hex'), ?, ?, true, ?, ?, ?)", UUID.randomUUID(), hash, batchId, kid,
+                hash.substring(0, 1), hash.substring(1, 2), hash.substring(2, 3));
+        }
+    }
+
+    /**
+     * Gets the tar entry names of the BLOOMFILTER slices of a kid, which were added in a data set.
+     * @param etag the etag of the data set
+     * @param kid the kid of the slices
+     * @return the entry names of the slices
+     */
+    Set<String> getAddedSliceEntryNames(String etag, String kid) {
+        return getSliceEntryNames("s.valid_from = ?", etag, kid);
+    }
+
+    /**
+     * Gets the tar entry names of the BLOOMFILTER slices of a kid, which were removed in a data set.
+     * @param etag the etag of the data set
+     * @param kid the kid of the slices
+     * @return the entry names of the slices
+     */
+    Set<String> getRemovedSliceEntryNames(String etag, String kid) {
+        return getSliceEntryNames("s.valid_to = ?", etag, kid);
+    }
+
+    /**
+     * Gets the generation of a data set.
+     * @param etag the etag of the data set
+     * @return the generation number
+     */
+    long getGeneration(String etag) {
+        return jdbcTemplate.queryForObject("SELECT generation FROM generations WHERE etag = ?", Long.class, etag);
+    }
+
+    private Set<String> getSliceEntryNames(String generationCondition, String etag, String kid) {
+        return new HashSet<>(jdbcTemplate.query("SELECT s.kid, s.partition_id, s.chunk, s.hash FROM slices s"
+                + " WHERE s.data_type = 'BLOOMFILTER' AND s.kid = ? AND " + generationCondition,
+            (rs, rowNum) -> helperFunctions.getSliceEntryName(rs.getString(1), rs.getString(2), rs.getString(3),
+                rs.getString(4)),
+            kid, getGeneration(etag)));
+    }
+}
@@ -0,0 +1,172 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.service;
+
+import static io.zonky.test.db.AutoConfigureEmbeddedDatabase.DatabaseProvider.ZONKY;
+
+import eu.europa.ec.dgc.gateway.connector.DgcGatewayCountryListDownloadConnector;
+import eu.europa.ec.dgc.gateway.connector.DgcGatewayValidationRuleDownloadConnector;
+import eu.europa.ec.dgc.gateway.connector.DgcGatewayValueSetDownloadConnector;
+import eu.europa.ec.dgc.gateway.connector.client.DgcGatewayConnectorRestClientConfig;
+import eu.europa.ec.dgc.revocationdistribution.client.IssuanceDgciRestClient;
+import eu.europa.ec.dgc.revocationdistribution.entity.PartitionEntity;
+import eu.europa.ec.dgc.revocationdistribution.model.SliceType;
+import eu.europa.ec.dgc.revocationdistribution.repository.PartitionRepository;
+import eu.europa.ec.dgc.revocationdistribution.utils.HelperFunctions;
+import io.zonky.test.db.AutoConfigureEmbeddedDatabase;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Checks the recalculation of changed chunks. The storage mode limits are lowered, so that the kid is stored in
+ * COORDINATE mode, where the first two digits of a hash are the partition and the third digit is the chunk.
+ */
+@SpringBootTest(
+    properties = {
+        "dgc.gateway.connector.enabled=false"
+    },
+    webEnvironment = SpringBootTest.WebEnvironment.NONE
+)
+@AutoConfigureEmbeddedDatabase(provider = ZONKY)
+class GeneratorServiceTest {
+
+    private static final String KID = "kid1";
+
+    private static final String LIMIT_SQL = "UPDATE configuration SET value = ?, value2 = ? WHERE key = ?";
+
+    @MockBean
+    DgcGatewayConnectorRestClientConfig dgcGatewayConnectorRestClientConfig;
+
+    @MockBean
+    IssuanceDgciRestClient issuanceDgciRestClient;
+
+    @MockBean
+    DgcGatewayValidationRuleDownloadConnector dgcGatewayValidationRuleDownloadConnector;
+
+    @MockBean
+    DgcGatewayValueSetDownloadConnector dgcGatewayValueSetDownloadConnector;
+
+    @MockBean
+    DgcGatewayCountryListDownloadConnector dgcGatewayCountryListDownloadConnector;
+
+    @Autowired
+    GeneratorService generatorService;
+
+    @Autowired
+    InfoService infoService;
+
+    @Autowired
+    PartitionRepository partitionRepository;
+
+    @Autowired
+    HelperFunctions helperFunctions;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    GenerationTestData testData;
+
+    @BeforeEach
+    void setup() {
+        testData = new GenerationTestData(jdbcTemplate, helperFunctions);
+        testData.clear();
+
+        jdbcTemplate.update(LIMIT_SQL, "0", "0", "POINTLIMIT");
+        jdbcTemplate.update(LIMIT_SQL, "1", "1", "VECTORLIMIT");
+        jdbcTemplate.update(LIMIT_SQL, "2", "999999999999", "COORDINATELIMIT");
+    }
+
+    @AfterEach
+    void cleanup() {
+        testData.clear();
+
+        jdbcTemplate.update(LIMIT_SQL, "0", "100000", "POINTLIMIT");
+        jdbcTemplate.update(LIMIT_SQL, "100001", "1600000", "VECTORLIMIT");
+        jdbcTemplate.update(LIMIT_SQL, "1600001", "999999999999", "COORDINATELIMIT");
+    }
+
+    @Test
+    void onlyChangedChunkIsRecalculated() {
+        testData.insertBatch("batch-a", KID, "1a100000000000000000000000000001", "1a200000000000000000000000000002",
+            "1b300000000000000000000000000003", "2c400000000000000000000000000004");
+        String etag1 = generate();
+
+        Assertions.assertEquals(Set.of("1a/1", "1a/2", "1b/3", "2c/4"), getChunks("slices", "TRUE"));
+        Set<Long> slicesOfEtag1 = getIds("slices", "TRUE");
+
+        // adds a hash to chunk 2 of partition 1a
+        testData.insertBatch("batch-b", KID, "1a2f0000000000000000000000000005");
+        String etag2 = generate();
+        long generation2 = testData.getGeneration(etag2);
+
+        Assertions.assertEquals(Set.of("1a/2"), getChunks("slices", "valid_from = " + generation2));
+        Assertions.assertEquals(Set.of("1a/2"), getChunks("slices", "valid_to = " + generation2));
+
+        // the partition archive and the archive of the changed chunk are replaced
+        Assertions.assertEquals(Set.of("1a/null", "1a/2"), getChunks("archives", "valid_from = " + generation2));
+        Assertions.assertEquals(Set.of("1a/null", "1a/2"), getChunks("archives", "valid_to = " + generation2));
+        Assertions.assertEquals(Set.of("1a"), new HashSet<>(jdbcTemplate.queryForList("SELECT partition_id"
+            + " FROM partitions WHERE data_type = 'BLOOMFILTER' AND valid_from = " + generation2, String.class)));
+
+        // the slices of all other chunks are taken over unchanged
+        Set<Long> keptSlices = getIds("slices", "valid_to IS NULL AND valid_from < " + generation2);
+        Set<Long> expectedKeptSlices = new HashSet<>(slicesOfEtag1);
+        expectedKeptSlices.removeAll(getIds("slices", "valid_to = " + generation2));
+        Assertions.assertEquals(expectedKeptSlices, keptSlices);
+        Assertions.assertEquals(Set.of("1a/1", "1b/3", "2c/4"), getChunks("slices", "valid_from < " + generation2
+            + " AND valid_to IS NULL"));
+
+        PartitionEntity partition = partitionRepository.findOneByEtagAndKidAndIdAndDataType(
+            etag2, KID, "1a", SliceType.BLOOMFILTER).orElseThrow();
+        Assertions.assertEquals(Set.of("1", "2"), partition.getChunks().keySet());
+        Assertions.assertEquals("COORDINATE", jdbcTemplate.queryForObject(
+            "SELECT storage_mode FROM kid_view WHERE kid = ?", String.class, KID));
+        Assertions.assertTrue(partitionRepository.findOneByEtagAndKidAndIdAndDataType(
+            etag1, KID, "1a", SliceType.BLOOMFILTER).isPresent());
+    }
+
+    private String generate() {
+        generatorService.generateNewDataSet();
+        return infoService.getValueForKey(InfoService.CURRENT_ETAG);
+    }
+
+    /**
+     * Gets the partition ids and chunks of the BLOOMFILTER slices or archives as "partition/chunk".
+     */
+    private Set<String> getChunks(String table, String condition) {
+        return new HashSet<>(jdbcTemplate.queryForList("SELECT partition_id || '/' || COALESCE(chunk, 'null') FROM "
+            + table + " WHERE data_type = 'BLOOMFILTER' AND " + condition, String.class));
+    }
+
+    private Set<Long> getIds(String table, String condition) {
+        return new HashSet<>(jdbcTemplate.queryForList(
+            "SELECT db_id FROM " + table + " WHERE data_type = 'BLOOMFILTER' AND " + condition, Long.class));
+    }
+}
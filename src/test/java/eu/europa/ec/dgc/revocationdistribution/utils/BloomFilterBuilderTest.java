@@ -0,0 +1,85 @@
+/*-
+ * ---license-start
+ * eu-digital-green-certificates / dgca-revocation-distribution-service
+ * ---
+ * Copyright (C) 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package eu.europa.ec.dgc.revocationdistribution.utils;
+
+import eu.europa.ec.dgc.bloomfilter.BloomFilter;
+import eu.europa.ec.dgc.bloomfilter.BloomFilterImpl;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class BloomFilterBuilderTest {
+
+    private static final int HASH_LENGTH = 16;
+
+    @ParameterizedTest
+    @CsvSource({
+        "1, 0.000000000001",
+        "7, 0.000000000001",
+        "100, 0.000000000001",
+        "1000, 0.01",
+        "5000, 0.000000000001"
+    })
+    void buildIsByteIdenticalToLibrary(int hashCount, float probRate) throws Exception {
+        byte[] hashes = new byte[hashCount * HASH_LENGTH];
+        new Random(hashCount).nextBytes(hashes);
+
+        BloomFilter bloomFilter = new BloomFilterImpl(hashCount, probRate);
+        for (int offset = 0; offset < hashes.length; offset += HASH_LENGTH) {
+            bloomFilter.add(Arrays.copyOfRange(hashes, offset, offset + HASH_LENGTH));
+        }
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        bloomFilter.writeTo(expected);
+
+        Assertions.assertArrayEquals(expected.toByteArray(), BloomFilterBuilder.build(hashes, HASH_LENGTH, probRate));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "1, 0.000000000001",
+        "1000, 0.01",
+        "5000, 0.1"
+    })
+    void mightContainMatchesLibrary(int hashCount, float probRate) throws Exception {
+        Random random = new Random(hashCount);
+        BloomFilter bloomFilter = new BloomFilterImpl(hashCount, probRate);
+        BloomFilterBuilder builder = new BloomFilterBuilder(hashCount, probRate);
+
+        for (int i = 0; i < hashCount; i++) {
+            byte[] hash = new byte[HASH_LENGTH];
+            random.nextBytes(hash);
+            bloomFilter.add(hash);
+            builder.add(hash, 0, HASH_LENGTH);
+        }
+        int[] bits = builder.toBitArray();
+
+        for (int i = 0; i < 10000; i++) {
+            byte[] hash = new byte[HASH_LENGTH];
+            random.nextBytes(hash);
+            Assertions.assertEquals(bloomFilter.mightContain(hash), BloomFilterBuilder.mightContain(
+                bits, builder.getNumBits(), builder.getNumberOfHashes(), hash));
+        }
+    }
+
+}